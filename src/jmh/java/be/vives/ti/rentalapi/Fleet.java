@@ -0,0 +1,81 @@
+package be.vives.ti.rentalapi;
+
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.model.Rental;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetische vloot voor de benchmarks, altijd met dezelfde seed zodat twee runs (of twee commits)
+ * exact dezelfde data meten.
+ */
+public final class Fleet {
+
+    public static final LocalDate FIRST_DAY = LocalDate.of(2025, 1, 1);
+
+    private static final String[] BRANDS = {"Toyota", "Honda", "Volkswagen", "BMW", "Renault", "Kia", "Peugeot", "Tesla"};
+    private static final String[] COLORS = {"Red", "Blue", "Black", "White", "Grey", "Green"};
+
+    private Fleet() {
+    }
+
+    public static List<Car> cars(int size) {
+        Random random = new Random(42);
+        Dealer dealer = Dealer.builder()
+                .id(1)
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("contact@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build();
+
+        List<Car> cars = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            cars.add(Car.builder()
+                    .id(i)
+                    .brand(BRANDS[random.nextInt(BRANDS.length)])
+                    .model("Model " + random.nextInt(100))
+                    .power(70 + random.nextInt(400))
+                    .year(2005 + random.nextInt(20))
+                    .color(COLORS[random.nextInt(COLORS.length)])
+                    .imageUri("https://cdn.example.com/cars/" + i + ".jpg")
+                    .description("Well maintained car number " + i + ", ideal for city trips and holidays.")
+                    .dealer(dealer)
+                    .version(random.nextInt(5))
+                    .build());
+        }
+        return cars;
+    }
+
+    // per auto rentalsPerCar periodes van 1 tot 14 dagen na elkaar, zonder overlap
+    public static List<Rental> rentals(List<Car> cars, int rentalsPerCar) {
+        Random random = new Random(43);
+        List<Rental> rentals = new ArrayList<>(cars.size() * rentalsPerCar);
+        int id = 1;
+        for (Car car : cars) {
+            LocalDate start = FIRST_DAY.plusDays(random.nextInt(7));
+            for (int i = 0; i < rentalsPerCar; i++) {
+                LocalDate end = start.plusDays(1 + random.nextInt(14));
+                rentals.add(Rental.builder()
+                        .id(id++)
+                        .car(car)
+                        .rentalPrice(BigDecimal.valueOf(50 + random.nextInt(500), 0))
+                        .startDate(start)
+                        .endDate(end)
+                        .deposit(new BigDecimal("500.00"))
+                        .pickupLocation("Antwerp")
+                        .email("customer" + random.nextInt(10_000) + "@example.com")
+                        .build());
+                start = end.plusDays(1 + random.nextInt(10));
+            }
+        }
+        return rentals;
+    }
+}
@@ -0,0 +1,54 @@
+package be.vives.ti.rentalapi.availability;
+
+import be.vives.ti.rentalapi.Fleet;
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
+import be.vives.ti.rentalapi.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bezettingsmatrix van de volledige vloot over een jaar, opgebouwd uit de rentals zoals
+ * RentalRepository.findPeriodsByDateRange ze teruggeeft, plus de base64 bitset per auto (zonder de query zelf).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OccupancyBenchmark {
+
+    @Param({"1000", "5000"})
+    private int fleetSize;
+
+    @Param({"90", "365"})
+    private int days;
+
+    private int[] carIds;
+    private List<RentalPeriod> periods;
+
+    @Setup
+    public void setUp() {
+        List<Car> cars = Fleet.cars(fleetSize);
+        carIds = cars.stream().mapToInt(Car::getId).toArray();
+        // ongeveer 12 dagen per rental: 30 rentals per auto vullen het jaar
+        LocalDate end = Fleet.FIRST_DAY.plusDays(days - 1);
+        periods = Fleet.rentals(cars, 30).stream()
+                .filter(rental -> !rental.getStartDate().isAfter(end))
+                .map(rental -> new RentalPeriod(rental.getId(), rental.getCar().getId(), rental.getStartDate(), rental.getEndDate()))
+                .toList();
+    }
+
+    @Benchmark
+    public String[] buildAndEncode() {
+        OccupancyMatrix matrix = new OccupancyMatrix(Fleet.FIRST_DAY, days, carIds);
+        for (RentalPeriod period : periods) {
+            matrix.add(period.carId(), period.startDate(), period.endDate());
+        }
+        String[] encoded = new String[matrix.size()];
+        for (int car = 0; car < matrix.size(); car++) {
+            encoded[car] = matrix.encode(car);
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,70 @@
+package be.vives.ti.rentalapi.availability;
+
+import be.vives.ti.rentalapi.Fleet;
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.repository.RentalRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Overlap-check van een nieuwe booking tegen de beschikbaarheidsindex, voor een willekeurige auto en periode.
+ * Ongeveer de helft van de periodes valt binnen de bestaande rentals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OverlapBenchmark {
+
+    @Param({"1000", "10000"})
+    private int fleetSize;
+
+    @Param({"10", "100"})
+    private int rentalsPerCar;
+
+    private RentalAvailabilityIndex index;
+    private int[] carIds;
+    private LocalDate[] starts;
+    private LocalDate[] ends;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Car> cars = Fleet.cars(fleetSize);
+        List<RentalPeriod> periods = Fleet.rentals(cars, rentalsPerCar).stream()
+                .map(rental -> new RentalPeriod(rental.getId(), rental.getCar().getId(), rental.getStartDate(), rental.getEndDate()))
+                .toList();
+        RentalRepository rentalRepository = mock(RentalRepository.class);
+        when(rentalRepository.findAllPeriods()).thenReturn(periods);
+        index = new RentalAvailabilityIndex();
+        ReflectionTestUtils.setField(index, "rentalRepository", rentalRepository);
+        ReflectionTestUtils.setField(index, "enabled", true);
+        index.rebuild();
+
+        // ongeveer 12 dagen per rental, dus de vloot is bezet tot FIRST_DAY + 12 * rentalsPerCar
+        int bookedDays = 12 * rentalsPerCar;
+        Random random = new Random(45);
+        carIds = new int[4096];
+        starts = new LocalDate[carIds.length];
+        ends = new LocalDate[carIds.length];
+        for (int i = 0; i < carIds.length; i++) {
+            carIds[i] = 1 + random.nextInt(fleetSize);
+            starts[i] = Fleet.FIRST_DAY.plusDays(random.nextInt(2 * bookedDays));
+            ends[i] = starts[i].plusDays(1 + random.nextInt(7));
+        }
+    }
+
+    @Benchmark
+    public boolean overlaps() {
+        int i = next++ & (carIds.length - 1);
+        return index.overlaps(carIds[i], starts[i], ends[i]);
+    }
+}
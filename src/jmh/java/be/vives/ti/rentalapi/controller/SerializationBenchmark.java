@@ -0,0 +1,69 @@
+package be.vives.ti.rentalapi.controller;
+
+import be.vives.ti.rentalapi.Fleet;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
+import be.vives.ti.rentalapi.dto.response.RentalResponse;
+import be.vives.ti.rentalapi.model.Car;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON van de lijst responses zoals Spring ze schrijft (GET /api/cars, /topCars en /api/rentals),
+ * met een ObjectMapper die ingesteld is zoals die van Spring Boot. Tien rentals per auto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"1000", "10000"})
+    private int fleetSize;
+
+    private ObjectMapper objectMapper;
+    private List<CarResponse> cars;
+    private List<PopCarsResponse> popCars;
+    private List<RentalResponse> rentals;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+
+        List<Car> fleet = Fleet.cars(fleetSize);
+        cars = fleet.stream()
+                .map(car -> new CarResponse(car.getId(), car.getBrand(), car.getModel(), car.getPower(),
+                        car.getYear(), car.getColor(), car.getImageUri(), car.getDescription()))
+                .toList();
+        popCars = cars.stream()
+                .map(car -> new PopCarsResponse(car.getId(), car.getBrand(), car.getModel(), car.getPower(),
+                        car.getYear(), car.getColor(), car.getImageUri(), car.getDescription(), car.getId() % 500))
+                .toList();
+        rentals = Fleet.rentals(fleet, 10).stream()
+                .map(rental -> new RentalResponse(rental.getId(), rental.getCar().getId(), rental.getRentalPrice(),
+                        rental.getStartDate(), rental.getEndDate(), rental.getDeposit(), rental.getPickupLocation(), rental.getEmail()))
+                .toList();
+    }
+
+    @Benchmark
+    public byte[] cars() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(cars);
+    }
+
+    @Benchmark
+    public byte[] popCars() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(popCars);
+    }
+
+    @Benchmark
+    public byte[] rentals() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(rentals);
+    }
+}
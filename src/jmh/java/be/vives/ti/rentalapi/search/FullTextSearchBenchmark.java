@@ -0,0 +1,45 @@
+package be.vives.ti.rentalapi.search;
+
+import be.vives.ti.rentalapi.Fleet;
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
+import be.vives.ti.rentalapi.dto.response.CarSearchResponse;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Eerste pagina (20 auto's) van GET /api/cars/search?q=... uit de Lucene index in het geheugen.
+ * "toyota" raakt ongeveer 1 op 8 auto's, "toyota model 42" enkele tientallen en "holidays" staat in elke beschrijving.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FullTextSearchBenchmark {
+
+    @Param({"10000", "100000"})
+    private int fleetSize;
+
+    @Param({"toyota", "toyota model 42", "holidays"})
+    private String q;
+
+    private CarSearchIndex index;
+    private CarSearchRequest search;
+
+    @Setup
+    public void setUp() throws IOException {
+        index = new CarSearchIndex("");
+        index.putAll(Fleet.cars(fleetSize));
+        search = CarSearchRequest.builder().q(q).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Benchmark
+    public CarSearchResponse firstPage() {
+        return index.search(search, 0, 20);
+    }
+}
@@ -0,0 +1,64 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.Fleet;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
+import be.vives.ti.rentalapi.dto.response.RentalResponse;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Rental;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity naar DTO voor een volledige lijst, met dezelfde mapping als CarService, RentalService
+ * en PopularityLeaderboard. Tien rentals per auto.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappingBenchmark {
+
+    @Param({"1000", "10000"})
+    private int fleetSize;
+
+    private List<Car> cars;
+    private List<CarResponse> carResponses;
+    private List<Rental> rentals;
+
+    @Setup
+    public void setUp() {
+        cars = Fleet.cars(fleetSize);
+        carResponses = cars.stream().map(CarService::toCarResponse).toList();
+        rentals = Fleet.rentals(cars, 10);
+    }
+
+    @Benchmark
+    public List<CarResponse> carResponses() {
+        List<CarResponse> responses = new ArrayList<>(cars.size());
+        for (Car car : cars) {
+            responses.add(CarService.toCarResponse(car));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public List<PopCarsResponse> popCarsResponses() {
+        List<PopCarsResponse> responses = new ArrayList<>(carResponses.size());
+        for (CarResponse car : carResponses) {
+            responses.add(PopularityLeaderboard.toPopCarsResponse(car, car.getId()));
+        }
+        return responses;
+    }
+
+    @Benchmark
+    public List<RentalResponse> rentalResponses() {
+        List<RentalResponse> responses = new ArrayList<>(rentals.size());
+        for (Rental rental : rentals) {
+            responses.add(RentalService.toRentalResponse(rental));
+        }
+        return responses;
+    }
+}
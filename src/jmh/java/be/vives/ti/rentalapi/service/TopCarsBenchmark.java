@@ -0,0 +1,103 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.Fleet;
+import be.vives.ti.rentalapi.dto.projection.CarStanding;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * GET /api/cars/topCars?limit=4: de fallback die alle auto's met hun likes sorteert (zonder de query zelf)
+ * tegenover de leaderboard in het geheugen, en de kost van een like in de leaderboard.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TopCarsBenchmark {
+
+    @Param({"1000", "10000"})
+    private int fleetSize;
+
+    private CarService fallbackService;
+    private PopularityLeaderboard leaderboard;
+    private int[] carIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        List<Car> cars = Fleet.cars(fleetSize);
+        Random random = new Random(44);
+        Map<Integer, Integer> likes = cars.stream()
+                .collect(Collectors.toMap(Car::getId, car -> random.nextInt(1000)));
+        Map<Integer, CarResponse> responses = cars.stream()
+                .map(CarService::toCarResponse)
+                .collect(Collectors.toMap(CarResponse::getId, Function.identity()));
+        List<PopCarsResponse> popCars = responses.values().stream()
+                .map(car -> PopularityLeaderboard.toPopCarsResponse(car, likes.get(car.getId())))
+                .toList();
+        PopularityCounters popularityCounters = new PopularityCounters();
+
+        // fallback: de leaderboard is niet geladen, de repository geeft alle auto's met likes
+        PopularityRepository popularityRepository = mock(PopularityRepository.class);
+        when(popularityRepository.findAllPopCars()).thenReturn(popCars);
+        PopularityLeaderboard notReady = mock(PopularityLeaderboard.class);
+        when(notReady.getCapacity()).thenReturn(20);
+        fallbackService = new CarService();
+        ReflectionTestUtils.setField(fallbackService, "popularityRepository", popularityRepository);
+        ReflectionTestUtils.setField(fallbackService, "popularityLeaderboard", notReady);
+        ReflectionTestUtils.setField(fallbackService, "popularityCounters", popularityCounters);
+
+        PopularityRepository standingsRepository = mock(PopularityRepository.class);
+        when(standingsRepository.findAllStandings()).thenReturn(cars.stream()
+                .map(car -> new CarStanding(car.getId(), likes.get(car.getId()), car.getPower()))
+                .toList());
+        CarRepository carRepository = mock(CarRepository.class);
+        when(carRepository.findAllResponsesById(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Integer>>getArgument(0).stream().map(responses::get).toList());
+        leaderboard = new PopularityLeaderboard();
+        ReflectionTestUtils.setField(leaderboard, "popularityRepository", standingsRepository);
+        ReflectionTestUtils.setField(leaderboard, "carRepository", carRepository);
+        ReflectionTestUtils.setField(leaderboard, "popularityCounters", popularityCounters);
+        ReflectionTestUtils.setField(leaderboard, "capacity", 20);
+        leaderboard.rebuild();
+
+        carIds = new int[4096];
+        for (int i = 0; i < carIds.length; i++) {
+            carIds[i] = 1 + random.nextInt(fleetSize);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<List<PopCarsResponse>> fallbackSortAndLimit() {
+        return fallbackService.getTopCars(4, null);
+    }
+
+    @Benchmark
+    public List<PopCarsResponse> leaderboardTopCars() {
+        return leaderboard.topCars(4);
+    }
+
+    @Benchmark
+    public long leaderboardIncrement() {
+        int carId = carIds[next++ & (carIds.length - 1)];
+        leaderboard.increment(carId, null);
+        return leaderboard.getVersion();
+    }
+}
@@ -0,0 +1,127 @@
+package be.vives.ti.rentalapi.loadtest;
+
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Vult de lege H2 database met een synthetische vloot. Dealers gaan rechtstreeks via de repository
+ * (er is geen dealer endpoint), auto's en bestaande bookings via de batch endpoints, zodat de
+ * leaderboard en de availability index net zoals in productie bijgewerkt worden.
+ */
+public class FleetSeeder {
+
+    private static final String[] BRANDS = {"Toyota", "Volkswagen", "BMW", "Renault", "Peugeot", "Ford", "Tesla", "Kia"};
+    private static final String[] COLORS = {"Red", "Black", "White", "Blue", "Grey", "Green"};
+    private static final int CARS_PER_DEALER = 100;
+    private static final int CAR_BATCH_SIZE = 1000;
+    private static final int RENTAL_BATCH_SIZE = 500; // rental.booking.batch.max-size
+
+    private final HttpClient client;
+    private final URI baseUri;
+    private final ObjectMapper objectMapper;
+    private final Random random;
+
+    public FleetSeeder(HttpClient client, URI baseUri, ObjectMapper objectMapper, long seed) {
+        this.client = client;
+        this.baseUri = baseUri;
+        this.objectMapper = objectMapper;
+        this.random = new Random(seed);
+    }
+
+    // de ids van de aangemaakte auto's en bookings, de clients kiezen daar later uit
+    public record SeededFleet(int[] carIds, int[] rentalIds) {
+    }
+
+    public SeededFleet seed(DealerRepository dealerRepository, int fleetSize, int rentalsPerCar) throws IOException, InterruptedException {
+        List<Dealer> dealers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, fleetSize / CARS_PER_DEALER); i++) {
+            dealers.add(Dealer.builder()
+                    .name("Dealer " + i)
+                    .address("Loadteststraat " + (i + 1))
+                    .city("Kortrijk")
+                    .email("dealer" + i + "@loadtest.be")
+                    .postcode(8500)
+                    .phone(56000000 + i)
+                    .build());
+        }
+        dealers = dealerRepository.saveAll(dealers);
+
+        List<Map<String, Object>> cars = new ArrayList<>();
+        for (int i = 0; i < fleetSize; i++) {
+            Map<String, Object> car = new LinkedHashMap<>();
+            car.put("brand", BRANDS[random.nextInt(BRANDS.length)]);
+            car.put("model", "Model " + random.nextInt(50));
+            car.put("power", 70 + random.nextInt(400));
+            car.put("year", 2005 + random.nextInt(21));
+            car.put("color", COLORS[random.nextInt(COLORS.length)]);
+            car.put("imageUri", "/images/car" + i + ".png");
+            car.put("description", "Synthetische auto " + i);
+            car.put("dealerId", dealers.get(i % dealers.size()).getId());
+            cars.add(car);
+        }
+        int[] carIds = postBatch("/api/cars/batch", cars, CAR_BATCH_SIZE);
+
+        // per auto een paar bookings die elkaar niet overlappen, gespreid over het komende jaar
+        List<Map<String, Object>> rentals = new ArrayList<>();
+        int slot = rentalsPerCar == 0 ? 0 : 365 / rentalsPerCar;
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        for (int carId : carIds) {
+            for (int i = 0; i < rentalsPerCar && slot > 1; i++) {
+                LocalDate start = tomorrow.plusDays((long) i * slot + random.nextInt(slot / 2 + 1));
+                rentals.add(rental(carId, start, start.plusDays(1 + random.nextInt(Math.min(7, slot / 2)))));
+            }
+        }
+        int[] rentalIds = postBatch("/api/rentals/batch", rentals, RENTAL_BATCH_SIZE);
+        return new SeededFleet(carIds, rentalIds);
+    }
+
+    static Map<String, Object> rental(int carId, LocalDate start, LocalDate end) {
+        Map<String, Object> rental = new LinkedHashMap<>();
+        rental.put("carId", carId);
+        rental.put("rentalPrice", BigDecimal.valueOf(4999, 2));
+        rental.put("startDate", start.toString());
+        rental.put("endDate", end.toString());
+        rental.put("deposit", BigDecimal.valueOf(25000, 2));
+        rental.put("pickupLocation", "Kortrijk");
+        rental.put("email", "client@loadtest.be");
+        return rental;
+    }
+
+    // stuurt de lijst in stukken naar een batch endpoint en geeft de ids van de gelukte elementen terug
+    private int[] postBatch(String path, List<Map<String, Object>> items, int batchSize) throws IOException, InterruptedException {
+        List<Integer> ids = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += batchSize) {
+            List<Map<String, Object>> chunk = items.subList(from, Math.min(items.size(), from + batchSize));
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(baseUri.resolve(path))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(chunk)))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() / 100 != 2) {
+                throw new IllegalStateException("Seeding " + path + " failed with status " + response.statusCode()
+                        + ": " + new String(response.body()));
+            }
+            for (JsonNode item : objectMapper.readTree(response.body())) {
+                if (item.path("status").asInt() == 201) {
+                    ids.add(item.path("result").path("id").asInt());
+                }
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
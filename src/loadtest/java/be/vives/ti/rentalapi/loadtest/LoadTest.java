@@ -0,0 +1,248 @@
+package be.vives.ti.rentalapi.loadtest;
+
+import be.vives.ti.rentalapi.RentalApiApplication;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * End-to-end load test: start de applicatie met het test profiel (H2 in memory) op een vrije poort,
+ * vult een synthetische vloot en laat veel clients tegelijk (elk een virtual thread) een gewogen mix van
+ * lees- en boekingsrequests sturen. Elke client stuurt zijn volgende request pas als het vorige antwoord
+ * binnen is (closed loop), dus bij overbelasting daalt de throughput in plaats van dat de latency explodeert.
+ * Requests tijdens de warmup tellen niet mee. Het rapport per endpoint komt op de console en als JSON.
+ *
+ * mvn -Ploadtest -DskipTests verify -Dloadtest.fleet-size=10000 -Dloadtest.clients=128
+ */
+public class LoadTest {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 100};
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RentalApiApplication.class)
+                .profiles("test")
+                .run(applicationArgs());
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            URI baseUri = URI.create("http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort());
+            ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(REQUEST_TIMEOUT)
+                    .executor(executor)
+                    .build();
+
+            System.out.printf("Seeding %d cars with %d rentals each%n", config.fleetSize(), config.rentalsPerCar());
+            FleetSeeder.SeededFleet fleet = new FleetSeeder(client, baseUri, objectMapper, config.seed())
+                    .seed(context.getBean(DealerRepository.class), config.fleetSize(), config.rentalsPerCar());
+            if (fleet.carIds().length == 0) {
+                throw new IllegalStateException("No cars were seeded, nothing to test");
+            }
+
+            Map<Operation, Integer> mix = new EnumMap<>(config.mix());
+            if (fleet.rentalIds().length == 0) {
+                mix.remove(Operation.RENTAL_DETAIL);
+            }
+
+            System.out.printf("Running %d clients: %ds warmup, %ds measured, mix %s%n", config.clients(),
+                    config.warmup().toSeconds(), config.duration().toSeconds(), mix);
+            long measureFrom = System.nanoTime() + config.warmup().toNanos();
+            long end = measureFrom + config.duration().toNanos();
+            List<Future<Map<Operation, Samples>>> clients = new ArrayList<>();
+            for (int i = 0; i < config.clients(); i++) {
+                LoadClient loadClient = new LoadClient(client, baseUri, objectMapper, fleet, mix, config.seed() + i);
+                clients.add(executor.submit(() -> loadClient.run(measureFrom, end)));
+            }
+
+            Map<Operation, Samples> merged = new EnumMap<>(Operation.class);
+            for (Future<Map<Operation, Samples>> future : clients) {
+                future.get().forEach((operation, samples) ->
+                        merged.computeIfAbsent(operation, o -> new Samples()).addAll(samples));
+            }
+
+            List<EndpointReport> report = report(merged, config.duration());
+            print(report);
+            Files.createDirectories(config.report().toAbsolutePath().getParent());
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(config.report().toFile(),
+                    new LoadReport(config.fleetSize(), config.rentalsPerCar(), config.clients(),
+                            config.duration().toSeconds(), report));
+            System.out.println("Report written to " + config.report().toAbsolutePath());
+        }
+    }
+
+    // -D overrides op de command line winnen, anders een vrije poort en geen SQL logging tijdens het meten
+    private static String[] applicationArgs() {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("server.port", "0");
+        defaults.put("spring.jpa.show-sql", "false");
+        defaults.put("logging.level.root", "WARN");
+        return defaults.entrySet().stream()
+                .filter(entry -> System.getProperty(entry.getKey()) == null)
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+    }
+
+    public record EndpointReport(String operation, String endpoint, long requests, double throughputPerSecond,
+                                 double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs,
+                                 Map<Integer, Long> statuses) {
+    }
+
+    public record LoadReport(int fleetSize, int rentalsPerCar, int clients, long durationSeconds,
+                             List<EndpointReport> endpoints) {
+    }
+
+    private static List<EndpointReport> report(Map<Operation, Samples> samplesPerOperation, Duration duration) {
+        double seconds = duration.toNanos() / 1e9;
+        List<EndpointReport> report = new ArrayList<>();
+        Samples total = new Samples();
+        samplesPerOperation.forEach((operation, samples) -> {
+            report.add(endpointReport(operation.getMixName(), operation.getEndpoint(), samples, seconds));
+            total.addAll(samples);
+        });
+        report.add(endpointReport("total", "", total, seconds));
+        return report;
+    }
+
+    private static EndpointReport endpointReport(String operation, String endpoint, Samples samples, double seconds) {
+        long[] micros = samples.percentiles(PERCENTILES);
+        return new EndpointReport(operation, endpoint, samples.getCount(), Math.round(samples.getCount() / seconds * 10) / 10.0,
+                micros[0] / 1000.0, micros[1] / 1000.0, micros[2] / 1000.0, micros[3] / 1000.0, micros[4] / 1000.0,
+                samples.getStatuses());
+    }
+
+    private static void print(List<EndpointReport> report) {
+        System.out.printf("%n%-36s %9s %9s %9s %9s %9s %9s %9s  %s%n",
+                "endpoint", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms", "statuses");
+        for (EndpointReport row : report) {
+            System.out.printf("%-36s %9d %9.1f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n",
+                    row.endpoint().isEmpty() ? row.operation() : row.endpoint(), row.requests(), row.throughputPerSecond(),
+                    row.p50Ms(), row.p90Ms(), row.p99Ms(), row.p999Ms(), row.maxMs(), row.statuses());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Eén gesimuleerde gebruiker. Kiest per request een operatie volgens de gewichten uit de mix en
+     * houdt zijn eigen Samples bij. Wie de lijst pollt, stuurt de ETag van het vorige antwoord mee.
+     */
+    static class LoadClient {
+
+        private final HttpClient client;
+        private final URI baseUri;
+        private final ObjectMapper objectMapper;
+        private final FleetSeeder.SeededFleet fleet;
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+        private final SplittableRandom random;
+        private String carListETag;
+
+        LoadClient(HttpClient client, URI baseUri, ObjectMapper objectMapper, FleetSeeder.SeededFleet fleet,
+                   Map<Operation, Integer> mix, long seed) {
+            this.client = client;
+            this.baseUri = baseUri;
+            this.objectMapper = objectMapper;
+            this.fleet = fleet;
+            this.operations = mix.keySet().toArray(Operation[]::new);
+            this.cumulativeWeights = new int[operations.length];
+            int sum = 0;
+            for (int i = 0; i < operations.length; i++) {
+                sum += mix.get(operations[i]);
+                cumulativeWeights[i] = sum;
+            }
+            this.random = new SplittableRandom(seed);
+        }
+
+        Map<Operation, Samples> run(long measureFrom, long end) throws IOException {
+            Map<Operation, Samples> samples = new EnumMap<>(Operation.class);
+            while (System.nanoTime() < end) {
+                Operation operation = nextOperation();
+                HttpRequest request = request(operation);
+                long start = System.nanoTime();
+                int status;
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    status = response.statusCode();
+                    if (operation == Operation.CAR_LIST) {
+                        response.headers().firstValue("ETag").ifPresent(eTag -> carListETag = eTag);
+                    }
+                } catch (IOException e) {
+                    status = -1;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (start >= measureFrom) {
+                    samples.computeIfAbsent(operation, o -> new Samples()).record((System.nanoTime() - start) / 1000, status);
+                }
+            }
+            return samples;
+        }
+
+        private Operation nextOperation() {
+            int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (pick < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+
+        private HttpRequest request(Operation operation) throws IOException {
+            return switch (operation) {
+                case CAR_LIST -> {
+                    HttpRequest.Builder builder = get("/api/cars");
+                    if (carListETag != null) {
+                        builder.header("If-None-Match", carListETag);
+                    }
+                    yield builder.build();
+                }
+                case CAR_DETAIL -> get("/api/cars/" + randomCar()).build();
+                case CAR_WITH_DEALER -> get("/api/cars/carWithDealer/" + randomCar()).build();
+                case TOP_CARS -> get("/api/cars/topCars").build();
+                case RENTAL_DETAIL -> get("/api/rentals/" + fleet.rentalIds()[random.nextInt(fleet.rentalIds().length)]).build();
+                case BOOKING -> {
+                    // willekeurige periode in het komende jaar: een mix van 201 en 409 met de bestaande bookings
+                    LocalDate start = LocalDate.now().plusDays(1 + random.nextInt(365));
+                    LocalDate end = start.plusDays(1 + random.nextInt(7));
+                    yield HttpRequest.newBuilder(baseUri.resolve("/api/rentals"))
+                            .timeout(REQUEST_TIMEOUT)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(
+                                    objectMapper.writeValueAsBytes(FleetSeeder.rental(randomCar(), start, end))))
+                            .build();
+                }
+            };
+        }
+
+        private int randomCar() {
+            return fleet.carIds()[random.nextInt(fleet.carIds().length)];
+        }
+
+        private HttpRequest.Builder get(String path) {
+            return HttpRequest.newBuilder(baseUri.resolve(path)).timeout(REQUEST_TIMEOUT).GET();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package be.vives.ti.rentalapi.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Instellingen van de load test, elk via een system property (bv. -Dloadtest.clients=128).
+ * De mix is een lijst operatie=gewicht, bv. -Dloadtest.mix=carDetail=80,booking=20.
+ */
+public record LoadTestConfig(int fleetSize,
+                             int rentalsPerCar,
+                             int clients,
+                             Duration warmup,
+                             Duration duration,
+                             Map<Operation, Integer> mix,
+                             long seed,
+                             Path report) {
+
+    static final String DEFAULT_MIX = "carList=5,carDetail=40,carWithDealer=10,topCars=20,rentalDetail=5,booking=20";
+
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig(
+                Integer.getInteger("loadtest.fleet-size", 1000),
+                Integer.getInteger("loadtest.rentals-per-car", 5),
+                Integer.getInteger("loadtest.clients", 64),
+                Duration.ofSeconds(Integer.getInteger("loadtest.warmup-seconds", 10)),
+                Duration.ofSeconds(Integer.getInteger("loadtest.duration-seconds", 30)),
+                parseMix(System.getProperty("loadtest.mix", DEFAULT_MIX)),
+                Long.getLong("loadtest.seed", 42),
+                Path.of(System.getProperty("loadtest.report", "target/loadtest-report.json")));
+    }
+
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid loadtest.mix entry: " + entry);
+            }
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.fromName(parts[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix needs at least one operation with a positive weight");
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,38 @@
+package be.vives.ti.rentalapi.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * De requests die een client kan sturen, met de naam waaronder ze in de mix en het rapport staan.
+ */
+public enum Operation {
+    CAR_LIST("carList", "GET /api/cars"),
+    CAR_DETAIL("carDetail", "GET /api/cars/{id}"),
+    CAR_WITH_DEALER("carWithDealer", "GET /api/cars/carWithDealer/{id}"),
+    TOP_CARS("topCars", "GET /api/cars/topCars"),
+    RENTAL_DETAIL("rentalDetail", "GET /api/rentals/{id}"),
+    BOOKING("booking", "POST /api/rentals");
+
+    private final String mixName;
+    private final String endpoint;
+
+    Operation(String mixName, String endpoint) {
+        this.mixName = mixName;
+        this.endpoint = endpoint;
+    }
+
+    public String getMixName() {
+        return mixName;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    static Operation fromName(String mixName) {
+        return Arrays.stream(values())
+                .filter(operation -> operation.mixName.equals(mixName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown operation in loadtest.mix: " + mixName));
+    }
+}
@@ -0,0 +1,57 @@
+package be.vives.ti.rentalapi.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Latencies (in microseconden) en statuscodes van één operatie. Elke client heeft zijn eigen Samples,
+ * zodat het meten zelf geen locks kost, en op het einde worden ze samengevoegd.
+ * Status -1 betekent dat de request niet lukte (timeout, verbinding weg).
+ */
+public class Samples {
+
+    private long[] latencies = new long[1024];
+    private int count;
+    private final Map<Integer, Long> statuses = new TreeMap<>();
+
+    public void record(long latencyMicros, int status) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latencyMicros;
+        statuses.merge(status, 1L, Long::sum);
+    }
+
+    public void addAll(Samples other) {
+        if (count + other.count > latencies.length) {
+            latencies = Arrays.copyOf(latencies, count + other.count);
+        }
+        System.arraycopy(other.latencies, 0, latencies, count, other.count);
+        count += other.count;
+        other.statuses.forEach((status, requests) -> statuses.merge(status, requests, Long::sum));
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public Map<Integer, Long> getStatuses() {
+        return statuses;
+    }
+
+    // nearest-rank percentielen over alle samples
+    public long[] percentiles(double... percentiles) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        long[] values = new long[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            if (count == 0) {
+                continue;
+            }
+            int rank = (int) Math.ceil(percentiles[i] / 100.0 * count);
+            values[i] = sorted[Math.max(0, Math.min(count, rank) - 1)];
+        }
+        return values;
+    }
+}
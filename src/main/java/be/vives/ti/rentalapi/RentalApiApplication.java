@@ -2,8 +2,10 @@ package be.vives.ti.rentalapi;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class RentalApiApplication {
 
     public static void main(String[] args) {
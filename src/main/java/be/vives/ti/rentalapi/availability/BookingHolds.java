@@ -0,0 +1,146 @@
+package be.vives.ti.rentalapi.availability;
+
+import be.vives.ti.rentalapi.dto.request.RentalRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds tijdens de checkout: een auto wordt voor een periode vastgehouden zonder rental in de database,
+ * tot de hold bevestigd (wordt een rental), vrijgegeven of verlopen is. Enkel in het geheugen van deze instantie.
+ * Het verlopen loopt via een hashed timing wheel die elke tick één bucket afwerkt, zonder timer per hold.
+ * Een hold die voorbij zijn deadline is telt nergens meer mee, ook als de wheel hem nog niet opgeruimd heeft.
+ */
+@Component
+public class BookingHolds {
+
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final TimingWheel<Hold> wheel;
+    private final Map<UUID, TimingWheel.Entry<Hold>> entries = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Hold>> holdsByCar = new ConcurrentHashMap<>();
+    private final LongAdder expired = new LongAdder();
+
+    @Autowired
+    public BookingHolds(@Value("${rental.booking.holds.ttl-seconds:300}") long ttlSeconds,
+                        @Value("${rental.booking.holds.tick-ms:100}") long tickMillis,
+                        @Value("${rental.booking.holds.wheel-size:512}") int wheelSize) {
+        this(ttlSeconds, tickMillis, wheelSize, System::currentTimeMillis);
+    }
+
+    BookingHolds(long ttlSeconds, long tickMillis, int wheelSize, LongSupplier clock) {
+        if (ttlSeconds < 1) {
+            throw new IllegalArgumentException("rental.booking.holds.ttl-seconds must be at least 1");
+        }
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.clock = clock;
+        this.wheel = new TimingWheel<>(wheelSize, tickMillis, clock.getAsLong());
+    }
+
+    public record Hold(UUID id, RentalRequest request, long expiresAtMillis) {
+
+        public Integer carId() {
+            return request.getCarId();
+        }
+
+        boolean overlaps(LocalDate startDate, LocalDate endDate) {
+            return !request.getStartDate().isAfter(endDate) && !request.getEndDate().isBefore(startDate);
+        }
+    }
+
+    // nieuwe hold, de caller heeft onder de lock van de auto nagekeken dat de periode vrij is
+    public Hold hold(RentalRequest request) {
+        Hold hold = new Hold(UUID.randomUUID(), request, clock.getAsLong() + ttlMillis);
+        synchronized (wheel) {
+            entries.put(hold.id(), wheel.schedule(hold, hold.expiresAtMillis()));
+        }
+        holdsByCar.compute(hold.carId(), (carId, holds) -> {
+            Set<Hold> carHolds = holds == null ? ConcurrentHashMap.newKeySet() : holds;
+            carHolds.add(hold);
+            return carHolds;
+        });
+        return hold;
+    }
+
+    // null als de hold onbekend, al bevestigd of vrijgegeven, of verlopen is
+    public Hold find(UUID id) {
+        TimingWheel.Entry<Hold> entry = entries.get(id);
+        if (entry == null || entry.value().expiresAtMillis() <= clock.getAsLong()) {
+            return null;
+        }
+        return entry.value();
+    }
+
+    // hold weghalen bij bevestigen of vrijgeven, false als hij er niet (meer) was of net verlopen is
+    public boolean release(UUID id) {
+        TimingWheel.Entry<Hold> entry = entries.remove(id);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (wheel) {
+            wheel.cancel(entry);
+        }
+        unindex(entry.value());
+        return entry.value().expiresAtMillis() > clock.getAsLong();
+    }
+
+    // overlapt de periode met een actieve hold op deze auto (datums inclusief, zoals de rentals)
+    public boolean overlaps(Integer carId, LocalDate startDate, LocalDate endDate) {
+        return overlaps(carId, startDate, endDate, null);
+    }
+
+    // idem, zonder de hold die net bevestigd wordt
+    public boolean overlaps(Integer carId, LocalDate startDate, LocalDate endDate, UUID ignoredHoldId) {
+        Set<Hold> carHolds = holdsByCar.get(carId);
+        if (carHolds == null) {
+            return false;
+        }
+        long now = clock.getAsLong();
+        for (Hold hold : carHolds) {
+            if (hold.expiresAtMillis() > now && !hold.id().equals(ignoredHoldId) && hold.overlaps(startDate, endDate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Scheduled(fixedRateString = "${rental.booking.holds.tick-ms:100}")
+    public void expire() {
+        synchronized (wheel) {
+            wheel.advance(clock.getAsLong(), this::expired);
+        }
+    }
+
+    private void expired(Hold hold) {
+        // een hold die tegelijk vrijgegeven wordt telt niet als verlopen
+        if (entries.remove(hold.id()) != null) {
+            unindex(hold);
+            expired.increment();
+        }
+    }
+
+    private void unindex(Hold hold) {
+        holdsByCar.computeIfPresent(hold.carId(), (carId, holds) -> {
+            holds.remove(hold);
+            return holds.isEmpty() ? null : holds;
+        });
+    }
+
+    public int getActiveCount() {
+        return entries.size();
+    }
+
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+}
@@ -0,0 +1,12 @@
+package be.vives.ti.rentalapi.availability;
+
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// de rentals die een booking blokkeren en de startdagen van de dichtste vrije vensters van dezelfde lengte
+public record BookingSuggestions(List<RentalPeriod> conflicts, List<LocalDate> alternativeStarts) {
+
+    public static final BookingSuggestions NONE = new BookingSuggestions(List.of(), List.of());
+}
@@ -0,0 +1,179 @@
+package be.vives.ti.rentalapi.availability;
+
+import java.util.Arrays;
+
+/**
+ * Onveranderlijke, op startdag gesorteerde lijst van verhuurperiodes van één auto (epoch days, grenzen inclusief).
+ * maxEnds[i] is de grootste einddag van de periodes 0..i, zodat een overlap-check ook correct blijft
+ * als er in de database toch overlappende periodes zitten.
+ */
+final class CarIntervals {
+
+    static final CarIntervals EMPTY = new CarIntervals(new int[0], new long[0], new long[0], new long[0]);
+
+    private final int[] rentalIds;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds;
+
+    private CarIntervals(int[] rentalIds, long[] starts, long[] ends, long[] maxEnds) {
+        this.rentalIds = rentalIds;
+        this.starts = starts;
+        this.ends = ends;
+        this.maxEnds = maxEnds;
+    }
+
+    static CarIntervals of(int[] rentalIds, long[] starts, long[] ends) {
+        Integer[] order = new Integer[rentalIds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(starts[a], starts[b]));
+
+        int[] sortedIds = new int[order.length];
+        long[] sortedStarts = new long[order.length];
+        long[] sortedEnds = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedIds[i] = rentalIds[order[i]];
+            sortedStarts[i] = starts[order[i]];
+            sortedEnds[i] = ends[order[i]];
+        }
+        return new CarIntervals(sortedIds, sortedStarts, sortedEnds, prefixMax(sortedEnds));
+    }
+
+    int size() {
+        return rentalIds.length;
+    }
+
+    int rentalId(int index) {
+        return rentalIds[index];
+    }
+
+    long start(int index) {
+        return starts[index];
+    }
+
+    long end(int index) {
+        return ends[index];
+    }
+
+    // O(log n): de laatste periode die start voor of op endDay, en kijken of een periode tot daar startDay bereikt
+    boolean overlaps(long startDay, long endDay) {
+        int last = lastStartingOnOrBefore(endDay);
+        return last >= 0 && maxEnds[last] >= startDay;
+    }
+
+    // in één pass over de periodes: welke periodes startDay..endDay overlappen, en per vrij gat tussen de periodes
+    // het venster van dezelfde lengte dat het dichtst bij startDay ligt (niet voor earliestDay); de limit dichtste vensters
+    Suggestions suggest(long startDay, long endDay, long earliestDay, int limit) {
+        long length = endDay - startDay + 1;
+        int[] conflicts = new int[rentalIds.length];
+        int conflictCount = 0;
+        long[] alternatives = new long[limit];
+        long[] distances = new long[limit];
+        int alternativeCount = 0;
+
+        long freeFrom = earliestDay;
+        for (int i = 0; i <= starts.length; i++) {
+            long freeTo = i < starts.length ? starts[i] - 1 : Long.MAX_VALUE;
+            if (freeTo >= freeFrom + length - 1) {
+                long candidate = Math.max(freeFrom, Math.min(startDay, freeTo - length + 1));
+                long distance = Math.abs(candidate - startDay);
+                // invoegen in de (kleine) lijst van dichtste vensters, gesorteerd op afstand
+                int position = alternativeCount;
+                while (position > 0 && distances[position - 1] > distance) {
+                    position--;
+                }
+                if (position < limit) {
+                    int moved = Math.min(alternativeCount, limit - 1) - position;
+                    System.arraycopy(alternatives, position, alternatives, position + 1, moved);
+                    System.arraycopy(distances, position, distances, position + 1, moved);
+                    alternatives[position] = candidate;
+                    distances[position] = distance;
+                    alternativeCount = Math.min(alternativeCount + 1, limit);
+                }
+            }
+            if (i < starts.length) {
+                if (starts[i] <= endDay && ends[i] >= startDay) {
+                    conflicts[conflictCount++] = i;
+                }
+                freeFrom = Math.max(freeFrom, ends[i] + 1);
+            }
+        }
+        return new Suggestions(Arrays.copyOf(conflicts, conflictCount), Arrays.copyOf(alternatives, alternativeCount));
+    }
+
+    // indexen van de overlappende periodes en startdagen van de vrije vensters
+    record Suggestions(int[] conflicts, long[] alternativeStarts) {
+    }
+
+    int lastStartingOnOrBefore(long day) {
+        int low = 0;
+        int high = starts.length - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= day) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    CarIntervals with(int rentalId, long startDay, long endDay) {
+        int position = lastStartingOnOrBefore(startDay) + 1;
+        int length = rentalIds.length;
+
+        int[] newIds = new int[length + 1];
+        long[] newStarts = new long[length + 1];
+        long[] newEnds = new long[length + 1];
+        System.arraycopy(rentalIds, 0, newIds, 0, position);
+        System.arraycopy(starts, 0, newStarts, 0, position);
+        System.arraycopy(ends, 0, newEnds, 0, position);
+        newIds[position] = rentalId;
+        newStarts[position] = startDay;
+        newEnds[position] = endDay;
+        System.arraycopy(rentalIds, position, newIds, position + 1, length - position);
+        System.arraycopy(starts, position, newStarts, position + 1, length - position);
+        System.arraycopy(ends, position, newEnds, position + 1, length - position);
+        return new CarIntervals(newIds, newStarts, newEnds, prefixMax(newEnds));
+    }
+
+    CarIntervals without(int rentalId) {
+        int position = -1;
+        for (int i = 0; i < rentalIds.length; i++) {
+            if (rentalIds[i] == rentalId) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            return this;
+        }
+
+        int length = rentalIds.length;
+        int[] newIds = new int[length - 1];
+        long[] newStarts = new long[length - 1];
+        long[] newEnds = new long[length - 1];
+        System.arraycopy(rentalIds, 0, newIds, 0, position);
+        System.arraycopy(starts, 0, newStarts, 0, position);
+        System.arraycopy(ends, 0, newEnds, 0, position);
+        System.arraycopy(rentalIds, position + 1, newIds, position, length - position - 1);
+        System.arraycopy(starts, position + 1, newStarts, position, length - position - 1);
+        System.arraycopy(ends, position + 1, newEnds, position, length - position - 1);
+        return new CarIntervals(newIds, newStarts, newEnds, prefixMax(newEnds));
+    }
+
+    private static long[] prefixMax(long[] ends) {
+        long[] maxEnds = new long[ends.length];
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < ends.length; i++) {
+            max = Math.max(max, ends[i]);
+            maxEnds[i] = max;
+        }
+        return maxEnds;
+    }
+}
@@ -0,0 +1,85 @@
+package be.vives.ti.rentalapi.availability;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Bezetting van een reeks auto's over een venster van dagen: per auto een long[] met één bit per dag,
+ * bit i staat voor dag start + i. Een rental zet zijn dagen binnen het venster in één keer aan
+ * (volledige longs op -1), zonder iets per dag of per cel op te vragen.
+ */
+public final class OccupancyMatrix {
+
+    private final long firstDay;
+    private final int days;
+    // oplopend, zodat een rental zijn rij via binary search vindt
+    private final int[] carIds;
+    private final long[][] booked;
+
+    public OccupancyMatrix(LocalDate start, int days, int[] carIds) {
+        this.firstDay = start.toEpochDay();
+        this.days = days;
+        this.carIds = carIds;
+        this.booked = new long[carIds.length][(days + 63) >>> 6];
+    }
+
+    // de dagen van een rental (grenzen inclusief) binnen het venster als bezet markeren, andere auto's negeren
+    public void add(int carId, LocalDate startDate, LocalDate endDate) {
+        int car = Arrays.binarySearch(carIds, carId);
+        if (car < 0) {
+            return;
+        }
+        long from = Math.max(0, startDate.toEpochDay() - firstDay);
+        long to = Math.min(days - 1, endDate.toEpochDay() - firstDay);
+        if (from <= to) {
+            setRange(booked[car], (int) from, (int) to);
+        }
+    }
+
+    public int size() {
+        return carIds.length;
+    }
+
+    public int carId(int car) {
+        return carIds[car];
+    }
+
+    public boolean isBooked(int car, int day) {
+        return (booked[car][day >>> 6] & (1L << day)) != 0;
+    }
+
+    public int bookedDays(int car) {
+        int count = 0;
+        for (long word : booked[car]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // ceil(days / 8) bytes, dag i in byte i / 8 op bit i % 8 (minst significante bit eerst), als base64
+    public String encode(int car) {
+        byte[] bytes = new byte[(days + 7) >>> 3];
+        long[] words = booked[car];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (words[i >>> 3] >>> ((i & 7) << 3));
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    // bits from tot en met to aanzetten
+    static void setRange(long[] words, int from, int to) {
+        int firstWord = from >>> 6;
+        int lastWord = to >>> 6;
+        // een shift in Java gebruikt enkel de laagste 6 bits, -1L << from is dus alles vanaf bit from % 64
+        long firstMask = -1L << from;
+        long lastMask = -1L >>> (63 - (to & 63));
+        if (firstWord == lastWord) {
+            words[firstWord] |= firstMask & lastMask;
+            return;
+        }
+        words[firstWord] |= firstMask;
+        Arrays.fill(words, firstWord + 1, lastWord, -1L);
+        words[lastWord] |= lastMask;
+    }
+}
@@ -0,0 +1,192 @@
+package be.vives.ti.rentalapi.availability;
+
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
+import be.vives.ti.rentalapi.repository.RentalRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per auto een gesorteerde lijst van verhuurperiodes in het geheugen, zodat een overlap-check
+ * in O(log n) kan zonder naar de database te gaan.
+ * Wordt geladen bij het opstarten en bijgewerkt bij create, update en delete van een rental.
+ * Zolang de index niet geladen is (of uitgeschakeld is) moet de database gebruikt worden.
+ */
+@Slf4j
+@Component
+public class RentalAvailabilityIndex {
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @Value("${rental.availability.index.enabled:true}")
+    private boolean enabled;
+
+    private final Map<Integer, CarIntervals> intervalsByCar = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> carByRental = new ConcurrentHashMap<>();
+    // wijzigingen mogen parallel lopen, enkel een volledige rebuild heeft de index voor zich alleen
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    // volledige index opnieuw opbouwen vanuit de database
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            List<RentalPeriod> periods = rentalRepository.findAllPeriods();
+
+            Map<Integer, List<RentalPeriod>> periodsByCar = new HashMap<>();
+            for (RentalPeriod period : periods) {
+                periodsByCar.computeIfAbsent(period.carId(), carId -> new ArrayList<>()).add(period);
+            }
+
+            intervalsByCar.clear();
+            carByRental.clear();
+            periodsByCar.forEach((carId, carPeriods) -> {
+                int[] rentalIds = new int[carPeriods.size()];
+                long[] starts = new long[carPeriods.size()];
+                long[] ends = new long[carPeriods.size()];
+                for (int i = 0; i < carPeriods.size(); i++) {
+                    RentalPeriod period = carPeriods.get(i);
+                    rentalIds[i] = period.rentalId();
+                    starts[i] = period.startDate().toEpochDay();
+                    ends[i] = period.endDate().toEpochDay();
+                    carByRental.put(period.rentalId(), carId);
+                }
+                intervalsByCar.put(carId, CarIntervals.of(rentalIds, starts, ends));
+            });
+
+            ready = true;
+            log.info("Rental availability index loaded: {} rentals for {} cars", periods.size(), intervalsByCar.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            log.warn("Rental availability index could not be loaded, falling back to the database", e);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    // true als de auto in de periode (grenzen inclusief) al verhuurd is
+    public boolean overlaps(Integer carId, LocalDate startDate, LocalDate endDate) {
+        return intervalsByCar.getOrDefault(carId, CarIntervals.EMPTY)
+                .overlaps(startDate.toEpochDay(), endDate.toEpochDay());
+    }
+
+    // bij een conflict: de overlappende rentals en de limit dichtste vrije vensters van dezelfde lengte, vanaf earliestDate
+    public BookingSuggestions suggest(Integer carId, LocalDate startDate, LocalDate endDate, LocalDate earliestDate, int limit) {
+        CarIntervals intervals = intervalsByCar.getOrDefault(carId, CarIntervals.EMPTY);
+        CarIntervals.Suggestions suggestions = intervals.suggest(startDate.toEpochDay(), endDate.toEpochDay(),
+                earliestDate.toEpochDay(), limit);
+
+        List<RentalPeriod> conflicts = new ArrayList<>(suggestions.conflicts().length);
+        for (int index : suggestions.conflicts()) {
+            conflicts.add(new RentalPeriod(intervals.rentalId(index), carId,
+                    LocalDate.ofEpochDay(intervals.start(index)), LocalDate.ofEpochDay(intervals.end(index))));
+        }
+        List<LocalDate> alternativeStarts = new ArrayList<>(suggestions.alternativeStarts().length);
+        for (long start : suggestions.alternativeStarts()) {
+            alternativeStarts.add(LocalDate.ofEpochDay(start));
+        }
+        return new BookingSuggestions(conflicts, alternativeStarts);
+    }
+
+    // de eerste limit auto's (in de volgorde van carIds) die in de periode vrij zijn
+    public List<Integer> freeCars(Collection<Integer> carIds, LocalDate startDate, LocalDate endDate, int limit) {
+        List<Integer> free = new ArrayList<>(limit);
+        for (Integer carId : carIds) {
+            if (free.size() == limit) {
+                break;
+            }
+            if (!overlaps(carId, startDate, endDate)) {
+                free.add(carId);
+            }
+        }
+        return free;
+    }
+
+    // nieuwe of gewijzigde rental, een rental die van auto verandert wordt bij de oude auto verwijderd
+    public void put(Integer rentalId, Integer carId, LocalDate startDate, LocalDate endDate) {
+        afterCommit(() -> {
+            rebuildLock.readLock().lock();
+            try {
+                Integer previousCarId = carByRental.put(rentalId, carId);
+                if (previousCarId != null) {
+                    intervalsByCar.computeIfPresent(previousCarId, (id, intervals) -> intervals.without(rentalId));
+                }
+                intervalsByCar.compute(carId, (id, intervals) -> (intervals == null ? CarIntervals.EMPTY : intervals)
+                        .with(rentalId, startDate.toEpochDay(), endDate.toEpochDay()));
+            } finally {
+                rebuildLock.readLock().unlock();
+            }
+        });
+    }
+
+    public void remove(Integer rentalId) {
+        afterCommit(() -> {
+            rebuildLock.readLock().lock();
+            try {
+                Integer carId = carByRental.remove(rentalId);
+                if (carId != null) {
+                    intervalsByCar.computeIfPresent(carId, (id, intervals) -> intervals.without(rentalId));
+                }
+            } finally {
+                rebuildLock.readLock().unlock();
+            }
+        });
+    }
+
+    // alle rentals van een verwijderde auto
+    public void removeCar(Integer carId) {
+        afterCommit(() -> {
+            rebuildLock.readLock().lock();
+            try {
+                CarIntervals intervals = intervalsByCar.remove(carId);
+                if (intervals != null) {
+                    for (int i = 0; i < intervals.size(); i++) {
+                        carByRental.remove(intervals.rentalId(i));
+                    }
+                }
+            } finally {
+                rebuildLock.readLock().unlock();
+            }
+        });
+    }
+
+    // binnen een transactie pas bijwerken na de commit, zodat een rollback de index niet vervuilt
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package be.vives.ti.rentalapi.availability;
+
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel: een ring van buckets van elk één tick. Een entry komt in de bucket van zijn deadline
+ * en telt af hoeveel keer de wheel nog rond moet. Inplannen en annuleren zijn O(1), een tick bekijkt enkel
+ * zijn eigen bucket, dus miljoenen deadlines kosten geen timer of thread per entry.
+ * Een entry verloopt ten vroegste op zijn deadline en ten laatste één tick later.
+ * Niet thread-safe, de eigenaar synchroniseert.
+ */
+final class TimingWheel<T> {
+
+    private final Entry<T>[] buckets;
+    private final int mask;
+    private final long tickMillis;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(int wheelSize, long tickMillis, long nowMillis) {
+        if (wheelSize < 1 || tickMillis < 1) {
+            throw new IllegalArgumentException("wheel size and tick must be at least 1");
+        }
+        // afronden naar een macht van 2 zodat de bucket met een bitmask gekozen kan worden
+        int length = wheelSize == 1 ? 1 : Integer.highestOneBit(wheelSize - 1) << 1;
+        this.buckets = (Entry<T>[]) new Entry[length];
+        this.mask = length - 1;
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    // een deadline die al voorbij is verloopt bij de volgende tick
+    Entry<T> schedule(T value, long deadlineMillis) {
+        long deadlineTick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        Entry<T> entry = new Entry<>(value);
+        entry.rounds = (deadlineTick - currentTick - 1) / buckets.length;
+        entry.bucket = (int) (deadlineTick & mask);
+        entry.next = buckets[entry.bucket];
+        if (entry.next != null) {
+            entry.next.prev = entry;
+        }
+        buckets[entry.bucket] = entry;
+        size++;
+        return entry;
+    }
+
+    // false als de entry al verlopen of geannuleerd was
+    boolean cancel(Entry<T> entry) {
+        if (entry.bucket < 0) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    // alle ticks tot nowMillis afwerken, de verlopen entries gaan naar expired
+    int advance(long nowMillis, Consumer<T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        int count = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            Entry<T> entry = buckets[(int) (currentTick & mask)];
+            while (entry != null) {
+                Entry<T> next = entry.next;
+                if (entry.rounds == 0) {
+                    unlink(entry);
+                    expired.accept(entry.value);
+                    count++;
+                } else {
+                    entry.rounds--;
+                }
+                entry = next;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void unlink(Entry<T> entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else {
+            buckets[entry.bucket] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.bucket = -1;
+        size--;
+    }
+
+    // ingepland element in een dubbel gelinkte lijst per bucket, zodat annuleren niet hoeft te zoeken
+    static final class Entry<T> {
+        private final T value;
+        private long rounds;
+        private int bucket;
+        private Entry<T> prev;
+        private Entry<T> next;
+
+        private Entry(T value) {
+            this.value = value;
+        }
+
+        T value() {
+            return value;
+        }
+    }
+}
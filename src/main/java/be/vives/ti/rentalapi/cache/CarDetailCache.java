@@ -0,0 +1,101 @@
+package be.vives.ti.rentalapi.cache;
+
+import be.vives.ti.rentalapi.dto.response.CacheStatsResponse;
+import be.vives.ti.rentalapi.dto.response.CarDealerResponse;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache voor de detailweergave van een auto, met en zonder dealer, op car id.
+ * Begrensd in grootte en tijd. Wijzigingen verwijderen de entry pas na de commit, een load die
+ * op dat moment loopt voor dezelfde id wordt eerst afgewacht, dus na een write op deze instantie
+ * leest niemand nog de oude waarde. Een auto die niet bestaat wordt niet gecachet.
+ */
+@Component
+public class CarDetailCache {
+
+    private final Cache<Integer, CarResponse> cars;
+    private final Cache<Integer, CarDealerResponse> carsWithDealer;
+
+    public CarDetailCache(@Value("${rental.cache.car-detail.maximum-size:10000}") long maximumSize,
+                          @Value("${rental.cache.car-detail.expire-after-write-seconds:300}") long expireAfterWriteSeconds) {
+        this.cars = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .recordStats()
+                .build();
+        this.carsWithDealer = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(Duration.ofSeconds(expireAfterWriteSeconds))
+                .recordStats()
+                .build();
+    }
+
+    public Optional<CarResponse> getCar(Integer carId, Function<Integer, Optional<CarResponse>> loader) {
+        return Optional.ofNullable(cars.get(carId, id -> loader.apply(id).orElse(null)));
+    }
+
+    public Optional<CarDealerResponse> getCarWithDealer(Integer carId, Function<Integer, Optional<CarDealerResponse>> loader) {
+        return Optional.ofNullable(carsWithDealer.get(carId, id -> loader.apply(id).orElse(null)));
+    }
+
+    // auto gewijzigd of verwijderd
+    public void invalidateCar(Integer carId) {
+        afterCommit(() -> {
+            cars.invalidate(carId);
+            carsWithDealer.invalidate(carId);
+        });
+    }
+
+    // dealer gewijzigd of verwijderd, enkel de entries met dealer info van die dealer. De auto's van de dealer
+    // worden na de commit per id opgezocht en verwijderd, zodat een load die nog de oude dealer las eerst afgewacht
+    // wordt; wat daarna nog met die dealer in de cache staat (auto's die met de dealer weg zijn) ook
+    public void invalidateDealer(Integer dealerId, Supplier<? extends Collection<Integer>> carIds) {
+        afterCommit(() -> {
+            carsWithDealer.invalidateAll(carIds.get());
+            carsWithDealer.asMap().values().removeIf(carDealer -> dealerId.equals(carDealer.getDealerId()));
+        });
+    }
+
+    public List<CacheStatsResponse> getStats() {
+        return List.of(stats("car", cars), stats("carWithDealer", carsWithDealer));
+    }
+
+    private static CacheStatsResponse stats(String name, Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        return CacheStatsResponse.builder()
+                .name(name)
+                .size(cache.estimatedSize())
+                .hits(stats.hitCount())
+                .misses(stats.missCount())
+                .evictions(stats.evictionCount())
+                .hitRatio(stats.hitRate())
+                .build();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
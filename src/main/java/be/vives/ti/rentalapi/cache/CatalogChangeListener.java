@@ -0,0 +1,34 @@
+package be.vives.ti.rentalapi.cache;
+
+import be.vives.ti.rentalapi.model.Rental;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener op Car en Rental: elke insert, update of delete verhoogt de teller van de lijst,
+ * zodat de ETag van GET /api/cars of /api/rentals verandert. In een context zonder tellers
+ * (bv. @DataJpaTest) doet hij niets.
+ */
+@Component
+public class CatalogChangeListener {
+
+    @Autowired
+    private ObjectProvider<CatalogVersions> catalogVersions;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void entityChanged(Object entity) {
+        catalogVersions.ifAvailable(versions -> {
+            if (entity instanceof Rental) {
+                versions.rentalsChanged();
+            } else {
+                versions.carsChanged();
+            }
+        });
+    }
+}
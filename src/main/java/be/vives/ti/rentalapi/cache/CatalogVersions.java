@@ -0,0 +1,62 @@
+package be.vives.ti.rentalapi.cache;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Wijzigingstellers voor de lijst endpoints (GET /api/cars en /api/rentals), de basis van hun ETag.
+ * Een teller gaat pas omhoog na de commit en maar één keer per transactie, hoeveel rijen er ook gewijzigd zijn.
+ * De tellers bestaan enkel in het geheugen, de epoch verschilt per opstart en per instantie,
+ * zodat een ETag van een andere instantie of van voor een herstart nooit matcht.
+ */
+@Component
+public class CatalogVersions {
+
+    private final String epoch = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    private final AtomicLong cars = new AtomicLong();
+    private final AtomicLong rentals = new AtomicLong();
+
+    public String getCarsETag() {
+        return eTag("cars", cars.get());
+    }
+
+    public String getRentalsETag() {
+        return eTag("rentals", rentals.get());
+    }
+
+    // ETag voor een versie die enkel in het geheugen van deze instantie bestaat
+    public String eTag(String name, long version) {
+        return ETags.of(name, epoch, version);
+    }
+
+    public void carsChanged() {
+        afterCommit(cars);
+    }
+
+    public void rentalsChanged() {
+        afterCommit(rentals);
+    }
+
+    private void afterCommit(AtomicLong counter) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            counter.incrementAndGet();
+            return;
+        }
+        boolean registered = TransactionSynchronizationManager.getSynchronizations().stream()
+                .anyMatch(synchronization -> synchronization instanceof Bump bump && bump.counter == counter);
+        if (!registered) {
+            TransactionSynchronizationManager.registerSynchronization(new Bump(counter));
+        }
+    }
+
+    private record Bump(AtomicLong counter) implements TransactionSynchronization {
+        @Override
+        public void afterCommit() {
+            counter.incrementAndGet();
+        }
+    }
+}
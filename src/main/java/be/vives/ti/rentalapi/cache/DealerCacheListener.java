@@ -0,0 +1,32 @@
+package be.vives.ti.rentalapi.cache;
+
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA listener op Dealer: elke update of delete van een dealer, langs welke repository ook,
+ * verwijdert de gecachte auto's van die dealer. Hibernate maakt de listener aan via Spring,
+ * in een context zonder cache (bv. @DataJpaTest) doet hij niets. De ids van de auto's worden pas
+ * na de commit opgevraagd, een query tijdens de flush mag niet in een JPA callback.
+ */
+@Component
+public class DealerCacheListener {
+
+    @Autowired
+    private ObjectProvider<CarDetailCache> carDetailCache;
+    @Autowired
+    private ObjectProvider<CarRepository> carRepository;
+
+    @PostUpdate
+    @PostRemove
+    public void dealerChanged(Dealer dealer) {
+        Integer dealerId = dealer.getId();
+        carDetailCache.ifAvailable(cache -> cache.invalidateDealer(dealerId,
+                () -> carRepository.getObject().findIdsByDealerId(dealerId)));
+    }
+}
@@ -0,0 +1,57 @@
+package be.vives.ti.rentalapi.cache;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Sterke ETags en de If-None-Match check. Een service kijkt eerst of de ETag van de client nog klopt
+ * en geeft dan een 304 terug, nog voor de body opgehaald, gemapt of geserialiseerd wordt.
+ */
+public final class ETags {
+
+    private ETags() {
+    }
+
+    // bv. "car-12-3"
+    public static String of(Object... parts) {
+        return Arrays.stream(parts)
+                .map(String::valueOf)
+                .collect(Collectors.joining("-", "\"", "\""));
+    }
+
+    // If-None-Match vergelijkt zwak, een W/ prefix van de client telt dus niet mee
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // no-cache: de client mag de body bijhouden, maar moet telkens met de ETag navragen
+    public static <T> ResponseEntity<T> ok(String eTag, T body) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag)
+                .body(body); // 200
+    }
+
+    public static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .cacheControl(CacheControl.noCache())
+                .eTag(eTag)
+                .build(); // 304
+    }
+}
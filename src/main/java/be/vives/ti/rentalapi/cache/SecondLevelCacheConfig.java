@@ -0,0 +1,77 @@
+package be.vives.ti.rentalapi.cache;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache voor Car, Dealer en Popularity en een query cache voor de leaderboard,
+ * in een lokale JCache (Caffeine). Elke regio krijgt zijn grootte uit application.properties.
+ * Elke Spring context krijgt een eigen CacheManager, zodat twee contexts (bv. in de testen)
+ * nooit elkaars entities zien. Slice testen (@DataJpaTest) laden deze config niet en draaien zonder cache.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rental.cache.l2.enabled", havingValue = "true", matchIfMissing = true)
+public class SecondLevelCacheConfig {
+
+    public static final String CAR_REGION = "car";
+    public static final String DEALER_REGION = "dealer";
+    public static final String POPULARITY_REGION = "popularity";
+    public static final String LEADERBOARD_REGION = "leaderboard";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager(@Value("${rental.cache.l2.car.maximum-size:10000}") long carSize,
+                                              @Value("${rental.cache.l2.dealer.maximum-size:1000}") long dealerSize,
+                                              @Value("${rental.cache.l2.popularity.maximum-size:10000}") long popularitySize,
+                                              @Value("${rental.cache.l2.query.maximum-size:100}") long querySize,
+                                              @Value("${rental.cache.l2.expire-after-write-seconds:600}") long expireAfterWriteSeconds) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("rental-l2-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        cacheManager.createCache(CAR_REGION, region(carSize, expireAfterWriteSeconds));
+        cacheManager.createCache(DEALER_REGION, region(dealerSize, expireAfterWriteSeconds));
+        cacheManager.createCache(POPULARITY_REGION, region(popularitySize, expireAfterWriteSeconds));
+        cacheManager.createCache(LEADERBOARD_REGION, region(querySize, expireAfterWriteSeconds));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                region(querySize, expireAfterWriteSeconds));
+        // de timestamps bepalen of een gecachte query nog geldig is, die mogen nooit weggegooid worden
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>());
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager,
+                                                                    @Value("${rental.cache.l2.statistics:false}") boolean statistics) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            // alle regio's zijn hierboven aangemaakt, een ontbrekende regio is een configuratiefout
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            properties.put(AvailableSettings.GENERATE_STATISTICS, statistics);
+        };
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maximumSize, long expireAfterWriteSeconds) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maximumSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(expireAfterWriteSeconds)));
+        return configuration;
+    }
+}
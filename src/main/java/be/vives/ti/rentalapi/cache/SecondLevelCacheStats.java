@@ -0,0 +1,50 @@
+package be.vives.ti.rentalapi.cache;
+
+import be.vives.ti.rentalapi.dto.response.CacheStatsResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hits en misses per regio van de Hibernate second-level cache.
+ * Enkel beschikbaar als rental.cache.l2.statistics aan staat (standaard enkel in het test profiel).
+ */
+@Component
+public class SecondLevelCacheStats {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public List<CacheStatsResponse> getStats() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return List.of();
+        }
+
+        List<CacheStatsResponse> stats = new ArrayList<>();
+        String[] regionNames = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regionNames);
+        for (String regionName : regionNames) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            long requests = region.getHitCount() + region.getMissCount();
+            stats.add(CacheStatsResponse.builder()
+                    .name("l2:" + regionName)
+                    .size(region.getElementCountInMemory() < 0 ? null : region.getElementCountInMemory())
+                    .hits(region.getHitCount())
+                    .misses(region.getMissCount())
+                    .hitRatio(requests == 0 ? 0.0 : (double) region.getHitCount() / requests)
+                    .build());
+        }
+        return stats;
+    }
+}
@@ -1,13 +1,20 @@
 package be.vives.ti.rentalapi.controller;
 
 import be.vives.ti.rentalapi.dto.request.CarRequest;
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
 import be.vives.ti.rentalapi.dto.response.*;
 import be.vives.ti.rentalapi.service.CarService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -17,16 +24,43 @@ public class CarController {
     @Autowired
     private CarService carService;
 
-    // GET ALL Cars
+    // GET ALL Cars, 304 als de catalogus niet gewijzigd is sinds de ETag van de client
     @GetMapping
-    public ResponseEntity<List<CarResponse>> getAllCars() {
-        return carService.getAllCars();
+    public ResponseEntity<List<CarResponse>> getAllCars(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return carService.getAllCars(ifNoneMatch);
+    }
+
+    // GET Cars per pagina (keyset op id), next bevat de cursor voor de volgende pagina
+    @GetMapping(params = "limit")
+    public ResponseEntity<CarPageResponse> getCarPage(@RequestParam int limit, @RequestParam(required = false) String cursor) {
+        return carService.getCarPage(limit, cursor);
+    }
+
+    // limit en stream samen is geen geldige combinatie, zonder deze mapping zijn de twee hierboven ambigu (500)
+    @GetMapping(params = {"limit", "stream"})
+    public ResponseEntity<Void> rejectStreamedPage() {
+        return ResponseEntity.badRequest().build(); // 400
+    }
+
+    // GET ALL Cars gestreamd vanuit de database
+    @GetMapping(params = "stream=true")
+    public void streamAllCars(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        carService.streamAllCars(response.getOutputStream());
+    }
+
+    // GET zoeken op merk, model, kleur, bouwjaar, vermogen en dealer, gesorteerd en per pagina
+    // met q erbij: full-text in merk, model en beschrijving, gerangschikt op relevantie
+    @GetMapping("/search")
+    public ResponseEntity<CarSearchResponse> searchCars(CarSearchRequest search) {
+        return carService.searchCars(search);
     }
 
     // GET Car by ID
     @GetMapping("/{id}")
-    public ResponseEntity<CarResponse> getCarById(@PathVariable Integer id) {
-        return carService.getCarById(id);
+    public ResponseEntity<CarResponse> getCarById(@PathVariable Integer id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return carService.getCarById(id, ifNoneMatch);
     }
 
     // POST new Car
@@ -35,6 +69,12 @@ public class CarController {
         return carService.createCar(carRequest);
     }
 
+    // POST meerdere auto's tegelijk (bv. een nieuwe dealer), met een resultaat per auto
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResponse<CarResponse>>> createCars(@RequestBody List<CarRequest> carRequests) {
+        return carService.createCars(carRequests);
+    }
+
     // PUT update Car
     @PutMapping("/{id}")
     public ResponseEntity<CarResponse> updateCar(@PathVariable Integer id, @Valid @RequestBody CarRequest carRequest) {
@@ -49,14 +89,50 @@ public class CarController {
 
     // GET Car with Dealer info
     @GetMapping("/carWithDealer/{id}")
-    public ResponseEntity<CarDealerResponse> getCarWithDealer(@PathVariable Integer id) {
-        return carService.getCarWithDealer(id);
+    public ResponseEntity<CarDealerResponse> getCarWithDealer(@PathVariable Integer id,
+                                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return carService.getCarWithDealer(id, ifNoneMatch);
     }
 
-    // GET top 4 Cars
+    // GET top N Cars (standaard 4)
     // werkt enkel als de auto een populariteit record heeft
     @GetMapping("/topCars")
-    public ResponseEntity<List<PopCarsResponse>> getTop4Cars() {
-        return carService.getTop4Cars();
+    public ResponseEntity<List<PopCarsResponse>> getTopCars(@RequestParam(defaultValue = "4") int limit,
+                                                            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return carService.getTopCars(limit, ifNoneMatch);
+    }
+
+    // GET auto's die van start tot en met end vrij zijn, met dezelfde filters en paginatie als /search
+    @GetMapping("/available")
+    public ResponseEntity<CarSearchResponse> getAvailableCars(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+                                                              @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate end,
+                                                              CarSearchRequest search) {
+        return carService.getAvailableCars(start, end, search);
+    }
+
+    // GET bezetting per auto (van één dealer of de hele vloot) voor days dagen vanaf start, als bitset per auto
+    @GetMapping("/occupancy")
+    public ResponseEntity<OccupancyResponse> getOccupancy(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start,
+                                                          @RequestParam(defaultValue = "90") int days,
+                                                          @RequestParam(required = false) Integer dealerId) {
+        return carService.getOccupancy(start, days, dealerId);
+    }
+
+    // POST zoekindex opnieuw opbouwen vanuit de database
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Void> rebuildSearchIndex() {
+        return carService.rebuildSearchIndex();
+    }
+
+    // POST top Cars opnieuw berekenen vanuit de database
+    @PostMapping("/topCars/rebuild")
+    public ResponseEntity<Void> rebuildTopCars() {
+        return carService.rebuildTopCars();
+    }
+
+    // GET hits, misses en evictions van de cache voor auto details
+    @GetMapping("/cacheStats")
+    public ResponseEntity<List<CacheStatsResponse>> getCacheStats() {
+        return carService.getCacheStats();
     }
 }
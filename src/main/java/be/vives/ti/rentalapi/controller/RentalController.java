@@ -1,14 +1,20 @@
 package be.vives.ti.rentalapi.controller;
 
 import be.vives.ti.rentalapi.dto.request.RentalRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
 import be.vives.ti.rentalapi.dto.response.RentalResponse;
 import be.vives.ti.rentalapi.service.RentalService;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/rentals")
@@ -17,16 +23,33 @@ public class RentalController {
     @Autowired
     private RentalService rentalService;
 
-    // GET All Rentals
+    // GET All Rentals, 304 als er sinds de ETag van de client geen rental gewijzigd is
     @GetMapping
-    public ResponseEntity<List<RentalResponse>> getAllRentals() {
-        return rentalService.getAllRentals();
+    public ResponseEntity<List<RentalResponse>> getAllRentals(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return rentalService.getAllRentals(ifNoneMatch);
+    }
+
+    // GET export van alle Rentals als NDJSON (standaard) of CSV, gestreamd vanuit de database
+    @GetMapping("/export")
+    public void exportRentals(@RequestParam(defaultValue = "ndjson") String format, HttpServletResponse response) throws IOException {
+        if (format.equalsIgnoreCase("ndjson")) {
+            response.setContentType("application/x-ndjson");
+            rentalService.exportRentalsAsNdjson(response.getOutputStream());
+        } else if (format.equalsIgnoreCase("csv")) {
+            response.setContentType("text/csv");
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader("Content-Disposition", "attachment; filename=\"rentals.csv\"");
+            rentalService.exportRentalsAsCsv(response.getOutputStream());
+        } else {
+            response.setStatus(HttpStatus.BAD_REQUEST.value()); // 400
+        }
     }
 
     // GET Rental by ID
     @GetMapping("/{id}")
-    public ResponseEntity<RentalResponse> getRentalById(@PathVariable Integer id) {
-        return rentalService.getRentalById(id);
+    public ResponseEntity<RentalResponse> getRentalById(@PathVariable Integer id,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return rentalService.getRentalById(id, ifNoneMatch);
     }
 
     // POST a new Rental
@@ -35,6 +58,36 @@ public class RentalController {
         return rentalService.createRental(rentalRequest);
     }
 
+    // POST meerdere bookings tegelijk (bv. reisbureaus), met een resultaat per booking
+    @PostMapping("/batch")
+    public ResponseEntity<List<BatchItemResponse<RentalResponse>>> createRentals(@RequestBody List<RentalRequest> rentalRequests) {
+        return rentalService.createRentals(rentalRequests);
+    }
+
+    // POST een hold: de auto wordt voor de periode vastgehouden tot bevestigen, vrijgeven of verlopen
+    @PostMapping("/holds")
+    public ResponseEntity<RentalResponse> createHold(@Valid @RequestBody RentalRequest rentalRequest) {
+        return rentalService.createHold(rentalRequest);
+    }
+
+    // GET een actieve hold
+    @GetMapping("/holds/{holdId}")
+    public ResponseEntity<RentalResponse> getHold(@PathVariable UUID holdId) {
+        return rentalService.getHold(holdId);
+    }
+
+    // POST bevestigen: de hold wordt een rental
+    @PostMapping("/holds/{holdId}/confirm")
+    public ResponseEntity<RentalResponse> confirmHold(@PathVariable UUID holdId) {
+        return rentalService.confirmHold(holdId);
+    }
+
+    // DELETE een hold vrijgeven
+    @DeleteMapping("/holds/{holdId}")
+    public ResponseEntity<Void> releaseHold(@PathVariable UUID holdId) {
+        return rentalService.releaseHold(holdId);
+    }
+
     // PUT (update) a Rental
     @PutMapping("/{id}")
     public ResponseEntity<RentalResponse> updateRental(@PathVariable Integer id, @Valid @RequestBody RentalRequest rentalRequest) {
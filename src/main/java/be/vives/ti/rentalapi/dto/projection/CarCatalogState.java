@@ -0,0 +1,5 @@
+package be.vives.ti.rentalapi.dto.projection;
+
+// aantal auto's, som van de versies en hoogste id: verandert bij elke insert, update of delete van een auto
+public record CarCatalogState(Long count, Long versionSum, Integer maxId) {
+}
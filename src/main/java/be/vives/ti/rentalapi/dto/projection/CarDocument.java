@@ -0,0 +1,6 @@
+package be.vives.ti.rentalapi.dto.projection;
+
+// alle velden van een auto die in de zoekindex komen, inclusief de dealer en de versie
+public record CarDocument(Integer id, String brand, String model, Integer power, Integer year, String color,
+                          String imageUri, String description, Integer dealerId, Long version) {
+}
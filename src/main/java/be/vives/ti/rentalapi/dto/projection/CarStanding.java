@@ -0,0 +1,5 @@
+package be.vives.ti.rentalapi.dto.projection;
+
+// likes en power van een auto, genoeg om de ranking van de populairste auto's te bepalen
+public record CarStanding(Integer carId, Integer likes, Integer power) {
+}
@@ -0,0 +1,7 @@
+package be.vives.ti.rentalapi.dto.projection;
+
+import java.time.LocalDate;
+
+// enkel de kolommen die nodig zijn om de beschikbaarheid van een auto te bepalen
+public record RentalPeriod(Integer rentalId, Integer carId, LocalDate startDate, LocalDate endDate) {
+}
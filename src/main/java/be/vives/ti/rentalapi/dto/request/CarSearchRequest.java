@@ -0,0 +1,45 @@
+package be.vives.ti.rentalapi.dto.request;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+// filters voor GET /api/cars/search, als query parameters; een filter dat null is doet niet mee
+@Getter
+@Setter
+@Builder
+public class CarSearchRequest {
+    // vrije tekst in merk, model en beschrijving, het resultaat is dan gerangschikt op relevantie
+    private String q;
+    private String brand;
+    private String model;
+    private String color;
+    private Integer minYear;
+    private Integer maxYear;
+    private Integer minPower;
+    private Integer maxPower;
+    private Integer dealerId;
+    private Integer page;
+    private Integer size;
+    // id, brand, model, year of power
+    private String sort;
+    // asc of desc
+    private String direction;
+
+    public CarSearchRequest(String q, String brand, String model, String color, Integer minYear, Integer maxYear, Integer minPower,
+                            Integer maxPower, Integer dealerId, Integer page, Integer size, String sort, String direction) {
+        this.q = q;
+        this.brand = brand;
+        this.model = model;
+        this.color = color;
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        this.minPower = minPower;
+        this.maxPower = maxPower;
+        this.dealerId = dealerId;
+        this.page = page;
+        this.size = size;
+        this.sort = sort;
+        this.direction = direction;
+    }
+}
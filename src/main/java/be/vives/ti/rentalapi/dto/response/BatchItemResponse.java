@@ -0,0 +1,23 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+// resultaat van één element uit een batch request, status is de HTTP status die het losse request gekregen zou hebben
+@Getter
+@Setter
+@Builder
+public class BatchItemResponse<T> {
+    private Integer index;
+    private Integer status;
+    private T result;
+    private String message;
+
+    public BatchItemResponse(Integer index, Integer status, T result, String message) {
+        this.index = index;
+        this.status = status;
+        this.result = result;
+        this.message = message;
+    }
+}
@@ -0,0 +1,26 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Builder
+public class CacheStatsResponse {
+    private String name;
+    private Long size;
+    private Long hits;
+    private Long misses;
+    private Long evictions;
+    private Double hitRatio;
+
+    public CacheStatsResponse(String name, Long size, Long hits, Long misses, Long evictions, Double hitRatio) {
+        this.name = name;
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.hitRatio = hitRatio;
+    }
+}
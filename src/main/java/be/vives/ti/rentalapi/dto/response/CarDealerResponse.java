@@ -1,5 +1,6 @@
 package be.vives.ti.rentalapi.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -25,6 +26,12 @@ public class CarDealerResponse {
     private Integer dealerPostcode;
     private Integer dealerPhone;
 
+    // versies van auto en dealer, samen met de dealer id de basis voor de ETag en niet in de JSON
+    @JsonIgnore
+    private Long carVersion;
+    @JsonIgnore
+    private Long dealerVersion;
+
     public CarDealerResponse(Integer carId, String brand, String model, Integer power, Integer year, String color, String imageUri, String description, Integer dealerId, String dealerName, String dealerAddress, String dealerCity, String dealerEmail, Integer dealerPostcode, Integer dealerPhone) {
         this.carId = carId;
         this.brand = brand;
@@ -42,4 +49,10 @@ public class CarDealerResponse {
         this.dealerPostcode = dealerPostcode;
         this.dealerPhone = dealerPhone;
     }
+
+    public CarDealerResponse(Integer carId, String brand, String model, Integer power, Integer year, String color, String imageUri, String description, Integer dealerId, String dealerName, String dealerAddress, String dealerCity, String dealerEmail, Integer dealerPostcode, Integer dealerPhone, Long carVersion, Long dealerVersion) {
+        this(carId, brand, model, power, year, color, imageUri, description, dealerId, dealerName, dealerAddress, dealerCity, dealerEmail, dealerPostcode, dealerPhone);
+        this.carVersion = carVersion;
+        this.dealerVersion = dealerVersion;
+    }
 }
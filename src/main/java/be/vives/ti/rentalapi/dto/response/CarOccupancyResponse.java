@@ -0,0 +1,21 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+// bezetting van één auto: booked is een base64 bitset, dag i in byte i / 8 op bit i % 8 (minst significante bit eerst)
+@Getter
+@Setter
+@Builder
+public class CarOccupancyResponse {
+    private Integer carId;
+    private Integer bookedDays;
+    private String booked;
+
+    public CarOccupancyResponse(Integer carId, Integer bookedDays, String booked) {
+        this.carId = carId;
+        this.bookedDays = bookedDays;
+        this.booked = booked;
+    }
+}
@@ -0,0 +1,21 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class CarPageResponse {
+    private List<CarResponse> items;
+    // opaque cursor voor de volgende pagina, null als er geen volgende pagina is
+    private String next;
+
+    public CarPageResponse(List<CarResponse> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+}
@@ -1,6 +1,7 @@
 // CarResponse.java
 package be.vives.ti.rentalapi.dto.response;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.Setter;
@@ -19,6 +20,10 @@ public class CarResponse {
     private String imageUri;
     private String description;
 
+    // versie van de auto, enkel voor de ETag en niet in de JSON
+    @JsonIgnore
+    private Long version;
+
     public CarResponse(Integer id, String brand, String model, Integer power, Integer year, String color, String imageUri, String description) {
         this.id = id;
         this.brand = brand;
@@ -29,4 +34,9 @@ public class CarResponse {
         this.imageUri = imageUri;
         this.description = description;
     }
+
+    public CarResponse(Integer id, String brand, String model, Integer power, Integer year, String color, String imageUri, String description, Long version) {
+        this(id, brand, model, power, year, color, imageUri, description);
+        this.version = version;
+    }
 }
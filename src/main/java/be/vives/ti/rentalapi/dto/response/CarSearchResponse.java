@@ -0,0 +1,26 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class CarSearchResponse {
+    private List<CarResponse> items;
+    private Integer page;
+    private Integer size;
+    private Long totalElements;
+    private Integer totalPages;
+
+    public CarSearchResponse(List<CarResponse> items, Integer page, Integer size, Long totalElements, Integer totalPages) {
+        this.items = items;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+        this.totalPages = totalPages;
+    }
+}
@@ -0,0 +1,28 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Een hold op een auto: de gevraagde booking (nog zonder rental id) met het id van de hold en wanneer die verloopt.
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HoldResponse extends RentalResponse {
+    private UUID holdId;
+    private Instant expiresAt;
+
+    public HoldResponse(UUID holdId, Instant expiresAt, Integer carId, BigDecimal rentalPrice, LocalDate startDate,
+                        LocalDate endDate, BigDecimal deposit, String pickupLocation, String email) {
+        super(null, carId, rentalPrice, startDate, endDate, deposit, pickupLocation, email);
+        this.holdId = holdId;
+        this.expiresAt = expiresAt;
+    }
+}
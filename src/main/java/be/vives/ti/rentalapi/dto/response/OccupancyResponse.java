@@ -0,0 +1,23 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Getter
+@Setter
+@Builder
+public class OccupancyResponse {
+    private LocalDate start;
+    private Integer days;
+    private List<CarOccupancyResponse> cars;
+
+    public OccupancyResponse(LocalDate start, Integer days, List<CarOccupancyResponse> cars) {
+        this.start = start;
+        this.days = days;
+        this.cars = cars;
+    }
+}
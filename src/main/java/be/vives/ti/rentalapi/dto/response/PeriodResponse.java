@@ -0,0 +1,25 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+// een periode van een auto (grenzen inclusief), rentalId enkel als het een bestaande rental is
+@Getter
+@Setter
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PeriodResponse {
+    private Integer rentalId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    public PeriodResponse(Integer rentalId, LocalDate startDate, LocalDate endDate) {
+        this.rentalId = rentalId;
+        this.startDate = startDate;
+        this.endDate = endDate;
+    }
+}
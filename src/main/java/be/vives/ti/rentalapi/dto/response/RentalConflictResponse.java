@@ -0,0 +1,30 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Body van een 409 bij het boeken of wijzigen van een rental: de gevraagde auto en periode (de andere velden
+ * van RentalResponse blijven weg), de rentals die de periode blokkeren, de dichtste vrije periodes van dezelfde
+ * lengte voor die auto en auto's van dezelfde dealer die in de gevraagde periode vrij zijn.
+ */
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RentalConflictResponse extends RentalResponse {
+    private List<PeriodResponse> conflicts;
+    private List<PeriodResponse> alternatives;
+    private List<CarResponse> availableCars;
+
+    public RentalConflictResponse(Integer carId, LocalDate startDate, LocalDate endDate, List<PeriodResponse> conflicts,
+                                  List<PeriodResponse> alternatives, List<CarResponse> availableCars) {
+        super(null, carId, null, startDate, endDate, null, null, null);
+        this.conflicts = conflicts;
+        this.alternatives = alternatives;
+        this.availableCars = availableCars;
+    }
+}
@@ -0,0 +1,30 @@
+package be.vives.ti.rentalapi.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+// één trage query uit de slow-query log, parameters per execution (meerdere bij een batch)
+@Getter
+@Setter
+@Builder
+public class SlowQueryResponse {
+    private Instant timestamp;
+    private Double durationMs;
+    private String sql;
+    private List<String> parameters;
+    private String caller;
+    private String request;
+
+    public SlowQueryResponse(Instant timestamp, Double durationMs, String sql, List<String> parameters, String caller, String request) {
+        this.timestamp = timestamp;
+        this.durationMs = durationMs;
+        this.sql = sql;
+        this.parameters = parameters;
+        this.caller = caller;
+        this.request = request;
+    }
+}
@@ -0,0 +1,27 @@
+package be.vives.ti.rentalapi.metrics;
+
+import be.vives.ti.rentalapi.availability.BookingHolds;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actieve holds en het aantal holds dat verlopen is zonder bevestigd of vrijgegeven te worden.
+ */
+@Component
+public class BookingHoldMetrics implements MeterBinder {
+
+    @Autowired
+    private BookingHolds bookingHolds;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("rental.booking.holds.active", bookingHolds, BookingHolds::getActiveCount)
+                .register(registry);
+        FunctionCounter.builder("rental.booking.holds.expired", bookingHolds, BookingHolds::getExpiredCount)
+                .register(registry);
+    }
+}
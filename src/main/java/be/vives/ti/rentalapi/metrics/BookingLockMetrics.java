@@ -0,0 +1,37 @@
+package be.vives.ti.rentalapi.metrics;
+
+import be.vives.ti.rentalapi.service.BookingLocks;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wachttijd op de booking locks: hoe vaak er gewacht moest worden en hoe lang in totaal.
+ * Stijgt de wachttijd sneller dan het aantal bookings, dan vechten te veel bookings om dezelfde stripes.
+ */
+@Component
+public class BookingLockMetrics implements MeterBinder {
+
+    @Autowired
+    private BookingLocks bookingLocks;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rental.booking.locks.acquisitions", bookingLocks, BookingLocks::getAcquisitions)
+                .register(registry);
+        FunctionCounter.builder("rental.booking.locks.contended", bookingLocks, BookingLocks::getContended)
+                .description("Acquisitions that had to wait for another booking")
+                .register(registry);
+        FunctionCounter.builder("rental.booking.locks.wait", bookingLocks, locks -> locks.getTotalWaitMillis() / 1000)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("rental.booking.locks.wait.max", bookingLocks, locks -> locks.getMaxWaitMillis() / 1000)
+                .baseUnit("seconds")
+                .register(registry);
+        Gauge.builder("rental.booking.locks.stripes", bookingLocks, BookingLocks::getStripeCount)
+                .register(registry);
+    }
+}
@@ -0,0 +1,81 @@
+package be.vives.ti.rentalapi.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Telt de uitkomst van elke booking als rental.bookings{source, outcome}, los van de HTTP status van de request:
+ * een batch van 500 bookings telt 500 keer. Alle combinaties bestaan vanaf de start (op 0),
+ * zodat een rate() in Prometheus ook werkt voor een uitkomst die nog nooit voorkwam.
+ * Met de group commit aan ook de grootte en duur van elke batch en hoe lang een booking op zijn commit wachtte.
+ */
+@Component
+public class BookingMetrics {
+
+    public static final String BOOKINGS = "rental.bookings";
+    public static final String SINGLE = "single";
+    public static final String BATCH = "batch";
+    // holds tijdens de checkout en het bevestigen ervan tot een rental
+    public static final String HOLD = "hold";
+    public static final String CONFIRM = "confirm";
+
+    private static final List<String> OUTCOMES = List.of("created", "conflict", "not_found", "invalid", "other");
+
+    public static final String GROUP_COMMIT = "rental.booking.group-commit";
+
+    private final MeterRegistry registry;
+    private final DistributionSummary groupCommitBatchSize;
+    private final Timer groupCommitDuration;
+    private final Timer groupCommitWait;
+
+    public BookingMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.groupCommitBatchSize = DistributionSummary.builder(GROUP_COMMIT + ".batch.size")
+                .description("Rentals per group commit transaction")
+                .register(registry);
+        this.groupCommitDuration = Timer.builder(GROUP_COMMIT + ".duration")
+                .description("Duration of one group commit transaction")
+                .register(registry);
+        this.groupCommitWait = Timer.builder(GROUP_COMMIT + ".wait")
+                .description("Time from queueing a booking until its batch was committed")
+                .register(registry);
+        for (String source : List.of(SINGLE, BATCH, HOLD, CONFIRM)) {
+            for (String outcome : OUTCOMES) {
+                counter(source, outcome);
+            }
+        }
+    }
+
+    public void record(String source, int status) {
+        counter(source, outcome(status)).increment();
+    }
+
+    public void recordGroupCommit(int batchSize, long durationNanos) {
+        groupCommitBatchSize.record(batchSize);
+        groupCommitDuration.record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordGroupCommitWait(long waitNanos) {
+        groupCommitWait.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    static String outcome(int status) {
+        return switch (status) {
+            case 201 -> "created";
+            case 409 -> "conflict";
+            case 404 -> "not_found";
+            case 400 -> "invalid";
+            default -> "other";
+        };
+    }
+
+    private Counter counter(String source, String outcome) {
+        return registry.counter(BOOKINGS, "source", source, "outcome", outcome);
+    }
+}
@@ -0,0 +1,73 @@
+package be.vives.ti.rentalapi.metrics;
+
+import be.vives.ti.rentalapi.cache.CarDetailCache;
+import be.vives.ti.rentalapi.cache.SecondLevelCacheStats;
+import be.vives.ti.rentalapi.dto.response.CacheStatsResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Hits, misses, evictions en grootte van de caches uit /api/cars/cacheStats, onder de standaard Micrometer namen
+ * (cache.gets{result=hit|miss}, cache.evictions, cache.size), zodat de hit ratio in Prometheus een rate() is.
+ * De regio's van de second-level cache zijn er enkel bij als rental.cache.l2.statistics aan staat.
+ */
+@Component
+public class CacheMetrics implements MeterBinder {
+
+    @Autowired
+    private CarDetailCache carDetailCache;
+
+    @Autowired
+    private SecondLevelCacheStats secondLevelCacheStats;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (CacheStatsResponse cache : stats()) {
+            String name = cache.getName();
+            FunctionCounter.builder("cache.gets", this, metrics -> metrics.value(name, CacheStatsResponse::getHits))
+                    .tag("cache", name)
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("cache.gets", this, metrics -> metrics.value(name, CacheStatsResponse::getMisses))
+                    .tag("cache", name)
+                    .tag("result", "miss")
+                    .register(registry);
+            if (cache.getEvictions() != null) {
+                FunctionCounter.builder("cache.evictions", this, metrics -> metrics.value(name, CacheStatsResponse::getEvictions))
+                        .tag("cache", name)
+                        .register(registry);
+            }
+            if (cache.getSize() != null) {
+                Gauge.builder("cache.size", this, metrics -> metrics.value(name, CacheStatsResponse::getSize))
+                        .tag("cache", name)
+                        .register(registry);
+            }
+        }
+    }
+
+    private List<CacheStatsResponse> stats() {
+        List<CacheStatsResponse> stats = new ArrayList<>(carDetailCache.getStats());
+        stats.addAll(secondLevelCacheStats.getStats());
+        return stats;
+    }
+
+    // bij elke scrape opnieuw opgevraagd, het zijn maar een handvol caches
+    private double value(String name, Function<CacheStatsResponse, Long> field) {
+        return stats().stream()
+                .filter(cache -> cache.getName().equals(name))
+                .map(field)
+                .filter(Objects::nonNull)
+                .mapToDouble(Long::doubleValue)
+                .findFirst()
+                .orElse(Double.NaN);
+    }
+}
@@ -1,15 +1,29 @@
 package be.vives.ti.rentalapi.model;
 
+import be.vives.ti.rentalapi.cache.CatalogChangeListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDate;
 
 @Entity
+@EntityListeners(CatalogChangeListener.class)
 @Getter
 @Setter
-@Table(name = "car")
+// indexen voor GET /api/cars/search: eerst de kolommen met gelijkheid, dan het bereik (bouwjaar, vermogen)
+@Table(name = "car", indexes = {
+        @Index(name = "ix_car_brand_model_year", columnList = "brand, model, \"year\""),
+        @Index(name = "ix_car_color_year", columnList = "color, \"year\""),
+        @Index(name = "ix_car_dealer_year", columnList = "dealer_id, \"year\""),
+        @Index(name = "ix_car_year_power", columnList = "\"year\", power"),
+        @Index(name = "ix_car_power_year", columnList = "power, \"year\"")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "car")
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -50,10 +64,16 @@ public class Car {
     @Size(max = 3000)
     private String description;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "dealer_id", nullable = false)
     private Dealer dealer;
 
+    // optimistic locking en basis voor de ETag, bestaande rijen krijgen 0
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     @PrePersist
     @PreUpdate
     private void validateYear() {
@@ -74,7 +94,7 @@ public class Car {
                 "   color = '" + color + '\'' +
                 "   imageUri = '" + imageUri + '\'' +
                 "   description = '" + description + '\'' +
-                "   dealer = " + dealer +
+                "   dealerId = " + (dealer == null ? null : dealer.getId()) +
                 '}';
     }
 }
@@ -1,15 +1,22 @@
 package be.vives.ti.rentalapi.model;
 
+import be.vives.ti.rentalapi.cache.DealerCacheListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.List;
 
 @Entity
+@EntityListeners(DealerCacheListener.class)
 @Getter
 @Setter
 @Table(name = "dealer")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "dealer")
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -52,6 +59,12 @@ public class Dealer {
     @OneToMany(mappedBy = "dealer", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Car> cars;
 
+    // optimistic locking en basis voor de ETag, bestaande rijen krijgen 0
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     @Override
     public String toString() {
         return "Dealer {" +
@@ -3,11 +3,16 @@ package be.vives.ti.rentalapi.model;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 
 @Entity
 @Getter
 @Setter
 @Table(name = "popularity")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "popularity")
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -18,7 +23,7 @@ public class Popularity {
     private Integer id;
 
     @NotNull
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "car_id", nullable = false, unique = true)
     private Car car;
 
@@ -26,11 +31,17 @@ public class Popularity {
     @Min(0)
     private Integer likes;
 
+    // optimistic locking en basis voor de ETag, bestaande rijen krijgen 0
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     @Override
     public String toString() {
         return "Popularity {" +
                 "   id = " + id +
-                "   car = " + car +
+                "   carId = " + (car == null ? null : car.getId()) +
                 "   likes = " + likes +
                 '}';
     }
@@ -1,16 +1,20 @@
 package be.vives.ti.rentalapi.model;
 
+import be.vives.ti.rentalapi.cache.CatalogChangeListener;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
+@EntityListeners(CatalogChangeListener.class)
 @Getter
 @Setter
-@Table(name = "Rental")
+// covering index voor de overlap-check per auto en voor GET /api/cars/available (anti-join op rental)
+@Table(name = "Rental", indexes = @Index(name = "ix_rental_car_dates", columnList = "car_id, start_date, end_date"))
 @Builder
 @AllArgsConstructor
 @NoArgsConstructor
@@ -21,7 +25,7 @@ public class Rental {
     private Integer id;
 
     @NotNull
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "car_id", nullable = false)
     private Car car;
 
@@ -57,11 +61,17 @@ public class Rental {
     @Column(nullable = false)
     private String email;
 
+    // optimistic locking en basis voor de ETag, bestaande rijen krijgen 0
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+
     @Override
     public String toString() {
         return "Rental {" +
                 "   id = " + id +
-                "   car = " + car +
+                "   carId = " + (car == null ? null : car.getId()) +
                 "   rentalPrice = " + rentalPrice +
                 "   startDate = " + startDate +
                 "   endDate = " + endDate +
@@ -0,0 +1,40 @@
+package be.vives.ti.rentalapi.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDate;
+
+// één rij per auto per verhuurde dag, de primary key (car_id, slot_date) laat de database dubbele bookings weigeren
+@Entity
+@Getter
+@Setter
+@Table(name = "rental_slot", indexes = @Index(name = "ix_rental_slot_rental_id", columnList = "rental_id"))
+@IdClass(RentalSlotId.class)
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class RentalSlot {
+
+    @Id
+    @Column(name = "car_id")
+    private Integer carId;
+
+    @Id
+    @Column(name = "slot_date")
+    private LocalDate slotDate;
+
+    @NotNull
+    @Column(name = "rental_id", nullable = false)
+    private Integer rentalId;
+
+    @Override
+    public String toString() {
+        return "RentalSlot {" +
+                "   carId = " + carId +
+                "   slotDate = " + slotDate +
+                "   rentalId = " + rentalId +
+                '}';
+    }
+}
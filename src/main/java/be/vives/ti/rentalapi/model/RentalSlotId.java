@@ -0,0 +1,20 @@
+package be.vives.ti.rentalapi.model;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class RentalSlotId implements Serializable {
+    private Integer carId;
+    private LocalDate slotDate;
+}
@@ -1,12 +1,89 @@
 package be.vives.ti.rentalapi.repository;
 
+import be.vives.ti.rentalapi.dto.projection.CarCatalogState;
+import be.vives.ti.rentalapi.dto.projection.CarDocument;
+import be.vives.ti.rentalapi.dto.response.CarDealerResponse;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
 import be.vives.ti.rentalapi.model.Car;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
-public interface CarRepository extends JpaRepository<Car, Integer> {
+public interface CarRepository extends JpaRepository<Car, Integer>, JpaSpecificationExecutor<Car> {
+
+    // volledige catalogus als DTO in één query, zonder de dealer per auto op te halen
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.CarResponse(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description) " +
+            "FROM Car c ORDER BY c.id")
+    List<CarResponse> findAllResponses();
+
+    // detail van een auto, enkel als er ook een popularity record is (zoals getCarById altijd gecontroleerd heeft)
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.CarResponse(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description, c.version) " +
+            "FROM Popularity p JOIN p.car c WHERE c.id = :id")
+    Optional<CarResponse> findResponseById(@Param("id") Integer id);
+
+    // auto en dealer in één query via een join
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.CarDealerResponse(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description, " +
+            "d.id, d.name, d.address, d.city, d.email, d.postcode, d.phone, c.version, d.version) " +
+            "FROM Car c JOIN c.dealer d WHERE c.id = :id")
+    Optional<CarDealerResponse> findCarWithDealerById(@Param("id") Integer id);
+
+    // keyset paginatie op id, de dealer wordt niet geladen
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.CarResponse(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description) " +
+            "FROM Car c WHERE c.id > :afterId ORDER BY c.id")
+    List<CarResponse> findPageAfter(@Param("afterId") Integer afterId, Limit limit);
+
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.CarResponse(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description) " +
+            "FROM Car c WHERE c.id IN :ids")
+    List<CarResponse> findAllResponsesById(@Param("ids") Collection<Integer> ids);
+
+    // forward-only cursor over de volledige catalogus, enkel bruikbaar binnen een transactie
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.CarResponse(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description) " +
+            "FROM Car c ORDER BY c.id")
+    Stream<CarResponse> streamAll();
+
+    // alle auto's voor het opbouwen van de zoekindex, enkel bruikbaar binnen een transactie
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new be.vives.ti.rentalapi.dto.projection.CarDocument(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description, c.dealer.id, c.version) " +
+            "FROM Car c ORDER BY c.id")
+    Stream<CarDocument> streamDocuments();
+
+    // enkel de ids, voor de rijen van de bezettingsmatrix
+    @Query("SELECT c.id FROM Car c ORDER BY c.id")
+    List<Integer> findAllIds();
+
+    @Query("SELECT c.id FROM Car c WHERE c.dealer.id = :dealerId ORDER BY c.id")
+    List<Integer> findIdsByDealerId(@Param("dealerId") Integer dealerId);
+
+    // om bij het opstarten te zien of de zoekindex op schijf nog overeenkomt met de database
+    @Query("SELECT new be.vives.ti.rentalapi.dto.projection.CarCatalogState(" +
+            "COUNT(c), COALESCE(SUM(c.version), 0L), COALESCE(MAX(c.id), 0)) FROM Car c")
+    CarCatalogState findCatalogState();
 }
@@ -0,0 +1,71 @@
+package be.vives.ti.rentalapi.repository;
+
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Rental;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDate;
+
+/**
+ * Filters voor het zoeken naar auto's. Elk filter is een gelijkheid of een bereik op één kolom,
+ * zodat de database de indexen op car kan gebruiken (geen LIKE '%...%' of functies op de kolom).
+ */
+public final class CarSpecifications {
+
+    private CarSpecifications() {
+    }
+
+    public static Specification<Car> matching(CarSearchRequest search) {
+        return Specification.where(equal("brand", search.getBrand()))
+                .and(equal("model", search.getModel()))
+                .and(equal("color", search.getColor()))
+                .and(between("year", search.getMinYear(), search.getMaxYear()))
+                .and(between("power", search.getMinPower(), search.getMaxPower()))
+                .and(hasDealer(search.getDealerId()));
+    }
+
+    static Specification<Car> equal(String attribute, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get(attribute), value);
+    }
+
+    static Specification<Car> between(String attribute, Integer min, Integer max) {
+        if (min == null && max == null) {
+            return null;
+        }
+        if (max == null) {
+            return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get(attribute), min);
+        }
+        if (min == null) {
+            return (root, query, cb) -> cb.lessThanOrEqualTo(root.get(attribute), max);
+        }
+        return (root, query, cb) -> cb.between(root.get(attribute), min, max);
+    }
+
+    // anti-join: geen rental van de auto die de periode overlapt (grenzen inclusief, zoals existsByCarIdAndDateRange)
+    // per auto één seek in ix_rental_car_dates, zonder de rental rijen zelf te lezen
+    public static Specification<Car> availableBetween(LocalDate startDate, LocalDate endDate) {
+        return (root, query, cb) -> {
+            Subquery<Integer> overlapping = query.subquery(Integer.class);
+            Root<Rental> rental = overlapping.from(Rental.class);
+            overlapping.select(cb.literal(1))
+                    .where(cb.equal(rental.get("car").get("id"), root.get("id")),
+                            cb.lessThanOrEqualTo(rental.get("startDate"), endDate),
+                            cb.greaterThanOrEqualTo(rental.get("endDate"), startDate));
+            return cb.not(cb.exists(overlapping));
+        };
+    }
+
+    // op de foreign key zelf, zonder join naar dealer
+    static Specification<Car> hasDealer(Integer dealerId) {
+        if (dealerId == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("dealer").get("id"), dealerId);
+    }
+}
@@ -1,13 +1,43 @@
 package be.vives.ti.rentalapi.repository;
 
+import be.vives.ti.rentalapi.cache.SecondLevelCacheConfig;
+import be.vives.ti.rentalapi.dto.projection.CarStanding;
+import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
 import be.vives.ti.rentalapi.model.Popularity;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.HibernateHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.HibernateHints.HINT_CACHE_REGION;
+
 @Repository
 public interface PopularityRepository extends JpaRepository<Popularity, Integer> {
     Optional<Popularity> findByCarId(Integer carId);
     Optional<Popularity> deleteByCarId(Integer userId);
+
+    // likes en power van elke auto in één query, zonder de Car entities te laden
+    // in de query cache, PopularityCounters leegt de regio na elke flush
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = SecondLevelCacheConfig.LEADERBOARD_REGION)
+    })
+    @Query("SELECT new be.vives.ti.rentalapi.dto.projection.CarStanding(p.car.id, p.likes, p.car.power) " +
+            "FROM Popularity p")
+    List<CarStanding> findAllStandings();
+
+    // auto en likes samen in één join, in plaats van een select per auto
+    @QueryHints({
+            @QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = SecondLevelCacheConfig.LEADERBOARD_REGION)
+    })
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.PopCarsResponse(" +
+            "c.id, c.brand, c.model, c.power, c.year, c.color, c.imageUri, c.description, p.likes) " +
+            "FROM Popularity p JOIN p.car c")
+    List<PopCarsResponse> findAllPopCars();
 }
@@ -1,12 +1,22 @@
 package be.vives.ti.rentalapi.repository;
 
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
+import be.vives.ti.rentalapi.dto.response.RentalResponse;
 import be.vives.ti.rentalapi.model.Rental;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface RentalRepository extends JpaRepository<Rental, Integer> {
@@ -18,4 +28,43 @@ public interface RentalRepository extends JpaRepository<Rental, Integer> {
                                       @Param("endDate") LocalDate endDate);
 
     void deleteAllByCarId(Integer id);
+
+    // enkel id, car_id en de datums, om de beschikbaarheidsindex op te bouwen
+    @Query("SELECT new be.vives.ti.rentalapi.dto.projection.RentalPeriod(r.id, r.car.id, r.startDate, r.endDate) " +
+            "FROM Rental r")
+    List<RentalPeriod> findAllPeriods();
+
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.RentalResponse(" +
+            "r.id, r.car.id, r.rentalPrice, r.startDate, r.endDate, r.deposit, r.pickupLocation, r.email) " +
+            "FROM Rental r ORDER BY r.id")
+    List<RentalResponse> findAllResponses();
+
+    // alle rentals die de periode raken, in één range scan (bezettingsmatrix van de volledige vloot)
+    @Query("SELECT new be.vives.ti.rentalapi.dto.projection.RentalPeriod(r.id, r.car.id, r.startDate, r.endDate) " +
+            "FROM Rental r WHERE r.startDate <= :endDate AND r.endDate >= :startDate")
+    List<RentalPeriod> findPeriodsByDateRange(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate);
+
+    @Query("SELECT new be.vives.ti.rentalapi.dto.projection.RentalPeriod(r.id, r.car.id, r.startDate, r.endDate) " +
+            "FROM Rental r WHERE r.car.dealer.id = :dealerId AND r.startDate <= :endDate AND r.endDate >= :startDate")
+    List<RentalPeriod> findPeriodsByDealerIdAndDateRange(@Param("dealerId") Integer dealerId,
+                                                         @Param("startDate") LocalDate startDate,
+                                                         @Param("endDate") LocalDate endDate);
+
+    // bestaande periodes van alle auto's uit een batch booking binnen het datumvenster van de batch, in één query
+    @Query("SELECT new be.vives.ti.rentalapi.dto.projection.RentalPeriod(r.id, r.car.id, r.startDate, r.endDate) " +
+            "FROM Rental r WHERE r.car.id IN :carIds AND r.startDate <= :endDate AND r.endDate >= :startDate")
+    List<RentalPeriod> findPeriodsByCarIdsAndDateRange(@Param("carIds") Collection<Integer> carIds,
+                                                       @Param("startDate") LocalDate startDate,
+                                                       @Param("endDate") LocalDate endDate);
+
+    // forward-only cursor voor de export, r.car.id leest enkel de car_id kolom zonder join
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT new be.vives.ti.rentalapi.dto.response.RentalResponse(" +
+            "r.id, r.car.id, r.rentalPrice, r.startDate, r.endDate, r.deposit, r.pickupLocation, r.email) " +
+            "FROM Rental r ORDER BY r.id")
+    Stream<RentalResponse> streamAll();
 }
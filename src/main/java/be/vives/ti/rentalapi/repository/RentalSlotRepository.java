@@ -0,0 +1,24 @@
+package be.vives.ti.rentalapi.repository;
+
+import be.vives.ti.rentalapi.model.RentalSlot;
+import be.vives.ti.rentalapi.model.RentalSlotId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface RentalSlotRepository extends JpaRepository<RentalSlot, RentalSlotId>, RentalSlotRepositoryCustom {
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RentalSlot s WHERE s.rentalId = :rentalId")
+    int deleteAllByRentalId(@Param("rentalId") Integer rentalId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RentalSlot s WHERE s.carId = :carId")
+    int deleteAllByCarId(@Param("carId") Integer carId);
+}
@@ -0,0 +1,9 @@
+package be.vives.ti.rentalapi.repository;
+
+import java.time.LocalDate;
+
+public interface RentalSlotRepositoryCustom {
+
+    // claimt elke dag van startDate tot en met endDate voor de auto, gooit een DataIntegrityViolationException als een dag al geclaimd is
+    void claimSlots(Integer carId, Integer rentalId, LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,27 @@
+package be.vives.ti.rentalapi.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// JDBC batch insert, een lange rental kost zo één round trip in plaats van één per dag
+public class RentalSlotRepositoryCustomImpl implements RentalSlotRepositoryCustom {
+
+    private static final String INSERT_SLOT = "INSERT INTO rental_slot (car_id, slot_date, rental_id) VALUES (?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void claimSlots(Integer carId, Integer rentalId, LocalDate startDate, LocalDate endDate) {
+        List<Object[]> slots = new ArrayList<>();
+        for (LocalDate day = startDate; !day.isAfter(endDate); day = day.plusDays(1)) {
+            slots.add(new Object[]{carId, Date.valueOf(day), rentalId});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SLOT, slots);
+    }
+}
@@ -0,0 +1,407 @@
+package be.vives.ti.rentalapi.search;
+
+import be.vives.ti.rentalapi.dto.projection.CarCatalogState;
+import be.vives.ti.rentalapi.dto.projection.CarDocument;
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.CarSearchResponse;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.miscellaneous.ASCIIFoldingFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopFieldCollectorManager;
+import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Full-text index (Lucene) op merk, model en beschrijving van de auto's, met daarnaast de velden
+ * waarop GET /api/cars/search filtert. Een zoekopdracht leest alles uit de index, zonder query op de database.
+ * De index staat in rental.search.index-dir, of in het geheugen als die leeg is (test profiel).
+ * Wordt bijgewerkt na de commit van create, update en delete van een auto en periodiek naar schijf gecommit;
+ * bij het opstarten wordt hij opnieuw opgebouwd als hij niet meer overeenkomt met de database.
+ */
+@Slf4j
+@Component
+public class CarSearchIndex {
+
+    // merk weegt het zwaarst, dan model, dan de beschrijving
+    static final Map<String, Float> TEXT_FIELDS = Map.of("brand", 3f, "model", 2f, "description", 1f);
+
+    private static final String ID = "id";
+    private static final String VERSION = "version";
+    // in de commit data van de index, ophogen als de velden veranderen zodat een bestaande index opnieuw opgebouwd wordt
+    // 2: brand_exact, model_exact en color_exact in kleine letters
+    private static final String SCHEMA_KEY = "schema";
+    private static final String SCHEMA = "2";
+    // bij een gelijke score de laagste id eerst, zodat de volgorde tussen pagina's vast ligt
+    private static final Sort RELEVANCE = new Sort(SortField.FIELD_SCORE, new SortField(ID, SortField.Type.LONG));
+
+    @Autowired
+    private CarRepository carRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Directory directory;
+    private final Analyzer analyzer = new FoldingAnalyzer();
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    // wijzigingen mogen parallel lopen, enkel een volledige rebuild heeft de writer voor zich alleen
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    // een index op schijf met velden van een vorige versie
+    private final boolean schemaOutdated;
+    private volatile boolean ready;
+
+    @Autowired
+    public CarSearchIndex(@Value("${rental.search.index-dir:}") String indexDir) throws IOException {
+        this(indexDir.isBlank() ? new ByteBuffersDirectory() : FSDirectory.open(Path.of(indexDir)));
+    }
+
+    CarSearchIndex(Directory directory) throws IOException {
+        this.directory = directory;
+        this.schemaOutdated = DirectoryReader.indexExists(directory)
+                && !SCHEMA.equals(SegmentInfos.readLatestCommit(directory).getUserData().get(SCHEMA_KEY));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        // elke volgende commit bewaart de versie van de velden
+        this.writer.setLiveCommitData(Map.of(SCHEMA_KEY, SCHEMA).entrySet());
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        try {
+            CarCatalogState database = carRepository.findCatalogState();
+            if (!schemaOutdated && database.equals(indexState())) {
+                ready = true;
+                log.info("Car search index is up to date: {} cars", database.count());
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Car search index could not be checked, rebuilding", e);
+        }
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // volledige index opnieuw opbouwen vanuit de database, zoekopdrachten zien tot het einde de vorige index
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            Long count = transactionTemplate.execute(status -> {
+                try (Stream<CarDocument> cars = carRepository.streamDocuments()) {
+                    writer.deleteAll();
+                    long indexed = 0;
+                    for (CarDocument car : (Iterable<CarDocument>) cars::iterator) {
+                        writer.addDocument(document(car));
+                        indexed++;
+                    }
+                    return indexed;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+            ready = true;
+            log.info("Car search index rebuilt: {} cars", count);
+        } catch (IOException | RuntimeException e) {
+            ready = false;
+            log.warn("Car search index could not be rebuilt", e);
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    public void put(Car car) {
+        putAll(List.of(car));
+    }
+
+    // nieuwe of gewijzigde auto's, de velden worden nu al gelezen want de entity kan nog wijzigen
+    public void putAll(Collection<Car> cars) {
+        List<CarDocument> documents = cars.stream().map(CarSearchIndex::toDocument).toList();
+        afterCommit(() -> change(indexWriter -> {
+            for (CarDocument car : documents) {
+                indexWriter.updateDocument(idTerm(car.id()), document(car));
+            }
+        }));
+    }
+
+    public void remove(Integer carId) {
+        afterCommit(() -> change(indexWriter -> indexWriter.deleteDocuments(idTerm(carId))));
+    }
+
+    // q in merk, model en beschrijving (alle woorden moeten voorkomen), plus dezelfde filters als de gewone zoekopdracht
+    public CarSearchResponse search(CarSearchRequest search, int page, int size) {
+        Query query = query(search);
+        int window = (page + 1) * size;
+        try {
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                // exact aantal hits, nodig voor totalElements en totalPages
+                TopFieldDocs hits = searcher.search(query,
+                        new TopFieldCollectorManager(RELEVANCE, window, null, Integer.MAX_VALUE, false));
+                StoredFields storedFields = searcher.storedFields();
+                List<CarResponse> items = new ArrayList<>(size);
+                for (int i = page * size; i < hits.scoreDocs.length; i++) {
+                    items.add(toCarResponse(storedFields.document(hits.scoreDocs[i].doc)));
+                }
+                long total = hits.totalHits.value;
+                return new CarSearchResponse(items, page, size, total, (int) ((total + size - 1) / size));
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // wijzigingen na een crash zijn niet verloren: bij het opstarten verschilt de index dan van de database
+    @Scheduled(fixedDelayString = "${rental.search.commit-interval-ms:5000}")
+    public void commit() {
+        rebuildLock.readLock().lock();
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            log.warn("Car search index could not be committed", e);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close(); // commit de laatste wijzigingen
+        directory.close();
+    }
+
+    // dezelfde drie getallen als CarRepository.findCatalogState, maar uit de index
+    CarCatalogState indexState() throws IOException {
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            IndexReader reader = searcher.getIndexReader();
+            long versionSum = 0;
+            long maxId = 0;
+            for (LeafReaderContext leaf : reader.leaves()) {
+                Bits liveDocs = leaf.reader().getLiveDocs();
+                NumericDocValues ids = DocValues.getNumeric(leaf.reader(), ID);
+                NumericDocValues versions = DocValues.getNumeric(leaf.reader(), VERSION);
+                for (int doc = ids.nextDoc(); doc != NumericDocValues.NO_MORE_DOCS; doc = ids.nextDoc()) {
+                    if (liveDocs == null || liveDocs.get(doc)) {
+                        maxId = Math.max(maxId, ids.longValue());
+                        if (versions.advanceExact(doc)) {
+                            versionSum += versions.longValue();
+                        }
+                    }
+                }
+            }
+            return new CarCatalogState((long) reader.numDocs(), versionSum, (int) maxId);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    private Query query(CarSearchRequest search) {
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, TEXT_FIELDS);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(parser.parse(search.getQ()), BooleanClause.Occur.MUST);
+        // filters tellen niet mee voor de score
+        filterEqual(query, "brand_exact", search.getBrand());
+        filterEqual(query, "model_exact", search.getModel());
+        filterEqual(query, "color_exact", search.getColor());
+        filterRange(query, "year", search.getMinYear(), search.getMaxYear());
+        filterRange(query, "power", search.getMinPower(), search.getMaxPower());
+        if (search.getDealerId() != null) {
+            query.add(IntPoint.newExactQuery("dealerId", search.getDealerId()), BooleanClause.Occur.FILTER);
+        }
+        return query.build();
+    }
+
+    // hoofdletters tellen niet mee, net als bij de case-insensitive collation van de database in de JPA zoekopdracht
+    private static void filterEqual(BooleanQuery.Builder query, String field, String value) {
+        if (value != null && !value.isBlank()) {
+            query.add(new TermQuery(new Term(field, value.toLowerCase(Locale.ROOT))), BooleanClause.Occur.FILTER);
+        }
+    }
+
+    private static void filterRange(BooleanQuery.Builder query, String field, Integer min, Integer max) {
+        if (min != null || max != null) {
+            query.add(IntPoint.newRangeQuery(field, min == null ? Integer.MIN_VALUE : min, max == null ? Integer.MAX_VALUE : max),
+                    BooleanClause.Occur.FILTER);
+        }
+    }
+
+    private void change(IndexChange indexChange) {
+        rebuildLock.readLock().lock();
+        try {
+            indexChange.apply(writer);
+            // meteen zichtbaar voor de volgende zoekopdracht
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            log.warn("Car search index could not be updated, rebuild it with POST /api/cars/search/rebuild", e);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+    }
+
+    // binnen een transactie pas bijwerken na de commit, zodat een rollback de index niet vervuilt
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Term idTerm(Integer carId) {
+        return new Term(ID, String.valueOf(carId));
+    }
+
+    static CarDocument toDocument(Car car) {
+        return new CarDocument(car.getId(), car.getBrand(), car.getModel(), car.getPower(), car.getYear(), car.getColor(),
+                car.getImageUri(), car.getDescription(), car.getDealer() == null ? null : car.getDealer().getId(),
+                car.getVersion());
+    }
+
+    private static Document document(CarDocument car) {
+        Document document = new Document();
+        document.add(new StringField(ID, String.valueOf(car.id()), Field.Store.YES));
+        document.add(new NumericDocValuesField(ID, car.id()));
+        document.add(new NumericDocValuesField(VERSION, car.version() == null ? 0 : car.version()));
+        addText(document, "brand", car.brand());
+        addText(document, "model", car.model());
+        addText(document, "description", car.description());
+        addExact(document, "brand_exact", car.brand());
+        addExact(document, "model_exact", car.model());
+        addExact(document, "color_exact", car.color());
+        if (car.color() != null) {
+            document.add(new StoredField("color", car.color()));
+        }
+        addInt(document, "year", car.year());
+        addInt(document, "power", car.power());
+        if (car.dealerId() != null) {
+            document.add(new IntPoint("dealerId", car.dealerId()));
+        }
+        if (car.imageUri() != null) {
+            document.add(new StoredField("imageUri", car.imageUri()));
+        }
+        return document;
+    }
+
+    private static void addText(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new TextField(field, value, Field.Store.YES));
+        }
+    }
+
+    // enkel om op te filteren, in kleine letters zoals filterEqual
+    private static void addExact(Document document, String field, String value) {
+        if (value != null) {
+            document.add(new StringField(field, value.toLowerCase(Locale.ROOT), Field.Store.NO));
+        }
+    }
+
+    private static void addInt(Document document, String field, Integer value) {
+        if (value != null) {
+            document.add(new IntPoint(field, value));
+            document.add(new StoredField(field, value));
+        }
+    }
+
+    private static CarResponse toCarResponse(Document document) {
+        return CarResponse.builder()
+                .id(Integer.valueOf(document.get(ID)))
+                .brand(document.get("brand"))
+                .model(document.get("model"))
+                .power(intValue(document, "power"))
+                .year(intValue(document, "year"))
+                .color(document.get("color"))
+                .imageUri(document.get("imageUri"))
+                .description(document.get("description"))
+                .build();
+    }
+
+    private static Integer intValue(Document document, String field) {
+        return document.getField(field) == null ? null : document.getField(field).numericValue().intValue();
+    }
+
+    private interface IndexChange {
+        void apply(IndexWriter writer) throws IOException;
+    }
+
+    // woorden in kleine letters en zonder accenten: "skoda" vindt ook "Škoda"
+    static final class FoldingAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            StandardTokenizer tokenizer = new StandardTokenizer();
+            TokenStream tokens = new ASCIIFoldingFilter(new LowerCaseFilter(tokenizer));
+            return new TokenStreamComponents(tokenizer, tokens);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.metrics.BookingMetrics;
+import be.vives.ti.rentalapi.model.Rental;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Group commit voor bookings: requests zetten hun rental in een queue en één writer thread bewaart ze
+ * in micro-batches, telkens één transactie voor maximaal maxBatchSize rentals of wat er binnen maxDelay
+ * na de eerste rental van de batch binnenkwam. Elke request wacht op zijn CompletableFuture, die pas
+ * voltooid wordt als de batch gecommit is. Minder commits (en fsyncs) per booking, ten koste van
+ * hoogstens maxDelay extra latency.
+ * Faalt een batch, dan wordt elke rental apart opnieuw geprobeerd zodat één slechte rij enkel zichzelf laat falen.
+ * Een timeout geldt enkel zolang de rental in de queue staat: de writer claimt elke rental voor hij hem bewaart,
+ * daarna wacht de request op de commit die al loopt, zodat een bewaarde rental nooit als mislukt gemeld wordt.
+ */
+@Slf4j
+final class BookingGroupCommit {
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Consumer<List<Rental>> writer;
+    private final BookingMetrics bookingMetrics;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    private record Pending(Rental rental, long enqueuedNanos, CompletableFuture<Rental> future, AtomicBoolean claimed) {
+
+        // door de writer (bewaren) of door de timeout (opgeven), nooit allebei
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    BookingGroupCommit(int maxBatchSize, long maxDelayMillis, Consumer<List<Rental>> writer, BookingMetrics bookingMetrics) {
+        if (maxBatchSize < 1 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("group commit needs a batch size of at least 1 and a delay of at least 0");
+        }
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.writer = writer;
+        this.bookingMetrics = bookingMetrics;
+        this.thread = new Thread(this::run, "rental-group-commit");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // voltooid met dezelfde rental zodra hij gecommit is, of met de fout van zijn commit
+    CompletableFuture<Rental> submit(Rental rental) {
+        CompletableFuture<Rental> future = new CompletableFuture<>();
+        Pending pending = new Pending(rental, System.nanoTime(), future, new AtomicBoolean());
+        enqueue(pending);
+        return future;
+    }
+
+    // idem, maar met een TimeoutException als de writer hem niet binnen timeoutMillis opgepikt heeft
+    CompletableFuture<Rental> submit(Rental rental, long timeoutMillis) {
+        CompletableFuture<Rental> future = new CompletableFuture<>();
+        Pending pending = new Pending(rental, System.nanoTime(), future, new AtomicBoolean());
+        enqueue(pending);
+        CompletableFuture.delayedExecutor(timeoutMillis, TimeUnit.MILLISECONDS).execute(() -> {
+            if (pending.claim()) {
+                queue.remove(pending);
+                future.completeExceptionally(new TimeoutException("Rental was not picked up within " + timeoutMillis + " ms"));
+            }
+        });
+        return future;
+    }
+
+    private void enqueue(Pending pending) {
+        queue.add(pending);
+        // eerst in de queue, dan pas kijken of de writer gestopt is: ofwel ziet de writer hem nog bij het leegmaken
+        // van de queue, ofwel halen we hem hier zelf terug weg, nooit geen van beide
+        if (!running && queue.remove(pending)) {
+            pending.future().completeExceptionally(stopped());
+        }
+    }
+
+    // wat al in de queue staat wordt nog gecommit
+    void close() throws InterruptedException {
+        running = false;
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    // de batch sluit maxDelay na de eerste rental, wat dan al klaarstaat gaat nog mee
+                    long deadline = first.enqueuedNanos() + maxDelayNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long remaining = deadline - System.nanoTime();
+                        Pending next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+                // wat al door de timeout geclaimd is niet meer bewaren, de rest kan vanaf nu niet meer verlopen
+                batch.removeIf(pending -> !pending.claim());
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                    batch.clear();
+                }
+            }
+        } finally {
+            // ook als de writer door een Error stopt mag geen request blijven wachten
+            running = false;
+            batch.forEach(pending -> pending.future().completeExceptionally(stopped()));
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                pending.future().completeExceptionally(stopped());
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        long start = System.nanoTime();
+        try {
+            writer.accept(batch.stream().map(Pending::rental).toList());
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future().completeExceptionally(e);
+                return;
+            }
+            // niet weten welke rij de fout gaf: elke rental in zijn eigen transactie
+            log.warn("Group commit of {} rentals failed, retrying them one by one", batch.size(), e);
+            for (Pending pending : batch) {
+                commit(List.of(pending));
+            }
+            return;
+        }
+        long end = System.nanoTime();
+        bookingMetrics.recordGroupCommit(batch.size(), end - start);
+        for (Pending pending : batch) {
+            bookingMetrics.recordGroupCommitWait(end - pending.enqueuedNanos());
+            pending.future().complete(pending.rental());
+        }
+    }
+
+    private static IllegalStateException stopped() {
+        return new IllegalStateException("Group commit is stopped");
+    }
+}
@@ -0,0 +1,104 @@
+package be.vives.ti.rentalapi.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Vaste set locks waarop auto's via hun id verdeeld worden (lock striping).
+ * Bookings voor dezelfde auto wachten op elkaar, bookings voor andere auto's lopen bijna altijd parallel.
+ * Enkel binnen één JVM, voor meerdere instanties is een check in de database nodig.
+ */
+@Component
+public class BookingLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contended = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+    public BookingLocks(@Value("${rental.booking.lock-stripes:64}") int stripeCount) {
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("rental.booking.lock-stripes must be at least 1");
+        }
+        // afronden naar een macht van 2 zodat de stripe met een bitmask gekozen kan worden
+        int size = Integer.highestOneBit(stripeCount - 1) << 1;
+        size = stripeCount == 1 ? 1 : size;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    // neemt de lock van de stripe van deze auto, de caller moet unlock() in een finally doen
+    public Lock lock(Integer carId) {
+        return acquire(stripes[stripeOf(carId)]);
+    }
+
+    // locks voor meerdere auto's (batch booking): elke stripe één keer en altijd in oplopende volgorde,
+    // zodat twee batches nooit op elkaar kunnen wachten. De caller moet elke lock in een finally vrijgeven.
+    public List<Lock> lockAll(Collection<Integer> carIds) {
+        int[] stripeIndexes = carIds.stream()
+                .mapToInt(this::stripeOf)
+                .distinct()
+                .sorted()
+                .toArray();
+        List<Lock> locks = new ArrayList<>(stripeIndexes.length);
+        for (int stripeIndex : stripeIndexes) {
+            locks.add(acquire(stripes[stripeIndex]));
+        }
+        return locks;
+    }
+
+    private Lock acquire(ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            contended.increment();
+            long start = System.nanoTime();
+            lock.lock();
+            long waited = System.nanoTime() - start;
+            totalWaitNanos.add(waited);
+            maxWaitNanos.accumulate(waited);
+        }
+        acquisitions.increment();
+        return lock;
+    }
+
+    int stripeOf(Integer carId) {
+        // hash spreiden zodat opeenvolgende ids niet samen in dezelfde stripes vallen bij een kleine mask
+        int hash = carId.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    // aantal keer dat er effectief gewacht moest worden
+    public long getContended() {
+        return contended.sum();
+    }
+
+    public double getTotalWaitMillis() {
+        return totalWaitNanos.sum() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
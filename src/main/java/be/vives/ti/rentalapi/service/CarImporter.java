@@ -0,0 +1,59 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.model.Car;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schrijft een lijst auto's met hun popularity record in één transactie weg.
+ * Car en Popularity hebben IDENTITY ids, Hibernate kan die inserts niet batchen: de auto's gaan één per één
+ * (hun id is nodig voor het antwoord), de popularity records per batch_size in één JDBC batch.
+ * Na elke batch wordt de persistence context geleegd zodat een grote import het geheugen niet opvult.
+ */
+@Component
+public class CarImporter {
+
+    private static final String INSERT_POPULARITY = "INSERT INTO popularity (car_id, likes, version) VALUES (?, 0, 0)";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    // de JDBC inserts lopen in dezelfde transactie; de inserts in car maken de leaderboard queries
+    // (die popularity met car joinen) in de query cache ongeldig, dus daar is geen eviction nodig
+    @Transactional
+    public List<Car> insert(List<Car> cars) {
+        List<Object[]> popularity = new ArrayList<>(batchSize);
+        for (Car car : cars) {
+            entityManager.persist(car); // IDENTITY: de insert gebeurt meteen en geeft de id terug
+            // 1 op 1, zoals bij createCar
+            popularity.add(new Object[]{car.getId()});
+
+            if (popularity.size() == batchSize) {
+                insertPopularity(popularity);
+                entityManager.clear();
+            }
+        }
+        insertPopularity(popularity);
+        return cars;
+    }
+
+    private void insertPopularity(List<Object[]> popularity) {
+        if (!popularity.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_POPULARITY, popularity);
+            popularity.clear();
+        }
+    }
+}
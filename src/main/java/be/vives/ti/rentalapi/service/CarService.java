@@ -1,27 +1,67 @@
 package be.vives.ti.rentalapi.service;
 
+import be.vives.ti.rentalapi.availability.OccupancyMatrix;
+import be.vives.ti.rentalapi.availability.RentalAvailabilityIndex;
+import be.vives.ti.rentalapi.cache.CarDetailCache;
+import be.vives.ti.rentalapi.cache.CatalogVersions;
+import be.vives.ti.rentalapi.cache.ETags;
+import be.vives.ti.rentalapi.cache.SecondLevelCacheStats;
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
 import be.vives.ti.rentalapi.dto.request.CarRequest;
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
+import be.vives.ti.rentalapi.dto.response.CacheStatsResponse;
 import be.vives.ti.rentalapi.dto.response.CarDealerResponse;
+import be.vives.ti.rentalapi.dto.response.CarOccupancyResponse;
+import be.vives.ti.rentalapi.dto.response.CarPageResponse;
 import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.CarSearchResponse;
+import be.vives.ti.rentalapi.dto.response.OccupancyResponse;
 import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
 import be.vives.ti.rentalapi.model.Car;
 import be.vives.ti.rentalapi.model.Dealer;
 import be.vives.ti.rentalapi.model.Popularity;
 import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.CarSpecifications;
 import be.vives.ti.rentalapi.repository.DealerRepository;
 import be.vives.ti.rentalapi.repository.PopularityRepository;
 import be.vives.ti.rentalapi.repository.RentalRepository;
+import be.vives.ti.rentalapi.repository.RentalSlotRepository;
+import be.vives.ti.rentalapi.search.CarSearchIndex;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class CarService {
@@ -33,52 +73,224 @@ public class CarService {
     private RentalRepository rentalRepository;
     @Autowired
     private DealerRepository dealerRepository;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private RentalAvailabilityIndex availabilityIndex;
+    @Autowired
+    private RentalSlotRepository rentalSlotRepository;
+    @Autowired
+    private PopularityCounters popularityCounters;
+    @Autowired
+    private PopularityLeaderboard popularityLeaderboard;
+    @Autowired
+    private CarDetailCache carDetailCache;
+    @Autowired
+    private SecondLevelCacheStats secondLevelCacheStats;
+    @Autowired
+    private CarImporter carImporter;
+    @Autowired
+    private Validator validator;
+    @Autowired
+    private CatalogVersions catalogVersions;
+    @Autowired
+    private CarSearchIndex carSearchIndex;
+
+    @Value("${rental.cars.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    static final int MAX_PAGE_SIZE = 1000;
+    static final int DEFAULT_SEARCH_PAGE_SIZE = 20;
+    // een jaar (ook een schrikkeljaar) per bezettingsmatrix
+    static final int MAX_OCCUPANCY_DAYS = 366;
+    // diepste pagina bij zoeken op tekst: de index moet alle hits tot en met die pagina rangschikken
+    static final int MAX_FULL_TEXT_WINDOW = 10_000;
+    // enkel op deze velden sorteren, een ander veld zou een sortering zonder index kunnen geven
+    private static final Set<String> SEARCH_SORT_FIELDS = Set.of("id", "brand", "model", "year", "power");
+
+    public ResponseEntity<List<CarResponse>> getAllCars(String ifNoneMatch) {
+        // ETag eerst bepalen: een wijziging tijdens het laden geeft hoogstens een nieuwere body onder een oude ETag
+        String eTag = catalogVersions.getCarsETag();
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ETags.notModified(eTag); // 304, zonder query
+        }
 
-    public ResponseEntity<List<CarResponse>> getAllCars() {
-        List<Car> cars = carRepository.findAll();
-        if (cars.isEmpty()) {
-            return ResponseEntity.ok().body(new ArrayList<>()); // 200
-        }
-        List<CarResponse> carList = cars.stream()
-                .map(car ->
-                        CarResponse.builder()
-                                .id(car.getId())
-                                .brand(car.getBrand())
-                                .model(car.getModel())
-                                .power(car.getPower())
-                                .year(car.getYear())
-                                .color(car.getColor())
-                                .imageUri(car.getImageUri())
-                                .description(car.getDescription())
-                                .build())
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(carList); // 200
+        // projectie: één query, geen dealer per auto
+        List<CarResponse> carList = carRepository.findAllResponses();
+        return ETags.ok(eTag, carList); // 200
     }
 
-    public ResponseEntity<CarResponse> getCarById(Integer id) {
-        Optional<Car> car = carRepository.findById(id);
-        if (car.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
+    // keyset paginatie: de cursor is de base64 gecodeerde id van de laatste auto van de vorige pagina
+    public ResponseEntity<CarPageResponse> getCarPage(int limit, String cursor) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
         }
 
-        Optional<Popularity> popularity = popularityRepository.findByCarId(id);
-        if (popularity.isEmpty()) {
+        Integer afterId = decodeCursor(cursor);
+        if (afterId == null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+        }
+
+        // een extra rij ophalen om te weten of er nog een volgende pagina is
+        List<CarResponse> cars = carRepository.findPageAfter(afterId, Limit.of(limit + 1));
+        String next = null;
+        if (cars.size() > limit) {
+            cars = new ArrayList<>(cars.subList(0, limit));
+            next = encodeCursor(cars.get(limit - 1).getId());
+        }
+
+        return ResponseEntity.ok(new CarPageResponse(cars, next)); // 200
+    }
+
+    // zoeken met filters, gesorteerd en per pagina; id als laatste sortering zodat de volgorde tussen pagina's vast ligt
+    public ResponseEntity<CarSearchResponse> searchCars(CarSearchRequest search) {
+        if (isInvalidSearch(search)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+        }
+
+        int page = searchPage(search);
+        int size = searchSize(search);
+        // vrije tekst: gerangschikt op relevantie, uit de zoekindex in plaats van de database
+        if (search.getQ() != null) {
+            if (search.getQ().isBlank() || search.getSort() != null || (long) (page + 1) * size > MAX_FULL_TEXT_WINDOW) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+            }
+            if (!carSearchIndex.isReady()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build(); // 503
+            }
+            return ResponseEntity.ok(carSearchIndex.search(search, page, size)); // 200
+        }
+
+        return ResponseEntity.ok(findCarPage(CarSpecifications.matching(search), search)); // 200
+    }
+
+    // auto's zonder rental in de periode (grenzen inclusief), met dezelfde filters, sortering en paginatie als searchCars
+    public ResponseEntity<CarSearchResponse> getAvailableCars(LocalDate startDate, LocalDate endDate, CarSearchRequest search) {
+        if (startDate.isAfter(endDate) || search.getQ() != null || isInvalidSearch(search)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+        }
+
+        // één query met NOT EXISTS, plus de count query voor totalElements
+        Specification<Car> available = CarSpecifications.matching(search)
+                .and(CarSpecifications.availableBetween(startDate, endDate));
+        return ResponseEntity.ok(findCarPage(available, search)); // 200
+    }
+
+    // per auto van de dealer (of van de hele vloot) een bitset met de verhuurde dagen van start tot start + days - 1
+    // twee queries: de ids van de auto's en één range scan over rental
+    public ResponseEntity<OccupancyResponse> getOccupancy(LocalDate start, int days, Integer dealerId) {
+        if (days < 1 || days > MAX_OCCUPANCY_DAYS) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+        }
+        if (dealerId != null && !dealerRepository.existsById(dealerId)) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
         }
 
-        Car carEntity = car.get();
-        CarResponse carResponse = CarResponse.builder()
-                .id(carEntity.getId())
-                .brand(carEntity.getBrand())
-                .model(carEntity.getModel())
-                .power(carEntity.getPower())
-                .year(carEntity.getYear())
-                .color(carEntity.getColor())
-                .imageUri(carEntity.getImageUri())
-                .description(carEntity.getDescription())
-                .build();
+        LocalDate end = start.plusDays(days - 1);
+        List<Integer> carIds = dealerId == null ? carRepository.findAllIds() : carRepository.findIdsByDealerId(dealerId);
+        List<RentalPeriod> periods = dealerId == null
+                ? rentalRepository.findPeriodsByDateRange(start, end)
+                : rentalRepository.findPeriodsByDealerIdAndDateRange(dealerId, start, end);
 
-        return ResponseEntity.ok(carResponse); // 200
+        OccupancyMatrix matrix = new OccupancyMatrix(start, days, carIds.stream().mapToInt(Integer::intValue).toArray());
+        for (RentalPeriod period : periods) {
+            matrix.add(period.carId(), period.startDate(), period.endDate());
+        }
+
+        List<CarOccupancyResponse> cars = new ArrayList<>(matrix.size());
+        for (int car = 0; car < matrix.size(); car++) {
+            cars.add(new CarOccupancyResponse(matrix.carId(car), matrix.bookedDays(car), matrix.encode(car)));
+        }
+        return ResponseEntity.ok(new OccupancyResponse(start, days, cars)); // 200
+    }
+
+    private static boolean isInvalidSearch(CarSearchRequest search) {
+        String sort = search.getSort() == null ? "id" : search.getSort();
+        String direction = search.getDirection() == null ? "asc" : search.getDirection().toLowerCase();
+        int size = searchSize(search);
+        return searchPage(search) < 0 || size < 1 || size > MAX_PAGE_SIZE
+                || !SEARCH_SORT_FIELDS.contains(sort)
+                || !(direction.equals("asc") || direction.equals("desc"))
+                || isInvalidRange(search.getMinYear(), search.getMaxYear())
+                || isInvalidRange(search.getMinPower(), search.getMaxPower());
+    }
+
+    private static int searchPage(CarSearchRequest search) {
+        return search.getPage() == null ? 0 : search.getPage();
+    }
+
+    private static int searchSize(CarSearchRequest search) {
+        return search.getSize() == null ? DEFAULT_SEARCH_PAGE_SIZE : search.getSize();
+    }
+
+    private CarSearchResponse findCarPage(Specification<Car> specification, CarSearchRequest search) {
+        int page = searchPage(search);
+        int size = searchSize(search);
+        String sort = search.getSort() == null ? "id" : search.getSort();
+        String direction = search.getDirection() == null ? "asc" : search.getDirection().toLowerCase();
+
+        Sort order = Sort.by(Sort.Direction.fromString(direction), sort);
+        if (!sort.equals("id")) {
+            order = order.and(Sort.by("id"));
+        }
+        Page<Car> cars = carRepository.findAll(specification, PageRequest.of(page, size, order));
+
+        List<CarResponse> items = cars.getContent().stream()
+                .map(CarService::toCarResponse)
+                .toList();
+        return new CarSearchResponse(items, page, size, cars.getTotalElements(), cars.getTotalPages());
+    }
+
+    private static boolean isInvalidRange(Integer min, Integer max) {
+        return min != null && max != null && min > max;
+    }
+
+    // schrijft de volledige catalogus rij per rij als JSON array, zonder de lijst in het geheugen op te bouwen
+    @Transactional
+    public void streamAllCars(OutputStream outputStream) throws IOException {
+        // niet na elke rij flushen, de servlet buffer bepaalt wanneer er naar de socket geschreven wordt
+        ObjectWriter writer = objectMapper.writerFor(CarResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (Stream<CarResponse> cars = carRepository.streamAll();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.writeStartArray();
+            for (CarResponse car : (Iterable<CarResponse>) cars::iterator) {
+                writer.writeValue(generator, car);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    static String encodeCursor(Integer id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.valueOf(id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Integer decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int id = Integer.parseInt(decoded);
+            return id < 0 ? null : id;
+        } catch (IllegalArgumentException e) { // ook NumberFormatException
+            return null;
+        }
+    }
+
+    public ResponseEntity<CarResponse> getCarById(Integer id, String ifNoneMatch) {
+        // uit de cache, anders auto en popularity in één query
+        Optional<CarResponse> car = carDetailCache.getCar(id, carRepository::findResponseById);
+        if (car.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
+        }
+
+        String eTag = ETags.of("car", id, car.get().getVersion());
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ETags.notModified(eTag); // 304
+        }
+        return ETags.ok(eTag, car.get()); // 200
     }
 
     public ResponseEntity<CarResponse> createCar(CarRequest carRequest) {
@@ -108,21 +320,93 @@ public class CarService {
                 .build();
 
         popularityRepository.save(popularity);
+        popularityLeaderboard.addCar(car.getId(), car.getPower());
+        carSearchIndex.put(car);
 
-        CarResponse carResponse = CarResponse.builder()
-                .id(car.getId())
-                .brand(car.getBrand())
-                .model(car.getModel())
-                .power(car.getPower())
-                .year(car.getYear())
-                .color(car.getColor())
-                .imageUri(car.getImageUri())
-                .description(car.getDescription())
-                .build();
+        CarResponse carResponse = toCarResponse(car);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(carResponse); // 201
     }
 
+    // bulk import: alle dealers in één query, alles in één transactie met popularity in JDBC batches, een resultaat per auto
+    public ResponseEntity<List<BatchItemResponse<CarResponse>>> createCars(List<CarRequest> carRequests) {
+        if (carRequests == null || carRequests.isEmpty() || carRequests.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+        }
+
+        Set<Integer> dealerIds = carRequests.stream()
+                .filter(Objects::nonNull)
+                .map(CarRequest::getDealerId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<Integer, Dealer> dealers = dealerRepository.findAllById(dealerIds).stream()
+                .collect(Collectors.toMap(Dealer::getId, Function.identity()));
+
+        List<BatchItemResponse<CarResponse>> results = new ArrayList<>(Collections.nCopies(carRequests.size(), null));
+        List<Car> cars = new ArrayList<>();
+        List<Integer> carIndexes = new ArrayList<>();
+        for (int i = 0; i < carRequests.size(); i++) {
+            CarRequest carRequest = carRequests.get(i);
+            String error = validateCarRequest(carRequest);
+            if (error != null) {
+                results.set(i, new BatchItemResponse<>(i, HttpStatus.BAD_REQUEST.value(), null, error)); // 400
+                continue;
+            }
+
+            Dealer dealer = dealers.get(carRequest.getDealerId());
+            if (dealer == null) {
+                results.set(i, new BatchItemResponse<>(i, HttpStatus.NOT_FOUND.value(), null,
+                        "Dealer " + carRequest.getDealerId() + " not found")); // 404
+                continue;
+            }
+
+            cars.add(Car.builder()
+                    .brand(carRequest.getBrand())
+                    .model(carRequest.getModel())
+                    .power(carRequest.getPower())
+                    .year(carRequest.getYear())
+                    .color(carRequest.getColor())
+                    .imageUri(carRequest.getImageUri())
+                    .description(carRequest.getDescription())
+                    .dealer(dealer)
+                    .build());
+            carIndexes.add(i);
+        }
+
+        if (!cars.isEmpty()) {
+            carImporter.insert(cars);
+            carSearchIndex.putAll(cars);
+        }
+
+        for (int i = 0; i < cars.size(); i++) {
+            Car car = cars.get(i);
+            popularityLeaderboard.addCar(car.getId(), car.getPower());
+            CarResponse carResponse = toCarResponse(car);
+            results.set(carIndexes.get(i), new BatchItemResponse<>(carIndexes.get(i), HttpStatus.CREATED.value(), carResponse, null)); // 201
+        }
+
+        return ResponseEntity.ok(results); // 200
+    }
+
+    // dezelfde regels als @Valid op POST /api/cars en het bouwjaar uit Car, null als alles in orde is
+    private String validateCarRequest(CarRequest carRequest) {
+        if (carRequest == null) {
+            return "Car is required";
+        }
+        Set<ConstraintViolation<CarRequest>> violations = validator.validate(carRequest);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        int currentYear = LocalDate.now().getYear();
+        if (carRequest.getYear() > currentYear) {
+            return "year: Year cannot be greater than the current year: " + currentYear;
+        }
+        return null;
+    }
+
     public ResponseEntity<CarResponse> updateCar(Integer id, CarRequest carRequest) {
         Optional<Car> optionalCar = carRepository.findById(id);
         if (optionalCar.isEmpty()) {
@@ -147,17 +431,11 @@ public class CarService {
         carEntity.setImageUri(carRequest.getImageUri());
 
         Car updatedCar = carRepository.save(carEntity);
+        carDetailCache.invalidateCar(updatedCar.getId());
+        popularityLeaderboard.updateCar(updatedCar.getId(), updatedCar.getPower());
+        carSearchIndex.put(updatedCar);
 
-        CarResponse carResponse = CarResponse.builder()
-                .id(updatedCar.getId())
-                .brand(updatedCar.getBrand())
-                .model(updatedCar.getModel())
-                .power(updatedCar.getPower())
-                .year(updatedCar.getYear())
-                .color(updatedCar.getColor())
-                .imageUri(updatedCar.getImageUri())
-                .description(updatedCar.getDescription())
-                .build();
+        CarResponse carResponse = toCarResponse(updatedCar);
 
         return ResponseEntity.ok(carResponse); // 200
     }
@@ -170,7 +448,13 @@ public class CarService {
         }
 
         Car car = optionalCar.get();
+        rentalSlotRepository.deleteAllByCarId(car.getId());
         rentalRepository.deleteAllByCarId(car.getId()); // eerst alle rental verwijderen met zelfde car id
+        availabilityIndex.removeCar(car.getId());
+        carDetailCache.invalidateCar(car.getId());
+        popularityCounters.discard(car.getId());
+        popularityLeaderboard.removeCar(car.getId());
+        carSearchIndex.remove(car.getId());
         popularityRepository.deleteByCarId(car.getId()); // 1 popularity record verwijderen voor popularity
         carRepository.delete(car); // car zelf verwijderen
 
@@ -179,21 +463,84 @@ public class CarService {
 
 
     // endpoint, GET car with Dealer information
-    public ResponseEntity<CarDealerResponse> getCarWithDealer(Integer id) {
-        Optional<Car> carOptional = carRepository.findById(id);
-        if (carOptional.isEmpty()) {
+    public ResponseEntity<CarDealerResponse> getCarWithDealer(Integer id, String ifNoneMatch) {
+        // auto en dealer in één join, een auto zonder dealer geeft geen rij terug
+        Optional<CarDealerResponse> carDealer = carDetailCache.getCarWithDealer(id, carRepository::findCarWithDealerById);
+        if (carDealer.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
         }
 
-        Car car = carOptional.get();
-        Dealer dealer = car.getDealer();
+        // een andere dealer kan een lagere versie hebben, dus de dealer id hoort mee in de ETag
+        CarDealerResponse response = carDealer.get();
+        String eTag = ETags.of("carWithDealer", id, response.getCarVersion(), response.getDealerId(), response.getDealerVersion());
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ETags.notModified(eTag); // 304
+        }
+        return ETags.ok(eTag, response); // 200
+    }
+
+    // endpoint, GET top N cars based on popularity and power
+    public ResponseEntity<List<PopCarsResponse>> getTopCars(int limit, String ifNoneMatch) {
+        if (limit < 1 || limit > popularityLeaderboard.getCapacity()) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+        }
+
+        if (popularityLeaderboard.isReady()) {
+            String eTag = catalogVersions.eTag("topCars", popularityLeaderboard.getVersion());
+            if (ETags.matches(ifNoneMatch, eTag)) {
+                return ETags.notModified(eTag); // 304
+            }
+            List<PopCarsResponse> topCars = popularityLeaderboard.topCars(limit);
+            if (topCars.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
+            }
+            return ETags.ok(eTag, topCars); // 200
+        }
 
-        if (dealer == null) {
+        // fallback zolang de leaderboard niet geladen is, auto en likes in één query
+        // zonder ETag, de likes die nog niet geflusht zijn hebben geen versie
+        List<PopCarsResponse> popCars = popularityRepository.findAllPopCars();
+        if (popCars.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
         }
 
-        CarDealerResponse carDealerResponse = CarDealerResponse.builder()
-                .carId(car.getId())
+        // likes in de database plus de likes die nog niet geflusht zijn
+        popCars.forEach(car -> car.setLikes((int) currentLikes(car)));
+        List<PopCarsResponse> topCars = popCars.stream()
+                .sorted(Comparator.comparing(PopCarsResponse::getLikes, Comparator.reverseOrder())
+                        .thenComparing(PopCarsResponse::getPower, Comparator.reverseOrder()))
+                .limit(limit)
+                .collect(Collectors.toList());
+
+        return ResponseEntity.ok(topCars); // 200
+    }
+
+    public ResponseEntity<Void> rebuildTopCars() {
+        popularityLeaderboard.rebuild();
+        if (!popularityLeaderboard.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build(); // 503
+        }
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build(); // 204
+    }
+
+    public ResponseEntity<Void> rebuildSearchIndex() {
+        carSearchIndex.rebuild();
+        if (!carSearchIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build(); // 503
+        }
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build(); // 204
+    }
+
+    public ResponseEntity<List<CacheStatsResponse>> getCacheStats() {
+        List<CacheStatsResponse> stats = new ArrayList<>(carDetailCache.getStats());
+        stats.addAll(secondLevelCacheStats.getStats());
+        return ResponseEntity.ok(stats); // 200
+    }
+
+    // entity naar DTO, dezelfde velden als de projecties in CarRepository
+    static CarResponse toCarResponse(Car car) {
+        return CarResponse.builder()
+                .id(car.getId())
                 .brand(car.getBrand())
                 .model(car.getModel())
                 .power(car.getPower())
@@ -201,45 +548,10 @@ public class CarService {
                 .color(car.getColor())
                 .imageUri(car.getImageUri())
                 .description(car.getDescription())
-                .dealerId(dealer.getId())
-                .dealerName(dealer.getName())
-                .dealerAddress(dealer.getAddress())
-                .dealerCity(dealer.getCity())
-                .dealerEmail(dealer.getEmail())
-                .dealerPostcode(dealer.getPostcode())
-                .dealerPhone(dealer.getPhone())
                 .build();
-
-        return ResponseEntity.ok(carDealerResponse); // 200
     }
 
-    // endpoint, GET top 4 cars based on popularity and power
-    public ResponseEntity<List<PopCarsResponse>> getTop4Cars() {
-        List<Popularity> popularities = popularityRepository.findAll();
-        if (popularities.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
-        }
-
-        List<PopCarsResponse> topCars = popularities.stream()
-                .sorted(Comparator.comparingInt(Popularity::getLikes).reversed()
-                        .thenComparing(p -> p.getCar().getPower(), Comparator.reverseOrder()))
-                .limit(4)
-                .map(popularity -> {
-                    Car car = popularity.getCar();
-                    return PopCarsResponse.builder()
-                            .id(car.getId())
-                            .brand(car.getBrand())
-                            .model(car.getModel())
-                            .power(car.getPower())
-                            .year(car.getYear())
-                            .color(car.getColor())
-                            .imageUri(car.getImageUri())
-                            .description(car.getDescription())
-                            .likes(popularity.getLikes())
-                            .build();
-                })
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(topCars); // 200
+    private long currentLikes(PopCarsResponse car) {
+        return car.getLikes() + popularityCounters.pending(car.getId());
     }
 }
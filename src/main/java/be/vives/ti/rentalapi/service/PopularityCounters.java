@@ -0,0 +1,124 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.cache.SecondLevelCacheConfig;
+import be.vives.ti.rentalapi.model.Popularity;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Likes per auto worden eerst in het geheugen opgeteld (een LongAdder per auto, zonder locks)
+ * en op een vast interval in één batch naar de popularity tabel geschreven.
+ * Bij het afsluiten wordt er nog een laatste keer geflusht.
+ */
+@Slf4j
+@Component
+public class PopularityCounters {
+
+    private static final String ADD_LIKES = "UPDATE popularity SET likes = likes + ?, version = version + 1 WHERE car_id = ?";
+    private static final String INSERT_POPULARITY = "INSERT INTO popularity (car_id, likes, version) VALUES (?, ?, 0)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final Map<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public void increment(Integer carId) {
+        pending.computeIfAbsent(carId, id -> new LongAdder()).increment();
+    }
+
+    // likes die nog niet in de database staan
+    public long pending(Integer carId) {
+        LongAdder adder = pending.get(carId);
+        return adder == null ? 0 : adder.sum();
+    }
+
+    // read loopt niet gelijktijdig met een flush, zodat likes uit de database en pending() samen kloppen:
+    // een flush ertussen zou de geflushte likes dubbel of helemaal niet laten meetellen
+    public synchronized <T> T withoutFlush(Supplier<T> read) {
+        return read.get();
+    }
+
+    // een verwijderde auto mag niet meer geflusht worden
+    public void discard(Integer carId) {
+        pending.remove(carId);
+    }
+
+    @Scheduled(fixedDelayString = "${rental.popularity.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        Map<Integer, Long> deltas = drain();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Integer> carIds = new ArrayList<>(deltas.keySet());
+        List<Object[]> updates = new ArrayList<>(carIds.size());
+        for (Integer carId : carIds) {
+            updates.add(new Object[]{deltas.get(carId), carId});
+        }
+
+        int[] updated;
+        try {
+            updated = jdbcTemplate.batchUpdate(ADD_LIKES, updates);
+        } catch (DataAccessException e) {
+            // niets verloren laten gaan, de volgende flush probeert opnieuw
+            deltas.forEach(this::addBack);
+            log.warn("Flushing {} popularity counters failed, will retry", deltas.size(), e);
+            return;
+        }
+
+        // auto's zonder popularity record krijgen er een, zoals createRental dat vroeger deed
+        for (int i = 0; i < carIds.size(); i++) {
+            if (updated[i] == 0) {
+                Integer carId = carIds.get(i);
+                try {
+                    jdbcTemplate.update(INSERT_POPULARITY, carId, deltas.get(carId));
+                } catch (DataIntegrityViolationException e) {
+                    log.warn("Dropping {} likes for car {}, the car no longer exists", deltas.get(carId), carId);
+                }
+            }
+        }
+
+        // de updates liepen buiten Hibernate om, de second-level cache weet daar niets van
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        cache.evictEntityData(Popularity.class);
+        cache.evictQueryRegion(SecondLevelCacheConfig.LEADERBOARD_REGION);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private Map<Integer, Long> drain() {
+        Map<Integer, Long> deltas = new HashMap<>();
+        pending.forEach((carId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.put(carId, delta);
+            }
+        });
+        return deltas;
+    }
+
+    private void addBack(Integer carId, Long delta) {
+        pending.computeIfAbsent(carId, id -> new LongAdder()).add(delta);
+    }
+}
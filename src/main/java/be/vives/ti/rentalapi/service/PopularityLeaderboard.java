@@ -0,0 +1,233 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.dto.projection.CarStanding;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Houdt de K populairste auto's gesorteerd bij (likes, dan power), zodat /topCars niet telkens
+ * alle popularity records moet laden en sorteren.
+ * Een nieuwe rental kan een auto enkel laten stijgen, dat kost O(log K). Enkel als een auto uit de top
+ * verdwijnt of zakt (delete, minder power) wordt de top opnieuw berekend uit de likes van alle auto's in het geheugen.
+ */
+@Slf4j
+@Component
+public class PopularityLeaderboard {
+
+    // meeste likes eerst, dan meeste power, dan laagste id zodat de volgorde altijd vastligt
+    static final Comparator<Standing> ORDER = Comparator.comparingLong(Standing::likes).reversed()
+            .thenComparing(Comparator.comparingInt(Standing::power).reversed())
+            .thenComparingInt(Standing::carId);
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+    @Autowired
+    private CarRepository carRepository;
+    @Autowired
+    private PopularityCounters popularityCounters;
+
+    @Value("${rental.popularity.top-k:20}")
+    private int capacity;
+
+    // guarded by this
+    private final Map<Integer, Standing> standings = new HashMap<>();
+    private final TreeSet<Standing> top = new TreeSet<>(ORDER);
+    // gegevens van de auto's in de top, zodat een request geen query nodig heeft
+    private final Map<Integer, CarResponse> details = new ConcurrentHashMap<>();
+    private volatile boolean ready;
+    // gaat omhoog bij elke wijziging van de ranking of van de gegevens van een auto, basis voor de ETag van /topCars
+    private long version; // guarded by this
+    // gaat omhoog telkens details geleegd wordt, een query die daarvoor gestart is mag details niet meer vullen
+    private long detailsVersion; // guarded by this
+
+    record Standing(int carId, long likes, int power) {
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    // volledige ranking opnieuw opbouwen vanuit de database (plus de likes die nog niet geflusht zijn)
+    public void rebuild() {
+        try {
+            // likes uit de database en de likes die nog niet geflusht zijn zonder flush ertussen
+            List<Standing> loaded = popularityCounters.withoutFlush(() -> popularityRepository.findAllStandings().stream()
+                    .map(standing -> new Standing(standing.carId(),
+                            standing.likes() + popularityCounters.pending(standing.carId()), standing.power()))
+                    .toList());
+            synchronized (this) {
+                standings.clear();
+                for (Standing standing : loaded) {
+                    standings.put(standing.carId(), standing);
+                }
+                refill();
+                details.clear();
+                detailsVersion++;
+                version++;
+                ready = true;
+            }
+            log.info("Popularity leaderboard loaded: top {} of {} cars", top.size(), loaded.size());
+        } catch (RuntimeException e) {
+            ready = false;
+            log.warn("Popularity leaderboard could not be loaded, falling back to the database", e);
+        }
+    }
+
+    // de auto werd één keer meer verhuurd
+    public synchronized void increment(Integer carId, Integer power) {
+        Standing old = standings.get(carId);
+        Standing updated = new Standing(carId, old == null ? 1 : old.likes() + 1,
+                power != null ? power : old == null ? 0 : old.power());
+        standings.put(carId, updated);
+        if (old != null && top.remove(old)) {
+            top.add(updated);
+        } else {
+            offer(updated);
+        }
+        version++;
+    }
+
+    public synchronized void addCar(Integer carId, Integer power) {
+        Standing standing = new Standing(carId, 0, power);
+        standings.put(carId, standing);
+        offer(standing);
+        version++;
+    }
+
+    // power kan gewijzigd zijn, de gegevens van de auto zeker
+    public synchronized void updateCar(Integer carId, Integer power) {
+        details.remove(carId);
+        detailsVersion++;
+        version++;
+        Standing old = standings.get(carId);
+        if (old == null) {
+            return;
+        }
+        Standing updated = new Standing(carId, old.likes(), power);
+        standings.put(carId, updated);
+        if (top.remove(old)) {
+            top.add(updated);
+            if (power < old.power()) {
+                refill(); // kan nu onder een auto buiten de top zakken
+            }
+        } else {
+            offer(updated);
+        }
+    }
+
+    public synchronized void removeCar(Integer carId) {
+        details.remove(carId);
+        detailsVersion++;
+        version++;
+        Standing old = standings.remove(carId);
+        if (old != null && top.remove(old)) {
+            refill();
+        }
+    }
+
+    // de populairste auto's, limit mag niet groter zijn dan K
+    public List<PopCarsResponse> topCars(int limit) {
+        List<Standing> standingsInTop = new ArrayList<>(limit);
+        long loadedVersion;
+        synchronized (this) {
+            for (Standing standing : top) {
+                if (standingsInTop.size() == limit) {
+                    break;
+                }
+                standingsInTop.add(standing);
+            }
+            loadedVersion = detailsVersion;
+        }
+
+        // gegevens van auto's die nieuw in de top staan in één query ophalen
+        Map<Integer, CarResponse> cars = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Standing standing : standingsInTop) {
+            CarResponse car = details.get(standing.carId());
+            if (car != null) {
+                cars.put(standing.carId(), car);
+            } else {
+                missing.add(standing.carId());
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<CarResponse> loaded = carRepository.findAllResponsesById(missing);
+            loaded.forEach(car -> cars.put(car.getId(), car));
+            synchronized (this) {
+                // een update of delete tijdens de query: niet cachen, anders blijft de oude versie tot de volgende rebuild
+                if (detailsVersion == loadedVersion) {
+                    loaded.forEach(car -> details.put(car.getId(), car));
+                }
+            }
+        }
+
+        List<PopCarsResponse> topCars = new ArrayList<>(standingsInTop.size());
+        for (Standing standing : standingsInTop) {
+            CarResponse car = cars.get(standing.carId());
+            if (car == null) {
+                continue; // net verwijderd
+            }
+            topCars.add(toPopCarsResponse(car, standing.likes()));
+        }
+        return topCars;
+    }
+
+    static PopCarsResponse toPopCarsResponse(CarResponse car, long likes) {
+        return PopCarsResponse.builder()
+                .id(car.getId())
+                .brand(car.getBrand())
+                .model(car.getModel())
+                .power(car.getPower())
+                .year(car.getYear())
+                .color(car.getColor())
+                .imageUri(car.getImageUri())
+                .description(car.getDescription())
+                .likes((int) likes)
+                .build();
+    }
+
+    private void offer(Standing standing) {
+        if (top.size() < capacity) {
+            top.add(standing);
+        } else if (ORDER.compare(standing, top.last()) < 0) {
+            top.add(standing);
+            top.pollLast();
+        }
+    }
+
+    private void refill() {
+        top.clear();
+        for (Standing standing : standings.values()) {
+            offer(standing);
+        }
+    }
+}
@@ -1,26 +1,73 @@
 package be.vives.ti.rentalapi.service;
 
+import be.vives.ti.rentalapi.availability.BookingHolds;
+import be.vives.ti.rentalapi.availability.BookingSuggestions;
+import be.vives.ti.rentalapi.availability.RentalAvailabilityIndex;
+import be.vives.ti.rentalapi.cache.CatalogVersions;
+import be.vives.ti.rentalapi.cache.ETags;
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
 import be.vives.ti.rentalapi.dto.request.RentalRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.HoldResponse;
+import be.vives.ti.rentalapi.dto.response.PeriodResponse;
+import be.vives.ti.rentalapi.dto.response.RentalConflictResponse;
 import be.vives.ti.rentalapi.dto.response.RentalResponse;
+import be.vives.ti.rentalapi.metrics.BookingMetrics;
 import be.vives.ti.rentalapi.model.Car;
-import be.vives.ti.rentalapi.model.Popularity;
 import be.vives.ti.rentalapi.model.Rental;
 import be.vives.ti.rentalapi.repository.CarRepository;
-import be.vives.ti.rentalapi.repository.PopularityRepository;
 import be.vives.ti.rentalapi.repository.RentalRepository;
+import be.vives.ti.rentalapi.repository.RentalSlotRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 public class RentalService {
     @Autowired
@@ -28,101 +75,430 @@ public class RentalService {
     @Autowired
     private CarRepository carRepository;
     @Autowired
-    private PopularityRepository popularityRepository;
+    private ObjectMapper objectMapper;
+    @Autowired
+    private RentalAvailabilityIndex availabilityIndex;
+    @Autowired
+    private BookingLocks bookingLocks;
+    @Autowired
+    private BookingHolds bookingHolds;
+    @Autowired
+    private RentalSlotRepository rentalSlotRepository;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private PopularityCounters popularityCounters;
+    @Autowired
+    private PopularityLeaderboard popularityLeaderboard;
+    @Autowired
+    private Validator validator;
+    @Autowired
+    private CatalogVersions catalogVersions;
+    @Autowired
+    private BookingMetrics bookingMetrics;
 
-    public ResponseEntity<List<RentalResponse>> getAllRentals() {
-        List<Rental> rentals = rentalRepository.findAll();
-        if (rentals.isEmpty()) {
-            return ResponseEntity.ok().body(new ArrayList<>()); // 200
-        }
-        List<RentalResponse> rentalList = rentals.stream()
-                .map(rental ->
-                        RentalResponse.builder()
-                                .id(rental.getId())
-                                .rentalPrice(rental.getRentalPrice())
-                                .carId(rental.getCar().getId())
-                                .deposit(rental.getDeposit())
-                                .pickupLocation(rental.getPickupLocation())
-                                .startDate(rental.getStartDate())
-                                .endDate(rental.getEndDate())
-                                .email(rental.getEmail())
-                                .build())
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(rentalList);
-    }
-
-    public ResponseEntity<RentalResponse> getRentalById(@PathVariable Integer id) {
+    // elke check uit de index ook in de database nakijken, de database heeft dan het laatste woord
+    @Value("${rental.availability.verify-with-database:false}")
+    private boolean verifyWithDatabase;
+
+    // elke rental claimt ook een rij per dag in rental_slot, de unique key weigert overlap over alle instanties heen
+    @Value("${rental.booking.slot-claims.enabled:false}")
+    private boolean slotClaimsEnabled;
+
+    @Value("${rental.booking.batch.max-size:500}")
+    private int maxBatchSize;
+
+    // bij een 409: hoeveel vrije periodes voor dezelfde auto en hoeveel vrije auto's van dezelfde dealer
+    @Value("${rental.booking.suggestions.alternatives:3}")
+    private int maxAlternatives;
+
+    @Value("${rental.booking.suggestions.cars:5}")
+    private int maxAvailableCars;
+
+    // single bookings in micro-batches bewaren via één writer thread, zie BookingGroupCommit
+    @Value("${rental.booking.group-commit.enabled:false}")
+    private boolean groupCommitEnabled;
+
+    // elke request wacht onder de lock van zijn stripe, een batch telt dus nooit meer rentals dan er stripes zijn
+    @Value("${rental.booking.group-commit.max-batch-size:200}")
+    private int groupCommitMaxBatchSize;
+
+    @Value("${rental.booking.group-commit.max-delay-ms:5}")
+    private long groupCommitMaxDelayMillis;
+
+    // zo lang mag een rental in de queue staan voor de writer hem oppikt, een commit die al loopt wordt afgewacht
+    @Value("${rental.booking.group-commit.timeout-ms:5000}")
+    private long groupCommitTimeoutMillis;
+
+    private BookingGroupCommit groupCommit;
+
+    static final String CSV_HEADER = "id,carId,rentalPrice,startDate,endDate,deposit,pickupLocation,email";
+
+    @PostConstruct
+    void startGroupCommit() {
+        if (groupCommitEnabled) {
+            if (groupCommitMaxBatchSize > bookingLocks.getStripeCount()) {
+                log.warn("Group commit batches are limited to {} rentals by rental.booking.lock-stripes, not {}",
+                        bookingLocks.getStripeCount(), groupCommitMaxBatchSize);
+            }
+            groupCommit = new BookingGroupCommit(groupCommitMaxBatchSize, groupCommitMaxDelayMillis, this::saveRentals, bookingMetrics);
+        }
+    }
+
+    @PreDestroy
+    void stopGroupCommit() throws InterruptedException {
+        if (groupCommit != null) {
+            groupCommit.close();
+        }
+    }
+
+    public ResponseEntity<List<RentalResponse>> getAllRentals(String ifNoneMatch) {
+        // ETag eerst bepalen: een wijziging tijdens het laden geeft hoogstens een nieuwere body onder een oude ETag
+        String eTag = catalogVersions.getRentalsETag();
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ETags.notModified(eTag); // 304, zonder query
+        }
+
+        // projectie op car_id, de auto en dealer worden niet geladen
+        List<RentalResponse> rentalList = rentalRepository.findAllResponses();
+        return ETags.ok(eTag, rentalList); // 200
+    }
+
+    // export als NDJSON, elke rental wordt geschreven zodra die uit de database gelezen is
+    @Transactional
+    public void exportRentalsAsNdjson(OutputStream outputStream) throws IOException {
+        try (Stream<RentalResponse> rentals = rentalRepository.streamAll();
+             SequenceWriter writer = objectMapper.writerFor(RentalResponse.class)
+                     .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                     .withRootValueSeparator("\n")
+                     .writeValues(outputStream)) {
+            for (RentalResponse rental : (Iterable<RentalResponse>) rentals::iterator) {
+                writer.write(rental);
+            }
+        }
+    }
+
+    // export als CSV met een header rij
+    @Transactional
+    public void exportRentalsAsCsv(OutputStream outputStream) throws IOException {
+        try (Stream<RentalResponse> rentals = rentalRepository.streamAll();
+             Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+            writer.write(CSV_HEADER);
+            writer.write("\r\n");
+            for (RentalResponse rental : (Iterable<RentalResponse>) rentals::iterator) {
+                writer.write(String.valueOf(rental.getId()));
+                writer.write(',');
+                writer.write(String.valueOf(rental.getCarId()));
+                writer.write(',');
+                writer.write(rental.getRentalPrice().toPlainString());
+                writer.write(',');
+                writer.write(rental.getStartDate().toString());
+                writer.write(',');
+                writer.write(rental.getEndDate().toString());
+                writer.write(',');
+                writer.write(rental.getDeposit().toPlainString());
+                writer.write(',');
+                writer.write(csvField(rental.getPickupLocation()));
+                writer.write(',');
+                writer.write(csvField(rental.getEmail()));
+                writer.write("\r\n");
+            }
+        }
+    }
+
+    // RFC 4180: velden met een komma, aanhalingsteken of newline tussen aanhalingstekens zetten
+    static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    // entity naar DTO, car_id zonder de auto te laden
+    static RentalResponse toRentalResponse(Rental rental) {
+        return RentalResponse.builder()
+                .id(rental.getId())
+                .carId(rental.getCar().getId())
+                .rentalPrice(rental.getRentalPrice())
+                .startDate(rental.getStartDate())
+                .endDate(rental.getEndDate())
+                .deposit(rental.getDeposit())
+                .pickupLocation(rental.getPickupLocation())
+                .email(rental.getEmail())
+                .build();
+    }
+
+    public ResponseEntity<RentalResponse> getRentalById(@PathVariable Integer id, String ifNoneMatch) {
         Optional<Rental> rental = rentalRepository.findById(id);
         if (rental.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
         }
 
         Rental rentalEntity = rental.get();
-        RentalResponse rentalResponse = RentalResponse.builder()
-                .id(rentalEntity.getId())
-                .rentalPrice(rentalEntity.getRentalPrice())
-                .carId(rentalEntity.getCar().getId())
-                .deposit(rentalEntity.getDeposit())
-                .pickupLocation(rentalEntity.getPickupLocation())
-                .startDate(rentalEntity.getStartDate())
-                .endDate(rentalEntity.getEndDate())
-                .email(rentalEntity.getEmail())
-                .build();
-        return ResponseEntity.ok(rentalResponse); // 200
+        String eTag = ETags.of("rental", id, rentalEntity.getVersion());
+        if (ETags.matches(ifNoneMatch, eTag)) {
+            return ETags.notModified(eTag); // 304
+        }
+
+        RentalResponse rentalResponse = toRentalResponse(rentalEntity);
+        return ETags.ok(eTag, rentalResponse); // 200
     }
 
     public ResponseEntity<RentalResponse> createRental(@Valid @RequestBody RentalRequest rentalRequest) {
+        ResponseEntity<RentalResponse> response = bookRental(rentalRequest);
+        bookingMetrics.record(BookingMetrics.SINGLE, response.getStatusCode().value());
+        return response;
+    }
+
+    private ResponseEntity<RentalResponse> bookRental(RentalRequest rentalRequest) {
         Optional<Car> car = carRepository.findById(rentalRequest.getCarId());
         if (car.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
         }
+        return insertRental(car.get(), rentalRequest, null);
+    }
 
-        // check voor overlappende datums
-        boolean isCarRented = rentalRepository.existsByCarIdAndDateRange(
-                rentalRequest.getCarId(),
-                rentalRequest.getStartDate(),
-                rentalRequest.getEndDate()
-        );
-        if (isCarRented) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build(); // 409
-        }
-        // miss nog een message meegeven dat de datum al gereserveerd is.
-
-        Rental rental = Rental.builder()
-                .car(car.get())
-                .rentalPrice(rentalRequest.getRentalPrice())
-                .startDate(rentalRequest.getStartDate())
-                .endDate(rentalRequest.getEndDate())
-                .deposit(rentalRequest.getDeposit())
-                .pickupLocation(rentalRequest.getPickupLocation())
-                .email(rentalRequest.getEmail())
-                .build();
+    // check en insert onder een lock per auto, zodat twee gelijktijdige bookings voor dezelfde auto niet allebei slagen.
+    // Een hold die bevestigd wordt blijft staan tot de rental bewaard is: faalt de insert (409 of een fout in de database),
+    // dan heeft de client zijn hold nog. Zolang de lock vastgehouden wordt kan niemand anders de periode boeken.
+    private ResponseEntity<RentalResponse> insertRental(Car car, RentalRequest rentalRequest, UUID holdId) {
+        Rental savedRental;
+        Lock carLock = bookingLocks.lock(rentalRequest.getCarId());
+        try {
+            if (holdId != null && bookingHolds.find(holdId) == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404, hold net verlopen of al bevestigd
+            }
 
-        Rental savedRental = rentalRepository.save(rental);
-
-        // populariteit aanpassen
-        Popularity popularity = popularityRepository.findByCarId(rentalRequest.getCarId())
-                        .orElse(Popularity.builder()
-                                .car(car.get())
-                                .likes(0)
-                                .build());
-        popularity.setLikes(popularity.getLikes() + 1);
-        popularityRepository.save(popularity);
-
-        RentalResponse rentalResponse = RentalResponse.builder()
-                .id(savedRental.getId())
-                .carId(savedRental.getCar().getId())
-                .rentalPrice(savedRental.getRentalPrice())
-                .startDate(savedRental.getStartDate())
-                .endDate(savedRental.getEndDate())
-                .deposit(savedRental.getDeposit())
-                .pickupLocation(savedRental.getPickupLocation())
-                .email(savedRental.getEmail())
-                .build();
+            // check voor overlappende datums, de eigen hold telt niet mee
+            boolean isCarRented = isCarRented(
+                    rentalRequest.getCarId(),
+                    rentalRequest.getStartDate(),
+                    rentalRequest.getEndDate(),
+                    holdId
+            );
+            if (isCarRented) {
+                return conflict(car, rentalRequest); // 409
+            }
+            // miss nog een message meegeven dat de datum al gereserveerd is.
+
+            Rental rental = Rental.builder()
+                    .car(car)
+                    .rentalPrice(rentalRequest.getRentalPrice())
+                    .startDate(rentalRequest.getStartDate())
+                    .endDate(rentalRequest.getEndDate())
+                    .deposit(rentalRequest.getDeposit())
+                    .pickupLocation(rentalRequest.getPickupLocation())
+                    .email(rentalRequest.getEmail())
+                    .build();
+
+            try {
+                savedRental = commitRental(rental);
+            } catch (DataIntegrityViolationException e) {
+                if (!slotClaimsEnabled) {
+                    throw e; // zonder slot claims is dit geen overlap maar een echte fout
+                }
+                return conflict(car, rentalRequest); // 409, dag al geclaimd op een andere instantie
+            }
+            availabilityIndex.put(savedRental.getId(), rentalRequest.getCarId(), savedRental.getStartDate(), savedRental.getEndDate());
+            if (holdId != null) {
+                // de rental staat in de database en in de index, de hold is niet meer nodig (ook als hij intussen verlopen is)
+                bookingHolds.release(holdId);
+            }
+        } finally {
+            carLock.unlock();
+        }
+
+        // populariteit aanpassen, wordt periodiek in batch naar de database geschreven
+        popularityCounters.increment(rentalRequest.getCarId());
+        popularityLeaderboard.increment(rentalRequest.getCarId(), car.getPower());
+
+        RentalResponse rentalResponse = toRentalResponse(savedRental);
 
         return ResponseEntity.status(HttpStatus.CREATED).body(rentalResponse); // 201 Created
     }
 
+    // hold tijdens de checkout: blokkeert de periode net als een rental, zonder iets in de database te schrijven
+    public ResponseEntity<RentalResponse> createHold(RentalRequest rentalRequest) {
+        ResponseEntity<RentalResponse> response = holdRental(rentalRequest);
+        bookingMetrics.record(BookingMetrics.HOLD, response.getStatusCode().value());
+        return response;
+    }
+
+    private ResponseEntity<RentalResponse> holdRental(RentalRequest rentalRequest) {
+        Optional<Car> car = carRepository.findById(rentalRequest.getCarId());
+        if (car.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
+        }
+
+        BookingHolds.Hold hold;
+        Lock carLock = bookingLocks.lock(rentalRequest.getCarId());
+        try {
+            boolean isCarRented = isCarRented(
+                    rentalRequest.getCarId(),
+                    rentalRequest.getStartDate(),
+                    rentalRequest.getEndDate()
+            );
+            if (isCarRented) {
+                return conflict(car.get(), rentalRequest); // 409
+            }
+            hold = bookingHolds.hold(rentalRequest);
+        } finally {
+            carLock.unlock();
+        }
+
+        return ResponseEntity.status(HttpStatus.CREATED).body(toHoldResponse(hold)); // 201 Created
+    }
+
+    public ResponseEntity<RentalResponse> getHold(UUID id) {
+        BookingHolds.Hold hold = bookingHolds.find(id);
+        if (hold == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404, onbekend of verlopen
+        }
+        return ResponseEntity.ok(toHoldResponse(hold)); // 200
+    }
+
+    // hold omzetten in een rental met de gegevens van de hold
+    public ResponseEntity<RentalResponse> confirmHold(UUID id) {
+        ResponseEntity<RentalResponse> response = bookHold(id);
+        bookingMetrics.record(BookingMetrics.CONFIRM, response.getStatusCode().value());
+        return response;
+    }
+
+    private ResponseEntity<RentalResponse> bookHold(UUID id) {
+        BookingHolds.Hold hold = bookingHolds.find(id);
+        if (hold == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404, onbekend of verlopen
+        }
+
+        Optional<Car> car = carRepository.findById(hold.carId());
+        if (car.isEmpty()) {
+            bookingHolds.release(id);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404, auto intussen verwijderd
+        }
+        return insertRental(car.get(), hold.request(), id);
+    }
+
+    public ResponseEntity<Void> releaseHold(UUID id) {
+        if (!bookingHolds.release(id)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404, onbekend of verlopen
+        }
+        return ResponseEntity.status(HttpStatus.NO_CONTENT).build(); // 204
+    }
+
+    private static HoldResponse toHoldResponse(BookingHolds.Hold hold) {
+        RentalRequest request = hold.request();
+        return new HoldResponse(hold.id(), Instant.ofEpochMilli(hold.expiresAtMillis()), request.getCarId(),
+                request.getRentalPrice(), request.getStartDate(), request.getEndDate(), request.getDeposit(),
+                request.getPickupLocation(), request.getEmail());
+    }
+
+    // batch booking: alle auto's in één IN query, overlap met bestaande rentals en binnen de batch in één pass
+    // en alle geaccepteerde rentals in één transactie. Binnen de batch wint het eerste element bij overlap.
+    public ResponseEntity<List<BatchItemResponse<RentalResponse>>> createRentals(List<RentalRequest> rentalRequests) {
+        ResponseEntity<List<BatchItemResponse<RentalResponse>>> response = bookRentals(rentalRequests);
+        if (response.getBody() != null) {
+            response.getBody().forEach(item -> bookingMetrics.record(BookingMetrics.BATCH, item.getStatus()));
+        }
+        return response;
+    }
+
+    private ResponseEntity<List<BatchItemResponse<RentalResponse>>> bookRentals(List<RentalRequest> rentalRequests) {
+        if (rentalRequests == null || rentalRequests.isEmpty() || rentalRequests.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build(); // 400
+        }
+
+        List<BatchItemResponse<RentalResponse>> results = new ArrayList<>(Collections.nCopies(rentalRequests.size(), null));
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < rentalRequests.size(); i++) {
+            String error = validateRentalRequest(rentalRequests.get(i));
+            if (error != null) {
+                results.set(i, new BatchItemResponse<>(i, HttpStatus.BAD_REQUEST.value(), null, error)); // 400
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        Set<Integer> carIds = candidates.stream()
+                .map(i -> rentalRequests.get(i).getCarId())
+                .collect(Collectors.toSet());
+        Map<Integer, Car> cars = carIds.isEmpty() ? Map.of() : carRepository.findAllById(carIds).stream()
+                .collect(Collectors.toMap(Car::getId, Function.identity()));
+        candidates.removeIf(i -> {
+            Integer carId = rentalRequests.get(i).getCarId();
+            if (cars.containsKey(carId)) {
+                return false;
+            }
+            results.set(i, new BatchItemResponse<>(i, HttpStatus.NOT_FOUND.value(), null, "Car " + carId + " not found")); // 404
+            return true;
+        });
+        if (candidates.isEmpty()) {
+            return ResponseEntity.ok(results); // 200
+        }
+
+        List<Rental> accepted = new ArrayList<>();
+        List<Integer> acceptedIndexes = new ArrayList<>();
+        List<Lock> carLocks = bookingLocks.lockAll(cars.keySet());
+        try {
+            LocalDate windowStart = candidates.stream().map(i -> rentalRequests.get(i).getStartDate()).min(LocalDate::compareTo).get();
+            LocalDate windowEnd = candidates.stream().map(i -> rentalRequests.get(i).getEndDate()).max(LocalDate::compareTo).get();
+
+            // geboekte periodes per auto, gesorteerd op startdatum
+            Map<Integer, NavigableMap<LocalDate, LocalDate>> bookedByCar = new HashMap<>();
+            for (RentalPeriod period : rentalRepository.findPeriodsByCarIdsAndDateRange(cars.keySet(), windowStart, windowEnd)) {
+                book(bookedByCar.computeIfAbsent(period.carId(), id -> new TreeMap<>()), period.startDate(), period.endDate());
+            }
+
+            for (Integer i : candidates) {
+                RentalRequest rentalRequest = rentalRequests.get(i);
+                NavigableMap<LocalDate, LocalDate> booked = bookedByCar.computeIfAbsent(rentalRequest.getCarId(), id -> new TreeMap<>());
+                if (overlaps(booked, rentalRequest.getStartDate(), rentalRequest.getEndDate())
+                        || bookingHolds.overlaps(rentalRequest.getCarId(), rentalRequest.getStartDate(), rentalRequest.getEndDate())) {
+                    results.set(i, new BatchItemResponse<>(i, HttpStatus.CONFLICT.value(), null,
+                            "Car " + rentalRequest.getCarId() + " is already rented in this period")); // 409
+                    continue;
+                }
+                booked.put(rentalRequest.getStartDate(), rentalRequest.getEndDate());
+                accepted.add(Rental.builder()
+                        .car(cars.get(rentalRequest.getCarId()))
+                        .rentalPrice(rentalRequest.getRentalPrice())
+                        .startDate(rentalRequest.getStartDate())
+                        .endDate(rentalRequest.getEndDate())
+                        .deposit(rentalRequest.getDeposit())
+                        .pickupLocation(rentalRequest.getPickupLocation())
+                        .email(rentalRequest.getEmail())
+                        .build());
+                acceptedIndexes.add(i);
+            }
+
+            saveRentals(accepted);
+            for (Rental rental : accepted) {
+                if (rental.getId() != null) {
+                    availabilityIndex.put(rental.getId(), rental.getCar().getId(), rental.getStartDate(), rental.getEndDate());
+                }
+            }
+        } finally {
+            carLocks.forEach(Lock::unlock);
+        }
+
+        for (int i = 0; i < accepted.size(); i++) {
+            Rental rental = accepted.get(i);
+            Integer index = acceptedIndexes.get(i);
+            if (rental.getId() == null) {
+                results.set(index, new BatchItemResponse<>(index, HttpStatus.CONFLICT.value(), null,
+                        "Car " + rental.getCar().getId() + " is already rented in this period")); // 409, dag al geclaimd op een andere instantie
+                continue;
+            }
+
+            popularityCounters.increment(rental.getCar().getId());
+            popularityLeaderboard.increment(rental.getCar().getId(), rental.getCar().getPower());
+
+            RentalResponse rentalResponse = toRentalResponse(rental);
+            results.set(index, new BatchItemResponse<>(index, HttpStatus.CREATED.value(), rentalResponse, null)); // 201
+        }
+
+        return ResponseEntity.ok(results); // 200
+    }
+
     public ResponseEntity<RentalResponse> updateRental(@PathVariable Integer id, @Valid @RequestBody RentalRequest rentalRequest) {
         Optional<Rental> existingRental = rentalRepository.findById(id);
         if (existingRental.isEmpty()) {
@@ -134,39 +510,45 @@ public class RentalService {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404
         }
 
-        // check voor overlappende datums
-        boolean isCarRented = rentalRepository.existsByCarIdAndDateRange(
-                rentalRequest.getCarId(),
-                rentalRequest.getStartDate(),
-                rentalRequest.getEndDate()
-        );
-        if (isCarRented) {
-            return ResponseEntity.status(HttpStatus.CONFLICT).build(); // 409
-        }
-
-        Rental rentalEntity = existingRental.get();
-
-        // Update fields of the existing rental
-        rentalEntity.setCar(car.get());
-        rentalEntity.setRentalPrice(rentalRequest.getRentalPrice());
-        rentalEntity.setStartDate(rentalRequest.getStartDate());
-        rentalEntity.setEndDate(rentalRequest.getEndDate());
-        rentalEntity.setDeposit(rentalRequest.getDeposit());
-        rentalEntity.setPickupLocation(rentalRequest.getPickupLocation());
-        rentalEntity.setEmail(rentalRequest.getEmail());
-
-        Rental updatedRental = rentalRepository.save(rentalEntity);
-
-        RentalResponse rentalResponse = RentalResponse.builder()
-                .id(updatedRental.getId())
-                .rentalPrice(updatedRental.getRentalPrice())
-                .carId(updatedRental.getCar().getId())
-                .deposit(updatedRental.getDeposit())
-                .pickupLocation(updatedRental.getPickupLocation())
-                .startDate(updatedRental.getStartDate())
-                .endDate(updatedRental.getEndDate())
-                .email(updatedRental.getEmail())
-                .build();
+        // check en update onder de lock van de (nieuwe) auto
+        Rental updatedRental;
+        Lock carLock = bookingLocks.lock(rentalRequest.getCarId());
+        try {
+            // check voor overlappende datums
+            boolean isCarRented = isCarRented(
+                    rentalRequest.getCarId(),
+                    rentalRequest.getStartDate(),
+                    rentalRequest.getEndDate()
+            );
+            if (isCarRented) {
+                return conflict(car.get(), rentalRequest); // 409
+            }
+
+            Rental rentalEntity = existingRental.get();
+
+            // Update fields of the existing rental
+            rentalEntity.setCar(car.get());
+            rentalEntity.setRentalPrice(rentalRequest.getRentalPrice());
+            rentalEntity.setStartDate(rentalRequest.getStartDate());
+            rentalEntity.setEndDate(rentalRequest.getEndDate());
+            rentalEntity.setDeposit(rentalRequest.getDeposit());
+            rentalEntity.setPickupLocation(rentalRequest.getPickupLocation());
+            rentalEntity.setEmail(rentalRequest.getEmail());
+
+            try {
+                updatedRental = saveRental(rentalEntity, true);
+            } catch (DataIntegrityViolationException e) {
+                if (!slotClaimsEnabled) {
+                    throw e; // zonder slot claims is dit geen overlap maar een echte fout
+                }
+                return conflict(car.get(), rentalRequest); // 409, dag al geclaimd op een andere instantie
+            }
+            availabilityIndex.put(updatedRental.getId(), rentalRequest.getCarId(), updatedRental.getStartDate(), updatedRental.getEndDate());
+        } finally {
+            carLock.unlock();
+        }
+
+        RentalResponse rentalResponse = toRentalResponse(updatedRental);
 
         return ResponseEntity.ok(rentalResponse); // 200 OK
     }
@@ -177,7 +559,194 @@ public class RentalService {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).build(); // 404 if rental not found
         }
 
-        rentalRepository.deleteById(id);
+        if (slotClaimsEnabled) {
+            // samen in één transactie, anders blijft bij een fout een rental zonder geclaimde dagen over
+            transactionTemplate.execute(status -> {
+                rentalSlotRepository.deleteAllByRentalId(id);
+                rentalRepository.deleteById(id);
+                return null;
+            });
+        } else {
+            rentalSlotRepository.deleteAllByRentalId(id);
+            rentalRepository.deleteById(id);
+        }
+        availabilityIndex.remove(id);
         return ResponseEntity.status(HttpStatus.NO_CONTENT).build(); // 204 No Content
     }
+
+    // in slot-modus worden de rental en zijn dagen in één transactie bewaard, een geclaimde dag rolt alles terug
+    private Rental saveRental(Rental rental, boolean replaceSlots) {
+        if (!slotClaimsEnabled) {
+            return rentalRepository.save(rental);
+        }
+        return transactionTemplate.execute(status -> {
+            if (replaceSlots) {
+                rentalSlotRepository.deleteAllByRentalId(rental.getId());
+            }
+            Rental saved = rentalRepository.save(rental);
+            rentalSlotRepository.claimSlots(saved.getCar().getId(), saved.getId(), saved.getStartDate(), saved.getEndDate());
+            return saved;
+        });
+    }
+
+    // met de group commit wacht de request (onder de lock van de auto) tot de batch met deze rental gecommit is.
+    // De timeout geldt enkel zolang de rental in de queue staat: een rental die de writer al bewaart wordt afgewacht,
+    // zodat index, populariteit en hold altijd mee volgen met wat in de database staat
+    private Rental commitRental(Rental rental) {
+        if (groupCommit == null) {
+            return saveRental(rental, false);
+        }
+
+        Rental savedRental;
+        try {
+            savedRental = groupCommit.submit(rental, groupCommitTimeoutMillis).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof TimeoutException) {
+                throw new QueryTimeoutException("Group commit did not pick up the rental within " + groupCommitTimeoutMillis + " ms", e.getCause());
+            }
+            throw e;
+        }
+        if (savedRental.getId() == null) {
+            // saveRentals viel terug op één per één en deze dag was al geclaimd
+            throw new DataIntegrityViolationException("Rental slots already claimed for car " + rental.getCar().getId());
+        }
+        return savedRental;
+    }
+
+    // alle rentals in één transactie (één insert per rental door de IDENTITY id, de slots in JDBC batches)
+    // in slot-modus kan een dag al door een andere instantie geclaimd zijn, dan één per één zodat enkel die rental faalt
+    private void saveRentals(List<Rental> rentals) {
+        if (rentals.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.execute(status -> {
+                rentalRepository.saveAll(rentals);
+                if (slotClaimsEnabled) {
+                    for (Rental rental : rentals) {
+                        rentalSlotRepository.claimSlots(rental.getCar().getId(), rental.getId(), rental.getStartDate(), rental.getEndDate());
+                    }
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            rentals.forEach(rental -> rental.setId(null)); // ids uit de teruggerolde transactie
+            if (!slotClaimsEnabled || !(e instanceof DataIntegrityViolationException)) {
+                throw e; // zonder slot claims is dit geen overlap maar een echte fout, de group commit probeert per rij
+            }
+            for (Rental rental : rentals) {
+                try {
+                    saveRental(rental, false);
+                } catch (DataIntegrityViolationException conflict) {
+                    rental.setId(null); // geen id = niet bewaard
+                }
+            }
+        }
+    }
+
+    // periode toevoegen, overlappende bestaande periodes worden samengevoegd zodat de map disjunct blijft
+    private static void book(NavigableMap<LocalDate, LocalDate> booked, LocalDate startDate, LocalDate endDate) {
+        Map.Entry<LocalDate, LocalDate> overlapping;
+        while ((overlapping = booked.floorEntry(endDate)) != null && !overlapping.getValue().isBefore(startDate)) {
+            booked.remove(overlapping.getKey());
+            startDate = overlapping.getKey().isBefore(startDate) ? overlapping.getKey() : startDate;
+            endDate = overlapping.getValue().isAfter(endDate) ? overlapping.getValue() : endDate;
+        }
+        booked.put(startDate, endDate);
+    }
+
+    // datums inclusief, zoals existsByCarIdAndDateRange
+    private static boolean overlaps(NavigableMap<LocalDate, LocalDate> booked, LocalDate startDate, LocalDate endDate) {
+        Map.Entry<LocalDate, LocalDate> previous = booked.floorEntry(endDate);
+        return previous != null && !previous.getValue().isBefore(startDate);
+    }
+
+    // dezelfde regels als @Valid op POST /api/rentals, null als alles in orde is
+    private String validateRentalRequest(RentalRequest rentalRequest) {
+        if (rentalRequest == null) {
+            return "Rental is required";
+        }
+        Set<ConstraintViolation<RentalRequest>> violations = validator.validate(rentalRequest);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+        }
+        if (rentalRequest.getEndDate().isBefore(rentalRequest.getStartDate())) {
+            return "endDate: End date must not be before start date";
+        }
+        return null;
+    }
+
+    // 409 met de rentals die de booking blokkeren, de dichtste vrije periodes van dezelfde lengte (niet in het verleden)
+    // en vrije auto's van dezelfde dealer, allemaal uit de index; zolang die niet geladen is zonder suggesties
+    private ResponseEntity<RentalResponse> conflict(Car car, RentalRequest rentalRequest) {
+        LocalDate startDate = rentalRequest.getStartDate();
+        LocalDate endDate = rentalRequest.getEndDate();
+        if (!availabilityIndex.isReady()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new RentalConflictResponse(car.getId(), startDate, endDate, List.of(), List.of(), List.of())); // 409
+        }
+
+        BookingSuggestions suggestions = availabilityIndex.suggest(car.getId(), startDate, endDate, LocalDate.now(), maxAlternatives);
+        long extraDays = ChronoUnit.DAYS.between(startDate, endDate);
+        List<PeriodResponse> conflicts = suggestions.conflicts().stream()
+                .map(period -> new PeriodResponse(period.rentalId(), period.startDate(), period.endDate()))
+                .toList();
+        List<PeriodResponse> alternatives = suggestions.alternativeStarts().stream()
+                .map(start -> new PeriodResponse(null, start, start.plusDays(extraDays)))
+                .toList();
+
+        // één query voor de auto's van de dealer, de overlap-check per auto in het geheugen, één query voor de details
+        List<CarResponse> availableCars = List.of();
+        if (car.getDealer() != null && maxAvailableCars > 0) {
+            List<Integer> otherCars = carRepository.findIdsByDealerId(car.getDealer().getId()).stream()
+                    .filter(carId -> !carId.equals(car.getId()))
+                    .toList();
+            List<Integer> freeCars = availabilityIndex.freeCars(otherCars, startDate, endDate, maxAvailableCars);
+            if (!freeCars.isEmpty()) {
+                availableCars = carRepository.findAllResponsesById(freeCars).stream()
+                        .sorted(Comparator.comparing(CarResponse::getId))
+                        .toList();
+            }
+        }
+
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(new RentalConflictResponse(car.getId(), startDate, endDate, conflicts, alternatives, availableCars)); // 409
+    }
+
+    // overlap-check in de index in het geheugen, de database als fallback zolang de index niet geladen is.
+    // Een actieve hold blokkeert de periode net als een rental.
+    boolean isCarRented(Integer carId, LocalDate startDate, LocalDate endDate) {
+        return isCarRented(carId, startDate, endDate, null);
+    }
+
+    // idem, behalve voor de hold die bevestigd wordt
+    private boolean isCarRented(Integer carId, LocalDate startDate, LocalDate endDate, UUID ignoredHoldId) {
+        boolean isHeld = ignoredHoldId == null
+                ? bookingHolds.overlaps(carId, startDate, endDate)
+                : bookingHolds.overlaps(carId, startDate, endDate, ignoredHoldId);
+        if (isHeld) {
+            return true;
+        }
+
+        if (!availabilityIndex.isReady()) {
+            return rentalRepository.existsByCarIdAndDateRange(carId, startDate, endDate);
+        }
+
+        boolean isCarRented = availabilityIndex.overlaps(carId, startDate, endDate);
+        if (verifyWithDatabase) {
+            boolean isCarRentedInDatabase = rentalRepository.existsByCarIdAndDateRange(carId, startDate, endDate);
+            if (isCarRentedInDatabase != isCarRented) {
+                log.warn("Availability index out of sync for car {} ({} - {}): index={}, database={}",
+                        carId, startDate, endDate, isCarRented, isCarRentedInDatabase);
+                return isCarRentedInDatabase;
+            }
+        }
+        return isCarRented;
+    }
 }
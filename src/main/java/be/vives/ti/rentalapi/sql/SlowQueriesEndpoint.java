@@ -0,0 +1,23 @@
+package be.vives.ti.rentalapi.sql;
+
+import be.vives.ti.rentalapi.dto.response.SlowQueryResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// GET /actuator/slowqueries, de laatste trage queries, nieuwste eerst
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueriesEndpoint {
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @ReadOperation
+    public List<SlowQueryResponse> slowQueries() {
+        return slowQueryLog.getRecent();
+    }
+}
@@ -0,0 +1,45 @@
+package be.vives.ti.rentalapi.sql;
+
+import be.vives.ti.rentalapi.dto.response.SlowQueryResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * De laatste trage queries in een ring buffer van vaste grootte, de oudste wordt overschreven.
+ * Zichtbaar via GET /actuator/slowqueries.
+ */
+@Component
+public class SlowQueryLog {
+
+    private final SlowQueryResponse[] entries;
+    private long added; // guarded by this
+
+    public SlowQueryLog(@Value("${rental.sql.slow-query-log.size:100}") int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("rental.sql.slow-query-log.size must be at least 1");
+        }
+        this.entries = new SlowQueryResponse[size];
+    }
+
+    public synchronized void add(SlowQueryResponse slowQuery) {
+        entries[(int) (added++ % entries.length)] = slowQuery;
+    }
+
+    // nieuwste eerst
+    public synchronized List<SlowQueryResponse> getRecent() {
+        int count = (int) Math.min(added, entries.length);
+        List<SlowQueryResponse> recent = new ArrayList<>(count);
+        for (long i = added - 1; i >= added - count; i--) {
+            recent.add(entries[(int) (i % entries.length)]);
+        }
+        return recent;
+    }
+
+    // totaal aantal trage queries sinds de start, ook de overschreven
+    public synchronized long getTotal() {
+        return added;
+    }
+}
@@ -0,0 +1,71 @@
+package be.vives.ti.rentalapi.sql;
+
+import java.util.Locale;
+
+/**
+ * SQL statistieken van het HTTP request dat op deze thread loopt: aantal statements, totale tijd en het traagste.
+ * Een batch telt als één statement (één round trip). Buiten een request (bv. de scheduler) is er geen current().
+ */
+public class SqlRequestStats {
+
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    private final String request;
+    private int statements;
+    private long totalNanos;
+    private long slowestNanos;
+    private String slowestSql;
+
+    SqlRequestStats(String request) {
+        this.request = request;
+    }
+
+    static SqlRequestStats start(String request) {
+        SqlRequestStats stats = new SqlRequestStats(request);
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    public static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    void record(long nanos, String sql) {
+        statements++;
+        totalNanos += nanos;
+        if (nanos > slowestNanos) {
+            slowestNanos = nanos;
+            slowestSql = sql;
+        }
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getSlowestNanos() {
+        return slowestNanos;
+    }
+
+    public String getSlowestSql() {
+        return slowestSql;
+    }
+
+    // Server-Timing header, zichtbaar in de devtools van de browser: sql;dur=1.234;desc="3 statements, slowest 0.800 ms"
+    String toServerTiming() {
+        return String.format(Locale.ROOT, "sql;dur=%.3f;desc=\"%d statements, slowest %.3f ms\"",
+                totalNanos / 1e6, statements, slowestNanos / 1e6);
+    }
+}
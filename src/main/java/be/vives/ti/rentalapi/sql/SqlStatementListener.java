@@ -0,0 +1,126 @@
+package be.vives.ti.rentalapi.sql;
+
+import be.vives.ti.rentalapi.dto.response.SlowQueryResponse;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Krijgt elke JDBC execution van de proxy datasource. Telt ze bij het lopende request op en logt alles boven
+ * rental.sql.slow-query-threshold-ms, met de types van de bind values en de methode uit onze code die de query veroorzaakte.
+ * De bind values zelf (bv. het e-mailadres van een rental) enkel met rental.sql.slow-query-log.bind-values=true.
+ */
+@Slf4j
+@Component
+public class SqlStatementListener implements QueryExecutionListener {
+
+    private static final String START_NANOS = "startNanos";
+    private static final String APP_PACKAGE = "be.vives.ti.rentalapi.";
+    private static final int MAX_PARAMETER_SETS = 10;
+    private static final int MAX_VALUE_LENGTH = 100;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Value("${rental.sql.slow-query-threshold-ms:200}")
+    private long slowQueryThresholdMs;
+
+    @Value("${rental.sql.slow-query-log.bind-values:false}")
+    private boolean logBindValues;
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // getElapsedTime() van de proxy is in hele ms, te grof voor queries van een paar honderd µs
+        execInfo.addCustomValue(START_NANOS, System.nanoTime());
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        Long start = execInfo.getCustomValue(START_NANOS, Long.class);
+        if (start == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        long nanos = System.nanoTime() - start;
+        String sql = queryInfoList.get(0).getQuery();
+
+        SqlRequestStats stats = SqlRequestStats.current();
+        if (stats != null) {
+            stats.record(nanos, sql);
+        }
+
+        if (nanos >= slowQueryThresholdMs * 1_000_000) {
+            SlowQueryResponse slowQuery = SlowQueryResponse.builder()
+                    .timestamp(Instant.now())
+                    .durationMs(nanos / 1e6)
+                    .sql(sql)
+                    .parameters(parameters(queryInfoList, logBindValues))
+                    .caller(caller())
+                    .request(stats == null ? null : stats.getRequest())
+                    .build();
+            slowQueryLog.add(slowQuery);
+            log.warn("Slow query ({} ms) from {} during {}: {} {}", String.format("%.1f", slowQuery.getDurationMs()),
+                    slowQuery.getCaller(), slowQuery.getRequest(), sql, slowQuery.getParameters());
+        }
+    }
+
+    // per execution de bind values (of enkel hun types) in volgorde, bij een batch enkel de eerste paar
+    static List<String> parameters(List<QueryInfo> queryInfoList, boolean bindValues) {
+        List<String> parameters = new ArrayList<>();
+        for (QueryInfo queryInfo : queryInfoList) {
+            for (List<ParameterSetOperation> parameterSet : queryInfo.getParametersList()) {
+                if (parameters.size() == MAX_PARAMETER_SETS) {
+                    return parameters;
+                }
+                parameters.add(parameterSet.stream()
+                        .filter(operation -> !ParameterSetOperation.isRegisterOutParameterOperation(operation))
+                        .sorted(Comparator.comparingInt(operation -> operation.getArgs()[0] instanceof Integer index ? index : 0))
+                        .map(operation -> bindValues ? value(operation) : type(operation))
+                        .collect(Collectors.joining(", ", "[", "]")));
+            }
+        }
+        return parameters;
+    }
+
+    private static String type(ParameterSetOperation operation) {
+        if (ParameterSetOperation.isSetNullParameterOperation(operation)) {
+            return "null";
+        }
+        Object value = operation.getArgs().length > 1 ? operation.getArgs()[1] : null;
+        return value == null ? "null" : value.getClass().getSimpleName();
+    }
+
+    private static String value(ParameterSetOperation operation) {
+        if (ParameterSetOperation.isSetNullParameterOperation(operation)) {
+            return "null";
+        }
+        Object value = operation.getArgs().length > 1 ? operation.getArgs()[1] : null;
+        String text = value instanceof CharSequence ? "'" + value + "'" : String.valueOf(value);
+        return text.length() > MAX_VALUE_LENGTH ? text.substring(0, MAX_VALUE_LENGTH) + "..." : text;
+    }
+
+    // de eerste methode uit een service op de stack, anders de eerste uit onze eigen code (bv. een controller)
+    static String caller() {
+        List<StackWalker.StackFrame> frames = StackWalker.getInstance().walk(stream -> stream
+                .filter(frame -> frame.getClassName().startsWith(APP_PACKAGE))
+                .filter(frame -> !frame.getClassName().startsWith(APP_PACKAGE + "sql."))
+                .filter(frame -> !frame.getClassName().contains("$$"))
+                .toList());
+        return frames.stream()
+                .filter(frame -> frame.getClassName().startsWith(APP_PACKAGE + "service."))
+                .findFirst()
+                .or(() -> frames.stream().findFirst())
+                .map(frame -> frame.getClassName().substring(frame.getClassName().lastIndexOf('.') + 1) + "." + frame.getMethodName())
+                .orElse("unknown");
+    }
+}
@@ -0,0 +1,38 @@
+package be.vives.ti.rentalapi.sql;
+
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Pakt de DataSource in een JDBC proxy, zodat elke query (JPA en JdbcTemplate) langs SqlStatementListener komt,
+ * en langs elke andere QueryExecutionListener bean (bv. de teller in de query budget testen).
+ * Uit te zetten met rental.sql.stats.enabled=false, dan praat alles weer rechtstreeks met de pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "rental.sql.stats.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatsConfig {
+
+    // static: een BeanPostProcessor moet bestaan voor de DataSource gemaakt wordt
+    @Bean
+    public static BeanPostProcessor sqlStatsDataSourceProxy(ObjectProvider<QueryExecutionListener> queryExecutionListeners) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+                    ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create(dataSource).name(beanName);
+                    queryExecutionListeners.orderedStream().forEach(builder::listener);
+                    return builder.build();
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package be.vives.ti.rentalapi.sql;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Houdt per HTTP request de SQL statistieken bij en stuurt ze mee in de Server-Timing header.
+ * De header moet vóór de body vertrekken, dus wordt hij gezet zodra de body begint (dan is de controller klaar);
+ * zonder body (204, 304, 404) aan het einde van het request. Bij een gestreamde response telt enkel de SQL
+ * tot aan het begin van de body.
+ */
+@Component
+@ConditionalOnProperty(name = "rental.sql.stats.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatsFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Server-Timing";
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        SqlRequestStats stats = SqlRequestStats.start(request.getMethod() + " " + request.getRequestURI());
+        StatsHeaderResponse statsResponse = new StatsHeaderResponse(response, stats);
+        try {
+            filterChain.doFilter(request, statsResponse);
+        } finally {
+            SqlRequestStats.clear();
+            statsResponse.writeHeader();
+        }
+    }
+
+    private static class StatsHeaderResponse extends HttpServletResponseWrapper {
+
+        private final SqlRequestStats stats;
+        private boolean headerWritten;
+
+        StatsHeaderResponse(HttpServletResponse response, SqlRequestStats stats) {
+            super(response);
+            this.stats = stats;
+        }
+
+        void writeHeader() {
+            if (!headerWritten && !isCommitted()) {
+                addHeader(HEADER, stats.toServerTiming());
+            }
+            headerWritten = true;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            writeHeader();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            writeHeader();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            writeHeader();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            writeHeader();
+            super.sendError(sc, msg);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            writeHeader();
+            super.sendError(sc);
+        }
+    }
+}
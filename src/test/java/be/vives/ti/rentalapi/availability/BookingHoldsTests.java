@@ -0,0 +1,87 @@
+package be.vives.ti.rentalapi.availability;
+
+import be.vives.ti.rentalapi.dto.request.RentalRequest;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookingHoldsTests {
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final BookingHolds bookingHolds = new BookingHolds(300, 100, 16, now::get);
+    private final LocalDate today = LocalDate.now();
+
+    private RentalRequest request(int carId, int fromDay, int toDay) {
+        return RentalRequest.builder()
+                .carId(carId)
+                .startDate(today.plusDays(fromDay))
+                .endDate(today.plusDays(toDay))
+                .build();
+    }
+
+    @Test
+    public void holdShouldBlockOverlappingPeriodOfSameCar() {
+        BookingHolds.Hold hold = bookingHolds.hold(request(1, 5, 10));
+
+        assertThat(hold.expiresAtMillis()).isEqualTo(now.get() + 300_000);
+        assertThat(bookingHolds.overlaps(1, today.plusDays(10), today.plusDays(12))).isTrue();
+        assertThat(bookingHolds.overlaps(1, today.plusDays(11), today.plusDays(12))).isFalse();
+        assertThat(bookingHolds.overlaps(2, today.plusDays(5), today.plusDays(10))).isFalse();
+    }
+
+    @Test
+    public void overlapsShouldIgnoreTheHoldBeingConfirmed() {
+        BookingHolds.Hold hold = bookingHolds.hold(request(1, 5, 10));
+        BookingHolds.Hold other = bookingHolds.hold(request(1, 12, 14));
+
+        assertThat(bookingHolds.overlaps(1, today.plusDays(5), today.plusDays(10), hold.id())).isFalse();
+        assertThat(bookingHolds.overlaps(1, today.plusDays(5), today.plusDays(12), hold.id())).isTrue();
+        assertThat(bookingHolds.overlaps(1, today.plusDays(5), today.plusDays(10), other.id())).isTrue();
+    }
+
+    @Test
+    public void releaseShouldFreeThePeriodOnce() {
+        BookingHolds.Hold hold = bookingHolds.hold(request(1, 5, 10));
+
+        assertThat(bookingHolds.release(hold.id())).isTrue();
+        assertThat(bookingHolds.release(hold.id())).isFalse();
+        assertThat(bookingHolds.find(hold.id())).isNull();
+        assertThat(bookingHolds.overlaps(1, today.plusDays(5), today.plusDays(10))).isFalse();
+        assertThat(bookingHolds.getActiveCount()).isZero();
+    }
+
+    @Test
+    public void holdShouldStopCountingAtItsDeadlineBeforeTheWheelTicks() {
+        BookingHolds.Hold hold = bookingHolds.hold(request(1, 5, 10));
+
+        now.addAndGet(300_000);
+
+        assertThat(bookingHolds.find(hold.id())).isNull();
+        assertThat(bookingHolds.overlaps(1, today.plusDays(5), today.plusDays(10))).isFalse();
+        // een verlopen hold kan niet meer bevestigd worden
+        assertThat(bookingHolds.release(hold.id())).isFalse();
+    }
+
+    @Test
+    public void expireShouldRemoveAllHoldsPastTheirDeadline() {
+        IntStream.range(0, 1000).forEach(i -> bookingHolds.hold(request(i % 10, i, i)));
+        now.addAndGet(100_000);
+        BookingHolds.Hold later = bookingHolds.hold(request(1, 2000, 2001));
+
+        now.addAndGet(200_000);
+        bookingHolds.expire();
+
+        assertThat(bookingHolds.getActiveCount()).isEqualTo(1);
+        assertThat(bookingHolds.getExpiredCount()).isEqualTo(1000);
+        assertThat(bookingHolds.find(later.id())).isNotNull();
+
+        now.addAndGet(100_000);
+        bookingHolds.expire();
+        assertThat(bookingHolds.getActiveCount()).isZero();
+        assertThat(bookingHolds.overlaps(1, today.plusDays(2000), today.plusDays(2001))).isFalse();
+    }
+}
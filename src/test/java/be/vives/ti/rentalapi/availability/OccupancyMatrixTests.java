@@ -0,0 +1,54 @@
+package be.vives.ti.rentalapi.availability;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OccupancyMatrixTests {
+
+    private final LocalDate start = LocalDate.of(2025, 1, 1);
+
+    private int[] bookedDays(OccupancyMatrix matrix, int car, int days) {
+        return IntStream.range(0, days).filter(day -> matrix.isBooked(car, day)).toArray();
+    }
+
+    @Test
+    public void rentalShouldMarkDaysAcrossWords() {
+        OccupancyMatrix matrix = new OccupancyMatrix(start, 200, new int[]{3, 8});
+
+        // dag 60 tot en met 130: drie longs
+        matrix.add(8, start.plusDays(60), start.plusDays(130));
+
+        assertThat(matrix.bookedDays(0)).isZero();
+        assertThat(matrix.bookedDays(1)).isEqualTo(71);
+        assertThat(bookedDays(matrix, 1, 200)).isEqualTo(IntStream.rangeClosed(60, 130).toArray());
+    }
+
+    @Test
+    public void rentalShouldBeClippedToWindow() {
+        OccupancyMatrix matrix = new OccupancyMatrix(start, 10, new int[]{1});
+
+        matrix.add(1, start.minusDays(5), start.plusDays(1));
+        matrix.add(1, start.plusDays(8), start.plusDays(40));
+        matrix.add(1, start.plusDays(20), start.plusDays(25)); // volledig erna
+        matrix.add(2, start, start.plusDays(9)); // andere auto
+
+        assertThat(bookedDays(matrix, 0, 10)).containsExactly(0, 1, 8, 9);
+    }
+
+    @Test
+    public void encodeShouldPutDayInLowestBitOfItsByte() {
+        OccupancyMatrix matrix = new OccupancyMatrix(start, 10, new int[]{1});
+        matrix.add(1, start, start);
+        matrix.add(1, start.plusDays(9), start.plusDays(9));
+
+        byte[] bytes = Base64.getDecoder().decode(matrix.encode(0));
+
+        // 10 dagen = 2 bytes: dag 0 is bit 0 van byte 0, dag 9 is bit 1 van byte 1
+        assertThat(bytes).containsExactly(0b1, 0b10);
+    }
+}
@@ -0,0 +1,140 @@
+package be.vives.ti.rentalapi.availability;
+
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
+import be.vives.ti.rentalapi.repository.RentalRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+public class RentalAvailabilityIndexTests {
+
+    @Mock
+    private RentalRepository rentalRepository;
+
+    @InjectMocks
+    private RentalAvailabilityIndex availabilityIndex;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(availabilityIndex, "enabled", true);
+
+        when(rentalRepository.findAllPeriods()).thenReturn(List.of(
+                new RentalPeriod(1, 1, today.plusDays(10), today.plusDays(14)),
+                new RentalPeriod(2, 1, today, today.plusDays(3)),
+                new RentalPeriod(3, 2, today, today.plusDays(30))
+        ));
+        availabilityIndex.rebuild();
+    }
+
+    @Test
+    public void rebuildShouldMarkIndexReady() {
+        assertThat(availabilityIndex.isReady()).isTrue();
+    }
+
+    @Test
+    public void overlapsShouldDetectOverlapOnBoundaries() {
+        assertThat(availabilityIndex.overlaps(1, today.plusDays(3), today.plusDays(5))).isTrue();
+        assertThat(availabilityIndex.overlaps(1, today.plusDays(8), today.plusDays(10))).isTrue();
+        assertThat(availabilityIndex.overlaps(1, today.plusDays(11), today.plusDays(12))).isTrue();
+        assertThat(availabilityIndex.overlaps(1, today.minusDays(5), today.plusDays(20))).isTrue();
+    }
+
+    @Test
+    public void overlapsShouldReturnFalseForFreeDates() {
+        assertThat(availabilityIndex.overlaps(1, today.plusDays(4), today.plusDays(9))).isFalse();
+        assertThat(availabilityIndex.overlaps(1, today.plusDays(15), today.plusDays(20))).isFalse();
+        assertThat(availabilityIndex.overlaps(99, today, today.plusDays(20))).isFalse();
+    }
+
+    @Test
+    public void overlapsShouldHandleNestedPeriods() {
+        // een lange periode die een kortere omsluit, de kortere begint later maar eindigt eerder
+        availabilityIndex.put(4, 3, today, today.plusDays(20));
+        availabilityIndex.put(5, 3, today.plusDays(2), today.plusDays(3));
+
+        assertThat(availabilityIndex.overlaps(3, today.plusDays(10), today.plusDays(11))).isTrue();
+    }
+
+    @Test
+    public void putShouldMoveRentalToOtherDatesAndCar() {
+        availabilityIndex.put(2, 2, today.plusDays(40), today.plusDays(42));
+
+        assertThat(availabilityIndex.overlaps(1, today, today.plusDays(3))).isFalse();
+        assertThat(availabilityIndex.overlaps(2, today.plusDays(41), today.plusDays(41))).isTrue();
+    }
+
+    @Test
+    public void removeShouldFreeTheDates() {
+        availabilityIndex.remove(1);
+
+        assertThat(availabilityIndex.overlaps(1, today.plusDays(10), today.plusDays(14))).isFalse();
+        assertThat(availabilityIndex.overlaps(1, today, today.plusDays(3))).isTrue();
+    }
+
+    @Test
+    public void removeCarShouldFreeAllDatesOfThatCar() {
+        availabilityIndex.removeCar(1);
+
+        assertThat(availabilityIndex.overlaps(1, today, today.plusDays(14))).isFalse();
+        assertThat(availabilityIndex.overlaps(2, today, today.plusDays(14))).isTrue();
+    }
+
+    @Test
+    public void suggestShouldReturnConflictsAndNearestFreeWindows() {
+        BookingSuggestions suggestions = availabilityIndex.suggest(1, today.plusDays(2), today.plusDays(4), today, 3);
+
+        assertThat(suggestions.conflicts()).containsExactly(new RentalPeriod(2, 1, today, today.plusDays(3)));
+        // het gat van dag 4 tot 9 ligt het dichtst, daarna alles na dag 14
+        assertThat(suggestions.alternativeStarts()).containsExactly(today.plusDays(4), today.plusDays(15));
+        assertThat(availabilityIndex.suggest(1, today.plusDays(2), today.plusDays(4), today, 1).alternativeStarts())
+                .containsExactly(today.plusDays(4));
+    }
+
+    @Test
+    public void suggestShouldSkipGapsThatAreTooShort() {
+        // 11 dagen passen niet tussen dag 3 en dag 10
+        BookingSuggestions suggestions = availabilityIndex.suggest(1, today.plusDays(2), today.plusDays(12), today, 3);
+
+        assertThat(suggestions.conflicts()).extracting(RentalPeriod::rentalId).containsExactly(2, 1);
+        assertThat(suggestions.alternativeStarts()).containsExactly(today.plusDays(15));
+    }
+
+    @Test
+    public void suggestShouldHandleNestedPeriods() {
+        availabilityIndex.put(4, 3, today, today.plusDays(20));
+        availabilityIndex.put(5, 3, today.plusDays(2), today.plusDays(3));
+
+        BookingSuggestions suggestions = availabilityIndex.suggest(3, today.plusDays(5), today.plusDays(6), today, 3);
+
+        assertThat(suggestions.conflicts()).extracting(RentalPeriod::rentalId).containsExactly(4);
+        assertThat(suggestions.alternativeStarts()).containsExactly(today.plusDays(21));
+    }
+
+    @Test
+    public void freeCarsShouldKeepOrderAndLimit() {
+        assertThat(availabilityIndex.freeCars(List.of(2, 1, 7, 8), today.plusDays(5), today.plusDays(6), 2))
+                .containsExactly(1, 7);
+        assertThat(availabilityIndex.freeCars(List.of(1, 2), today, today.plusDays(1), 5)).isEmpty();
+    }
+
+    @Test
+    public void indexShouldNotBeReadyWhenDatabaseFails() {
+        when(rentalRepository.findAllPeriods()).thenThrow(new IllegalStateException("database down"));
+
+        availabilityIndex.rebuild();
+
+        assertThat(availabilityIndex.isReady()).isFalse();
+    }
+}
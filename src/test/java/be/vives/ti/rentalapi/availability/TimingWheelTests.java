@@ -0,0 +1,57 @@
+package be.vives.ti.rentalapi.availability;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimingWheelTests {
+
+    private final List<String> expired = new ArrayList<>();
+
+    @Test
+    public void entriesShouldExpireOnTheirTickEvenAfterSeveralRounds() {
+        // 4 buckets van 10 ms: 25 ms ligt in de eerste ronde, 95 ms pas na twee keer rond
+        TimingWheel<String> wheel = new TimingWheel<>(4, 10, 0);
+        wheel.schedule("a", 25);
+        wheel.schedule("b", 95);
+
+        wheel.advance(29, expired::add);
+        assertThat(expired).isEmpty();
+        wheel.advance(30, expired::add);
+        assertThat(expired).containsExactly("a");
+
+        wheel.advance(90, expired::add);
+        assertThat(expired).containsExactly("a");
+        assertThat(wheel.advance(100, expired::add)).isEqualTo(1);
+        assertThat(expired).containsExactly("a", "b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    public void cancelledEntryShouldNotExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 10, 1000);
+        TimingWheel.Entry<String> first = wheel.schedule("a", 1050);
+        wheel.schedule("b", 1050);
+        TimingWheel.Entry<String> last = wheel.schedule("c", 1050);
+
+        assertThat(wheel.cancel(last)).isTrue();
+        assertThat(wheel.cancel(first)).isTrue();
+        assertThat(wheel.cancel(first)).isFalse();
+
+        wheel.advance(2000, expired::add);
+        assertThat(expired).containsExactly("b");
+    }
+
+    @Test
+    public void deadlineInThePastShouldExpireOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(8, 10, 1000);
+        wheel.schedule("a", 500);
+
+        wheel.advance(1010, expired::add);
+
+        assertThat(expired).containsExactly("a");
+    }
+}
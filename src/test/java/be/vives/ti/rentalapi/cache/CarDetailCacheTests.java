@@ -0,0 +1,126 @@
+package be.vives.ti.rentalapi.cache;
+
+import be.vives.ti.rentalapi.dto.response.CacheStatsResponse;
+import be.vives.ti.rentalapi.dto.response.CarDealerResponse;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CarDetailCacheTests {
+
+    private final CarDetailCache cache = new CarDetailCache(100, 60);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private Optional<CarResponse> loadCar(Integer id) {
+        loads.incrementAndGet();
+        return id == 99 ? Optional.empty() : Optional.of(CarResponse.builder().id(id).brand("Toyota").build());
+    }
+
+    private Optional<CarDealerResponse> loadCarWithDealer(Integer id) {
+        loads.incrementAndGet();
+        return Optional.of(CarDealerResponse.builder().carId(id).dealerId(id * 10).build());
+    }
+
+    @Test
+    public void secondReadShouldBeHit() {
+        cache.getCar(1, this::loadCar);
+        Optional<CarResponse> car = cache.getCar(1, this::loadCar);
+
+        assertThat(car).isPresent();
+        assertThat(loads.get()).isEqualTo(1);
+        CacheStatsResponse stats = cache.getStats().get(0);
+        assertThat(stats.getHits()).isEqualTo(1);
+        assertThat(stats.getMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void missingCarShouldNotBeCached() {
+        assertThat(cache.getCar(99, this::loadCar)).isEmpty();
+        assertThat(cache.getCar(99, this::loadCar)).isEmpty();
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidateCarShouldRemoveBothEntries() {
+        cache.getCar(1, this::loadCar);
+        cache.getCarWithDealer(1, this::loadCarWithDealer);
+
+        cache.invalidateCar(1);
+        cache.getCar(1, this::loadCar);
+        cache.getCarWithDealer(1, this::loadCarWithDealer);
+
+        assertThat(loads.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void invalidateDealerShouldOnlyRemoveCarsOfThatDealer() {
+        cache.getCarWithDealer(1, this::loadCarWithDealer); // dealer 10
+        cache.getCarWithDealer(2, this::loadCarWithDealer); // dealer 20
+
+        cache.invalidateDealer(10, () -> List.of(1));
+        cache.getCarWithDealer(1, this::loadCarWithDealer);
+        cache.getCarWithDealer(2, this::loadCarWithDealer);
+
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void invalidateDealerShouldWaitForLoadThatReadTheOldDealer() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread reader = new Thread(() -> cache.getCarWithDealer(1, id -> {
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return loadCarWithDealer(id); // leest de dealer van voor de wijziging
+        }));
+        reader.start();
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        Thread writer = new Thread(() -> cache.invalidateDealer(10, () -> List.of(1)));
+        writer.start();
+        // de invalidatie moet op de lopende load wachten
+        while (writer.getState() != Thread.State.BLOCKED && writer.isAlive()) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+        reader.join(5000);
+        writer.join(5000);
+
+        cache.getCarWithDealer(1, this::loadCarWithDealer);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidationShouldWaitForCommit() {
+        cache.getCar(1, this::loadCar);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.invalidateCar(1);
+            // nog niet gecommit: andere lezers zien de oude rij in de database, de cache mag blijven
+            cache.getCar(1, this::loadCar);
+            assertThat(loads.get()).isEqualTo(1);
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        cache.getCar(1, this::loadCar);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+}
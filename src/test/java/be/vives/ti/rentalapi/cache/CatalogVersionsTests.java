@@ -0,0 +1,100 @@
+package be.vives.ti.rentalapi.cache;
+
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class CatalogVersionsTests {
+
+    @Autowired
+    private CatalogVersions catalogVersions;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    private Dealer dealer;
+
+    @BeforeEach
+    public void setUp() {
+        dealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("versions@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        carRepository.deleteAll();
+        dealerRepository.deleteAll();
+    }
+
+    @Test
+    public void savingCarsShouldChangeCarsETagOnceAfterCommit() {
+        String carsETag = catalogVersions.getCarsETag();
+        String rentalsETag = catalogVersions.getRentalsETag();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            carRepository.save(car("Corolla"));
+            carRepository.save(car("Yaris"));
+            carRepository.flush();
+            // nog niet gecommit, een lezer ziet nog de oude rijen
+            assertThat(catalogVersions.getCarsETag()).isEqualTo(carsETag);
+        });
+
+        assertThat(catalogVersions.getCarsETag()).isEqualTo(next(carsETag));
+        assertThat(catalogVersions.getRentalsETag()).isEqualTo(rentalsETag);
+    }
+
+    @Test
+    public void rolledBackChangeShouldKeepCarsETag() {
+        String carsETag = catalogVersions.getCarsETag();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            carRepository.saveAndFlush(car("Corolla"));
+            status.setRollbackOnly();
+        });
+
+        assertThat(catalogVersions.getCarsETag()).isEqualTo(carsETag);
+    }
+
+    private Car car(String model) {
+        return Car.builder()
+                .brand("Toyota")
+                .model(model)
+                .power(150)
+                .year(2020)
+                .color("Red")
+                .imageUri("/")
+                .dealer(dealer)
+                .build();
+    }
+
+    // "cars-<epoch>-<n>" wordt "cars-<epoch>-<n + 1>"
+    private static String next(String eTag) {
+        int dash = eTag.lastIndexOf('-');
+        long version = Long.parseLong(eTag.substring(dash + 1, eTag.length() - 1));
+        return eTag.substring(0, dash + 1) + (version + 1) + "\"";
+    }
+}
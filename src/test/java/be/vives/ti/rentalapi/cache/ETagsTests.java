@@ -0,0 +1,36 @@
+package be.vives.ti.rentalapi.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ETagsTests {
+
+    @Test
+    public void ofShouldQuoteAndJoinParts() {
+        assertThat(ETags.of("car", 12, 3L)).isEqualTo("\"car-12-3\"");
+    }
+
+    @Test
+    public void matchesShouldCompareWeaklyAgainstEveryTag() {
+        String eTag = ETags.of("car", 12, 3L);
+
+        assertThat(ETags.matches(null, eTag)).isFalse();
+        assertThat(ETags.matches("\"car-12-2\"", eTag)).isFalse();
+        assertThat(ETags.matches("\"car-12-3\"", eTag)).isTrue();
+        assertThat(ETags.matches("W/\"car-12-3\"", eTag)).isTrue();
+        assertThat(ETags.matches("\"car-12-2\", \"car-12-3\"", eTag)).isTrue();
+        assertThat(ETags.matches("*", eTag)).isTrue();
+    }
+
+    @Test
+    public void notModifiedShouldKeepETagWithoutBody() {
+        ResponseEntity<Object> response = ETags.notModified("\"car-12-3\"");
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(304);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"car-12-3\"");
+        assertThat(response.getHeaders().getCacheControl()).isEqualTo("no-cache");
+        assertThat(response.getBody()).isNull();
+    }
+}
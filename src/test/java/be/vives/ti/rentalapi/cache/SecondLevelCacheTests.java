@@ -0,0 +1,119 @@
+package be.vives.ti.rentalapi.cache;
+
+import be.vives.ti.rentalapi.dto.projection.CarStanding;
+import be.vives.ti.rentalapi.dto.response.CacheStatsResponse;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.model.Popularity;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import be.vives.ti.rentalapi.service.PopularityCounters;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class SecondLevelCacheTests {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private SecondLevelCacheStats secondLevelCacheStats;
+
+    @Autowired
+    private PopularityCounters popularityCounters;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    private Statistics statistics;
+    private Car car;
+
+    @BeforeEach
+    public void setUp() {
+        Dealer dealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("cache@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+        car = carRepository.save(Car.builder()
+                .brand("Toyota")
+                .model("Corolla")
+                .power(150)
+                .year(2020)
+                .color("Red")
+                .imageUri("/")
+                .dealer(dealer)
+                .build());
+        popularityRepository.save(Popularity.builder().car(car).likes(0).build());
+
+        entityManagerFactory.getCache().evictAll();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        popularityCounters.discard(car.getId());
+        popularityRepository.deleteAll();
+        carRepository.deleteAll();
+        dealerRepository.deleteAll();
+    }
+
+    @Test
+    public void secondFindByIdShouldComeFromCache() {
+        carRepository.findById(car.getId());
+        carRepository.findById(car.getId());
+
+        assertThat(statistics.getCacheRegionStatistics(SecondLevelCacheConfig.CAR_REGION).getMissCount()).isEqualTo(1);
+        assertThat(statistics.getCacheRegionStatistics(SecondLevelCacheConfig.CAR_REGION).getHitCount()).isEqualTo(1);
+        assertThat(secondLevelCacheStats.getStats())
+                .extracting(CacheStatsResponse::getName)
+                .contains("l2:" + SecondLevelCacheConfig.CAR_REGION);
+    }
+
+    @Test
+    public void leaderboardQueryShouldComeFromQueryCache() {
+        popularityRepository.findAllStandings();
+        popularityRepository.findAllStandings();
+
+        assertThat(statistics.getQueryCacheHitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void flushShouldEvictPopularityAndLeaderboard() {
+        Integer popularityId = popularityRepository.findByCarId(car.getId()).orElseThrow().getId();
+        popularityRepository.findById(popularityId);
+        popularityRepository.findAllStandings();
+
+        // de flush schrijft via JDBC, de cache mag daarna niet meer de oude likes geven
+        popularityCounters.increment(car.getId());
+        popularityCounters.flush();
+
+        assertThat(popularityRepository.findById(popularityId).orElseThrow().getLikes()).isEqualTo(1);
+        List<CarStanding> standings = popularityRepository.findAllStandings();
+        assertThat(standings).containsExactly(new CarStanding(car.getId(), 1, 150));
+    }
+}
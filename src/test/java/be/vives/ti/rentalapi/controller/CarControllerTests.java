@@ -1,8 +1,14 @@
 package be.vives.ti.rentalapi.controller;
 
 import be.vives.ti.rentalapi.dto.request.CarRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
+import be.vives.ti.rentalapi.dto.response.CacheStatsResponse;
 import be.vives.ti.rentalapi.dto.response.CarDealerResponse;
+import be.vives.ti.rentalapi.dto.response.CarOccupancyResponse;
+import be.vives.ti.rentalapi.dto.response.CarPageResponse;
 import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.CarSearchResponse;
+import be.vives.ti.rentalapi.dto.response.OccupancyResponse;
 import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
 import be.vives.ti.rentalapi.service.CarService;
 import org.junit.jupiter.api.BeforeEach;
@@ -16,14 +22,18 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.http.MediaType;
 
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -89,7 +99,7 @@ public class CarControllerTests {
     @Test
     public void testGetAllCars() throws Exception {
         List<CarResponse> carResponses = Arrays.asList(carResponse);
-        when(carService.getAllCars()).thenReturn(ResponseEntity.ok(carResponses));
+        when(carService.getAllCars(null)).thenReturn(ResponseEntity.ok(carResponses));
 
         mockMvc.perform(get("/api/cars"))
                 .andExpect(status().isOk())
@@ -101,16 +111,111 @@ public class CarControllerTests {
 
     @Test
     public void testGetAllCars_Empty() throws Exception {
-        when(carService.getAllCars()).thenReturn(ResponseEntity.ok(Collections.emptyList()));
+        when(carService.getAllCars(null)).thenReturn(ResponseEntity.ok(Collections.emptyList()));
 
         mockMvc.perform(get("/api/cars"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.size()").value(0));
     }
 
+    @Test
+    public void testGetAllCars_NotModified() throws Exception {
+        when(carService.getAllCars("\"cars-1a-3\"")).thenReturn(ResponseEntity.status(304).eTag("\"cars-1a-3\"").build());
+
+        mockMvc.perform(get("/api/cars").header("If-None-Match", "\"cars-1a-3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"cars-1a-3\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void testGetCarPage() throws Exception {
+        when(carService.getCarPage(1, null)).thenReturn(ResponseEntity.ok(new CarPageResponse(List.of(carResponse), "Mg")));
+
+        mockMvc.perform(get("/api/cars").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.size()").value(1))
+                .andExpect(jsonPath("$.items[0].id").value(carResponse.getId()))
+                .andExpect(jsonPath("$.next").value("Mg"));
+    }
+
+    @Test
+    public void testGetCarPage_BadCursor() throws Exception {
+        when(carService.getCarPage(1, "x")).thenReturn(ResponseEntity.status(400).build());
+
+        mockMvc.perform(get("/api/cars").param("limit", "1").param("cursor", "x"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testGetCarPage_WithStream() throws Exception {
+        mockMvc.perform(get("/api/cars").param("limit", "10").param("stream", "true"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSearchCars() throws Exception {
+        when(carService.searchCars(argThat(search -> "Toyota".equals(search.getBrand())
+                && search.getMinYear() == 2015 && search.getMaxPower() == 200 && search.getPage() == 1)))
+                .thenReturn(ResponseEntity.ok(new CarSearchResponse(List.of(carResponse), 1, 20, 21L, 2)));
+
+        mockMvc.perform(get("/api/cars/search").param("brand", "Toyota").param("minYear", "2015")
+                        .param("maxPower", "200").param("page", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(carResponse.getId()))
+                .andExpect(jsonPath("$.totalElements").value(21));
+    }
+
+    @Test
+    public void testSearchCarsWithText() throws Exception {
+        when(carService.searchCars(argThat(search -> "leather seats".equals(search.getQ()) && "Toyota".equals(search.getBrand()))))
+                .thenReturn(ResponseEntity.ok(new CarSearchResponse(List.of(carResponse), 0, 20, 1L, 1)));
+
+        mockMvc.perform(get("/api/cars/search").param("q", "leather seats").param("brand", "Toyota"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(carResponse.getId()));
+    }
+
+    @Test
+    public void testGetAvailableCars() throws Exception {
+        when(carService.getAvailableCars(eq(LocalDate.of(2025, 7, 1)), eq(LocalDate.of(2025, 7, 14)),
+                argThat(search -> search.getDealerId() == 3 && search.getMinPower() == 100)))
+                .thenReturn(ResponseEntity.ok(new CarSearchResponse(List.of(carResponse), 0, 20, 1L, 1)));
+
+        mockMvc.perform(get("/api/cars/available").param("start", "2025-07-01").param("end", "2025-07-14")
+                        .param("dealerId", "3").param("minPower", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(carResponse.getId()));
+
+        // start en end zijn verplicht
+        mockMvc.perform(get("/api/cars/available").param("start", "2025-07-01"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testGetOccupancy() throws Exception {
+        OccupancyResponse occupancy = new OccupancyResponse(LocalDate.of(2025, 7, 1), 90,
+                List.of(new CarOccupancyResponse(1, 2, "AwAAAAAAAAAAAAAA")));
+        when(carService.getOccupancy(LocalDate.of(2025, 7, 1), 90, null)).thenReturn(ResponseEntity.ok(occupancy));
+
+        mockMvc.perform(get("/api/cars/occupancy").param("start", "2025-07-01"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.days").value(90))
+                .andExpect(jsonPath("$.cars[0].carId").value(1))
+                .andExpect(jsonPath("$.cars[0].booked").value("AwAAAAAAAAAAAAAA"));
+    }
+
+    @Test
+    public void testRebuildSearchIndex() throws Exception {
+        when(carService.rebuildSearchIndex()).thenReturn(ResponseEntity.noContent().build());
+
+        mockMvc.perform(post("/api/cars/search/rebuild"))
+                .andExpect(status().isNoContent());
+    }
+
     @Test
     public void testGetCarById() throws Exception {
-        when(carService.getCarById(1)).thenReturn(ResponseEntity.ok(carResponse));
+        when(carService.getCarById(1, null)).thenReturn(ResponseEntity.ok(carResponse));
 
         mockMvc.perform(get("/api/cars/1"))
                 .andExpect(status().isOk())
@@ -119,9 +224,20 @@ public class CarControllerTests {
                 .andExpect(jsonPath("$.model").value(carResponse.getModel()));
     }
 
+    @Test
+    public void testGetCarById_VersionOnlyInETag() throws Exception {
+        carResponse.setVersion(3L);
+        when(carService.getCarById(1, null)).thenReturn(ResponseEntity.ok().eTag("\"car-1-3\"").body(carResponse));
+
+        mockMvc.perform(get("/api/cars/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"car-1-3\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
     @Test
     public void testGetCarById_NotFound() throws Exception {
-        when(carService.getCarById(99)).thenReturn(ResponseEntity.status(404).build());
+        when(carService.getCarById(99, null)).thenReturn(ResponseEntity.status(404).build());
 
         mockMvc.perform(get("/api/cars/99"))
                 .andExpect(status().isNotFound());
@@ -129,7 +245,7 @@ public class CarControllerTests {
 
     @Test
     public void testGetCarWithDealer() throws Exception {
-        when(carService.getCarWithDealer(1)).thenReturn(ResponseEntity.ok(carDealerResponse));
+        when(carService.getCarWithDealer(1, null)).thenReturn(ResponseEntity.ok(carDealerResponse));
 
         mockMvc.perform(get("/api/cars/carWithDealer/1"))
                 .andExpect(status().isOk())
@@ -140,7 +256,7 @@ public class CarControllerTests {
 
     @Test
     public void testGetCarWithDealer_NotFound() throws Exception {
-        when(carService.getCarWithDealer(99)).thenReturn(ResponseEntity.status(404).build());
+        when(carService.getCarWithDealer(99, null)).thenReturn(ResponseEntity.status(404).build());
 
         mockMvc.perform(get("/api/cars/carWithDealer/99"))
                 .andExpect(status().isNotFound());
@@ -149,7 +265,7 @@ public class CarControllerTests {
     @Test
     public void testGetTop4Cars() throws Exception {
         List<PopCarsResponse> popCarsResponses = Arrays.asList(popCarsResponse);
-        when(carService.getTop4Cars()).thenReturn(ResponseEntity.ok(popCarsResponses));
+        when(carService.getTopCars(4, null)).thenReturn(ResponseEntity.ok(popCarsResponses));
 
         mockMvc.perform(get("/api/cars/topCars"))
                 .andExpect(status().isOk())
@@ -160,12 +276,41 @@ public class CarControllerTests {
 
     @Test
     public void testGetTop4Cars_Empty() throws Exception {
-        when(carService.getTop4Cars()).thenReturn(ResponseEntity.status(404).build());
+        when(carService.getTopCars(4, null)).thenReturn(ResponseEntity.status(404).build());
 
         mockMvc.perform(get("/api/cars/topCars"))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void testGetTopCars_WithLimit() throws Exception {
+        when(carService.getTopCars(10, null)).thenReturn(ResponseEntity.ok(List.of(popCarsResponse)));
+
+        mockMvc.perform(get("/api/cars/topCars").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].likes").value(popCarsResponse.getLikes()));
+    }
+
+    @Test
+    public void testRebuildTopCars() throws Exception {
+        when(carService.rebuildTopCars()).thenReturn(ResponseEntity.noContent().build());
+
+        mockMvc.perform(post("/api/cars/topCars/rebuild"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void testGetCacheStats() throws Exception {
+        CacheStatsResponse stats = new CacheStatsResponse("car", 1L, 3L, 1L, 0L, 0.75);
+        when(carService.getCacheStats()).thenReturn(ResponseEntity.ok(List.of(stats)));
+
+        mockMvc.perform(get("/api/cars/cacheStats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("car"))
+                .andExpect(jsonPath("$[0].hits").value(3))
+                .andExpect(jsonPath("$[0].misses").value(1));
+    }
+
     @Test
     public void testCreateCar() throws Exception {
         when(carService.createCar(any(CarRequest.class))).thenReturn(ResponseEntity.ok(carResponse));
@@ -180,6 +325,23 @@ public class CarControllerTests {
                 .andExpect(jsonPath("$.model").value(carResponse.getModel()));
     }
 
+    @Test
+    public void testCreateCars() throws Exception {
+        List<BatchItemResponse<CarResponse>> results = List.of(
+                new BatchItemResponse<>(0, 201, carResponse, null),
+                new BatchItemResponse<>(1, 404, null, "Dealer 99 not found"));
+        when(carService.createCars(any())).thenReturn(ResponseEntity.ok(results));
+
+        mockMvc.perform(post("/api/cars/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{ \"brand\": \"Toyota\", \"model\": \"Corolla\", \"power\": 150, \"year\": 2020, \"color\": \"Red\", \"imageUri\": \"http://example.com/car.jpg\", \"dealerId\": 10 }," +
+                                " { \"brand\": \"Honda\", \"model\": \"Civic\", \"power\": 120, \"year\": 2020, \"color\": \"Blue\", \"imageUri\": \"http://example.com/car.jpg\", \"dealerId\": 99 }]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[0].result.brand").value(carResponse.getBrand()))
+                .andExpect(jsonPath("$[1].status").value(404));
+    }
+
     @Test
     public void testCreateCar_InvalidRequest() throws Exception {
         mockMvc.perform(post("/api/cars")
@@ -1,5 +1,9 @@
 package be.vives.ti.rentalapi.controller;
 
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
+import be.vives.ti.rentalapi.dto.response.HoldResponse;
+import be.vives.ti.rentalapi.dto.response.PeriodResponse;
+import be.vives.ti.rentalapi.dto.response.RentalConflictResponse;
 import be.vives.ti.rentalapi.dto.response.RentalResponse;
 import be.vives.ti.rentalapi.service.RentalService;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,13 +17,18 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -52,7 +61,7 @@ public class RentalControllerTests {
     @Test
     public void testGetAllRentals() throws Exception {
         List<RentalResponse> rentalResponses = Arrays.asList(rentalResponse);
-        when(rentalService.getAllRentals()).thenReturn(ResponseEntity.ok(rentalResponses));
+        when(rentalService.getAllRentals(null)).thenReturn(ResponseEntity.ok(rentalResponses));
 
         mockMvc.perform(get("/api/rentals"))
                 .andExpect(status().isOk())
@@ -63,16 +72,43 @@ public class RentalControllerTests {
 
     @Test
     public void testGetAllRentals_Empty() throws Exception {
-        when(rentalService.getAllRentals()).thenReturn(ResponseEntity.ok(Collections.emptyList()));
+        when(rentalService.getAllRentals(null)).thenReturn(ResponseEntity.ok(Collections.emptyList()));
 
         mockMvc.perform(get("/api/rentals"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.size()").value(0));
     }
 
+    @Test
+    public void testExportRentals_Csv() throws Exception {
+        mockMvc.perform(get("/api/rentals/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"));
+
+        verify(rentalService).exportRentalsAsCsv(any());
+    }
+
+    @Test
+    public void testExportRentals_NdjsonIsDefault() throws Exception {
+        mockMvc.perform(get("/api/rentals/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"));
+
+        verify(rentalService).exportRentalsAsNdjson(any());
+    }
+
+    @Test
+    public void testExportRentals_UnknownFormat() throws Exception {
+        mockMvc.perform(get("/api/rentals/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+
+        verify(rentalService, never()).exportRentalsAsNdjson(any());
+        verify(rentalService, never()).exportRentalsAsCsv(any());
+    }
+
     @Test
     public void testGetRentalById() throws Exception {
-        when(rentalService.getRentalById(1)).thenReturn(ResponseEntity.ok(rentalResponse));
+        when(rentalService.getRentalById(1, null)).thenReturn(ResponseEntity.ok(rentalResponse));
 
         mockMvc.perform(get("/api/rentals/1"))
                 .andExpect(status().isOk())
@@ -83,12 +119,44 @@ public class RentalControllerTests {
 
     @Test
     public void testGetRentalById_NotFound() throws Exception {
-        when(rentalService.getRentalById(99)).thenReturn(ResponseEntity.status(404).build());
+        when(rentalService.getRentalById(99, null)).thenReturn(ResponseEntity.status(404).build());
 
         mockMvc.perform(get("/api/rentals/99"))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void testGetRentalById_NotModified() throws Exception {
+        when(rentalService.getRentalById(1, "\"rental-1-0\"")).thenReturn(ResponseEntity.status(304).eTag("\"rental-1-0\"").build());
+
+        mockMvc.perform(get("/api/rentals/1").header("If-None-Match", "\"rental-1-0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"rental-1-0\""));
+    }
+
+    @Test
+    public void testCreateRentals() throws Exception {
+        List<BatchItemResponse<RentalResponse>> results = List.of(
+                new BatchItemResponse<>(0, 201, rentalResponse, null),
+                new BatchItemResponse<>(1, 409, null, "Car 1 is already rented in this period"));
+        when(rentalService.createRentals(any())).thenReturn(ResponseEntity.ok(results));
+
+        String startDate = LocalDate.now().toString();
+        String endDate = LocalDate.now().plusDays(2).toString();
+        String rental = String.format(
+                "{ \"carId\": 1, \"rentalPrice\": 500, \"startDate\": \"%s\", \"endDate\": \"%s\", \"deposit\": 250, \"pickupLocation\": \"Antwerp\", \"email\": \"user@example.com\"}",
+                startDate, endDate
+        );
+
+        mockMvc.perform(post("/api/rentals/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + rental + "," + rental + "]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value(201))
+                .andExpect(jsonPath("$[0].result.id").value(rentalResponse.getId()))
+                .andExpect(jsonPath("$[1].status").value(409));
+    }
+
     @Test
     public void testCreateRental() throws Exception {
         when(rentalService.createRental(any())).thenReturn(ResponseEntity.status(201).body(rentalResponse));
@@ -109,6 +177,72 @@ public class RentalControllerTests {
                 .andExpect(jsonPath("$.carId").value(rentalResponse.getCarId()));
     }
 
+    @Test
+    public void testCreateRental_ConflictWithSuggestions() throws Exception {
+        LocalDate start = LocalDate.of(2024, 12, 1);
+        when(rentalService.createRental(any())).thenReturn(ResponseEntity.status(409).body(new RentalConflictResponse(
+                1, start, start.plusDays(2),
+                List.of(new PeriodResponse(4, start.minusDays(1), start.plusDays(1))),
+                List.of(new PeriodResponse(null, start.plusDays(2), start.plusDays(4))),
+                List.of())));
+
+        String requestPayload = String.format(
+                "{ \"carId\": 1, \"rentalPrice\": 500, \"startDate\": \"%s\", \"endDate\": \"%s\", \"deposit\": 250, \"pickupLocation\": \"Antwerp\", \"email\": \"user@example.com\"}",
+                LocalDate.now(), LocalDate.now().plusDays(2)
+        );
+
+        mockMvc.perform(post("/api/rentals")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestPayload))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.carId").value(1))
+                .andExpect(jsonPath("$.endDate").value("2024-12-03"))
+                // velden van een echte rental blijven weg
+                .andExpect(jsonPath("$.id").doesNotExist())
+                .andExpect(jsonPath("$.email").doesNotExist())
+                .andExpect(jsonPath("$.conflicts[0].rentalId").value(4))
+                .andExpect(jsonPath("$.alternatives[0].rentalId").doesNotExist())
+                .andExpect(jsonPath("$.alternatives[0].startDate").value("2024-12-03"))
+                .andExpect(jsonPath("$.availableCars.size()").value(0));
+    }
+
+    @Test
+    public void testCreateHold() throws Exception {
+        UUID holdId = UUID.fromString("3f2b8c1e-0d4a-4c5e-9f6a-2b7d8e9f0a1b");
+        when(rentalService.createHold(any())).thenReturn(ResponseEntity.status(201).body(new HoldResponse(
+                holdId, Instant.parse("2024-12-01T10:05:00Z"), 1, new BigDecimal("500"), LocalDate.of(2024, 12, 1),
+                LocalDate.of(2024, 12, 3), new BigDecimal("250"), "Antwerp", "user@example.com")));
+
+        String requestPayload = String.format(
+                "{ \"carId\": 1, \"rentalPrice\": 500, \"startDate\": \"%s\", \"endDate\": \"%s\", \"deposit\": 250, \"pickupLocation\": \"Antwerp\", \"email\": \"user@example.com\"}",
+                LocalDate.now(), LocalDate.now().plusDays(2)
+        );
+
+        mockMvc.perform(post("/api/rentals/holds")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(requestPayload))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.holdId").value(holdId.toString()))
+                .andExpect(jsonPath("$.expiresAt").value("2024-12-01T10:05:00Z"))
+                .andExpect(jsonPath("$.id").doesNotExist())
+                .andExpect(jsonPath("$.carId").value(1));
+    }
+
+    @Test
+    public void testConfirmAndReleaseHold() throws Exception {
+        UUID holdId = UUID.randomUUID();
+        when(rentalService.confirmHold(holdId)).thenReturn(ResponseEntity.status(201).body(rentalResponse));
+        when(rentalService.releaseHold(holdId)).thenReturn(ResponseEntity.status(404).build());
+
+        mockMvc.perform(post("/api/rentals/holds/" + holdId + "/confirm"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(rentalResponse.getId()));
+        mockMvc.perform(delete("/api/rentals/holds/" + holdId))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/rentals/holds/not-a-uuid"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testCreateRental_InvalidRequest() throws Exception {
         String rentalRequestJsonMissingField = """
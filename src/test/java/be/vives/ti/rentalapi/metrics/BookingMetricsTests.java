@@ -0,0 +1,32 @@
+package be.vives.ti.rentalapi.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookingMetricsTests {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final BookingMetrics bookingMetrics = new BookingMetrics(registry);
+
+    @Test
+    public void allOutcomesShouldExistFromTheStart() {
+        assertThat(registry.find(BookingMetrics.BOOKINGS).counters()).hasSize(20);
+        assertThat(registry.find(BookingMetrics.BOOKINGS).counters()).allMatch(counter -> counter.count() == 0);
+    }
+
+    @Test
+    public void statusShouldMapToOutcome() {
+        bookingMetrics.record(BookingMetrics.SINGLE, 201);
+        bookingMetrics.record(BookingMetrics.SINGLE, 409);
+        bookingMetrics.record(BookingMetrics.BATCH, 409);
+        bookingMetrics.record(BookingMetrics.BATCH, 500);
+
+        assertThat(registry.counter(BookingMetrics.BOOKINGS, "source", "single", "outcome", "created").count()).isEqualTo(1);
+        assertThat(registry.counter(BookingMetrics.BOOKINGS, "source", "single", "outcome", "conflict").count()).isEqualTo(1);
+        assertThat(registry.counter(BookingMetrics.BOOKINGS, "source", "batch", "outcome", "conflict").count()).isEqualTo(1);
+        assertThat(registry.counter(BookingMetrics.BOOKINGS, "source", "batch", "outcome", "other").count()).isEqualTo(1);
+    }
+}
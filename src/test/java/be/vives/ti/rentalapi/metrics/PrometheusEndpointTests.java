@@ -0,0 +1,70 @@
+package be.vives.ti.rentalapi.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// eigen context door @AutoConfigureObservability, dus ook een eigen database: create-drop zou anders
+// het schema onder de gecachte context van de andere testen opnieuw aanmaken
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:metrics")
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+@ActiveProfiles("test")
+public class PrometheusEndpointTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    public void prometheusShouldExposeEndpointRepositoryBookingPoolAndCacheMetrics() throws Exception {
+        LocalDate start = LocalDate.now().plusDays(10);
+        mockMvc.perform(get("/api/cars/12345"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(post("/api/rentals")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"carId": 12345, "rentalPrice": 50.00, "startDate": "%s", "endDate": "%s",
+                                 "deposit": 250.00, "pickupLocation": "Kortrijk", "email": "user@example.com"}
+                                """.formatted(start, start.plusDays(2))))
+                .andExpect(status().isNotFound());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{")
+                .contains("uri=\"/api/cars/{id}\"")
+                .contains("spring_data_repository_invocations_seconds_bucket{")
+                .contains("repository=\"CarRepository\"")
+                .contains("rental_bookings_total{")
+                .contains("hikaricp_connections_pending{")
+                .contains("cache_gets_total{")
+                .contains("cache=\"carWithDealer\"")
+                .contains("rental_booking_locks_wait_seconds_total{");
+        assertThat(meterRegistry.counter(BookingMetrics.BOOKINGS, "source", "single", "outcome", "not_found").count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void slowQueriesShouldNotBeExposedByDefault() throws Exception {
+        mockMvc.perform(get("/actuator/slowqueries"))
+                .andExpect(status().isNotFound());
+    }
+}
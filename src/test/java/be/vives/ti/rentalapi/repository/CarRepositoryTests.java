@@ -0,0 +1,221 @@
+package be.vives.ti.rentalapi.repository;
+
+import be.vives.ti.rentalapi.dto.projection.CarCatalogState;
+import be.vives.ti.rentalapi.dto.projection.CarDocument;
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
+import be.vives.ti.rentalapi.dto.response.CarDealerResponse;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.model.Popularity;
+import be.vives.ti.rentalapi.model.Rental;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class CarRepositoryTests {
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    private Dealer testDealer;
+
+    @BeforeEach
+    public void setUp() {
+        testDealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("contact@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+
+        for (int i = 0; i < 5; i++) {
+            carRepository.save(Car.builder()
+                    .brand("Toyota")
+                    .model("Corolla " + i)
+                    .power(100 + i)
+                    .year(2020)
+                    .color("Blue")
+                    .imageUri("/")
+                    .dealer(testDealer)
+                    .build());
+        }
+    }
+
+    @Test
+    public void availableBetween_ShouldExcludeCarsWithOverlappingRental() {
+        List<Car> cars = carRepository.findAll(Sort.by("id"));
+        LocalDate today = LocalDate.now();
+        rentalRepository.save(rental(cars.get(0), today.plusDays(10), today.plusDays(12)));
+        rentalRepository.save(rental(cars.get(1), today.plusDays(20), today.plusDays(25)));
+
+        // de einddag van de rental van de eerste auto telt mee
+        List<Car> available = carRepository.findAll(CarSpecifications.availableBetween(today.plusDays(12), today.plusDays(15)),
+                Sort.by("id"));
+        assertThat(available).extracting(Car::getId)
+                .containsExactly(cars.get(1).getId(), cars.get(2).getId(), cars.get(3).getId(), cars.get(4).getId());
+
+        // te combineren met de filters
+        CarSearchRequest search = CarSearchRequest.builder().brand("Toyota").maxPower(102).dealerId(testDealer.getId()).build();
+        Page<Car> page = carRepository.findAll(CarSpecifications.matching(search)
+                        .and(CarSpecifications.availableBetween(today.plusDays(11), today.plusDays(21))),
+                PageRequest.of(0, 10));
+        assertThat(page.getContent()).extracting(Car::getId).containsExactly(cars.get(2).getId());
+    }
+
+    private static Rental rental(Car car, LocalDate startDate, LocalDate endDate) {
+        return Rental.builder()
+                .car(car)
+                .rentalPrice(new BigDecimal("100.0"))
+                .startDate(startDate)
+                .endDate(endDate)
+                .deposit(new BigDecimal("500.0"))
+                .pickupLocation("Antwerp")
+                .email("available@example.com")
+                .build();
+    }
+
+    @Test
+    public void streamDocuments_ShouldMatchCatalogState() {
+        List<CarDocument> documents;
+        try (Stream<CarDocument> stream = carRepository.streamDocuments()) {
+            documents = stream.toList();
+        }
+        assertThat(documents).hasSize(5).allMatch(document -> document.dealerId().equals(testDealer.getId()));
+
+        CarCatalogState state = carRepository.findCatalogState();
+        assertThat(state.count()).isEqualTo(5);
+        assertThat(state.versionSum()).isZero();
+        assertThat(state.maxId()).isEqualTo(documents.get(4).id());
+    }
+
+    @Test
+    public void findPageAfter_ShouldReturnCarsOrderedById() {
+        List<CarResponse> firstPage = carRepository.findPageAfter(0, Limit.of(3));
+        assertThat(firstPage).hasSize(3);
+        assertThat(firstPage).extracting(CarResponse::getId).isSorted();
+
+        // de volgende pagina begint na de laatste id, zonder overlap
+        List<CarResponse> secondPage = carRepository.findPageAfter(firstPage.get(2).getId(), Limit.of(3));
+        assertThat(secondPage).hasSize(2);
+        assertThat(secondPage.get(0).getId()).isGreaterThan(firstPage.get(2).getId());
+    }
+
+    @Test
+    public void findAllWithSpecification_ShouldCombineFilters() {
+        CarSearchRequest search = CarSearchRequest.builder().brand("Toyota").minPower(101).maxPower(103).dealerId(testDealer.getId()).build();
+
+        List<Car> cars = carRepository.findAll(CarSpecifications.matching(search));
+
+        assertThat(cars).extracting(Car::getPower).containsExactlyInAnyOrder(101, 102, 103);
+        assertThat(carRepository.findAll(CarSpecifications.matching(CarSearchRequest.builder().color("Red").build()))).isEmpty();
+        assertThat(carRepository.findAll(CarSpecifications.matching(CarSearchRequest.builder().maxYear(2019).build()))).isEmpty();
+    }
+
+    @Test
+    public void findAllWithSpecification_ShouldSortAndPage() {
+        Page<Car> page = carRepository.findAll(CarSpecifications.matching(CarSearchRequest.builder().minYear(2020).build()),
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "power")));
+
+        assertThat(page.getContent()).extracting(Car::getPower).containsExactly(104, 103);
+        assertThat(page.getTotalElements()).isEqualTo(5);
+        assertThat(page.getTotalPages()).isEqualTo(3);
+    }
+
+    @Test
+    public void findAllResponses_ShouldReturnEveryCarOrderedById() {
+        List<CarResponse> cars = carRepository.findAllResponses();
+
+        assertThat(cars).extracting(CarResponse::getModel)
+                .containsExactly("Corolla 0", "Corolla 1", "Corolla 2", "Corolla 3", "Corolla 4");
+    }
+
+    @Test
+    public void findCarWithDealerById_ShouldReturnCarAndDealerInOneRow() {
+        Integer carId = carRepository.findAllResponses().get(0).getId();
+
+        Optional<CarDealerResponse> result = carRepository.findCarWithDealerById(carId);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getCarId()).isEqualTo(carId);
+        assertThat(result.get().getDealerId()).isEqualTo(testDealer.getId());
+        assertThat(result.get().getDealerName()).isEqualTo("AutoWorld");
+    }
+
+    @Test
+    public void findResponseById_ShouldReturnCar_WhenPopularityExists() {
+        Car car = carRepository.findAll().get(0);
+        popularityRepository.save(Popularity.builder().car(car).likes(0).build());
+
+        Optional<CarResponse> result = carRepository.findResponseById(car.getId());
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getModel()).isEqualTo(car.getModel());
+    }
+
+    @Test
+    public void findResponseById_ShouldReturnEmpty_WhenPopularityDoesNotExist() {
+        Car car = carRepository.findAll().get(0);
+
+        assertThat(carRepository.findResponseById(car.getId())).isEmpty();
+    }
+
+    @Test
+    public void findResponseById_ShouldReturnVersion_ThatGrowsOnEveryUpdate() {
+        Car car = carRepository.findAll().get(0);
+        popularityRepository.save(Popularity.builder().car(car).likes(0).build());
+        Long version = carRepository.findResponseById(car.getId()).orElseThrow().getVersion();
+
+        car.setColor("Green");
+        carRepository.saveAndFlush(car);
+
+        assertThat(version).isZero();
+        assertThat(carRepository.findResponseById(car.getId()).orElseThrow().getVersion()).isEqualTo(1);
+        // auto en dealer samen: elk met een eigen versie
+        assertThat(carRepository.findCarWithDealerById(car.getId()).orElseThrow().getCarVersion()).isEqualTo(1);
+        assertThat(carRepository.findCarWithDealerById(car.getId()).orElseThrow().getDealerVersion()).isZero();
+        testDealer.setCity("Ghent");
+        dealerRepository.saveAndFlush(testDealer);
+        assertThat(carRepository.findCarWithDealerById(car.getId()).orElseThrow().getDealerVersion()).isEqualTo(1);
+    }
+
+    @Test
+    public void findCarWithDealerById_ShouldReturnEmpty_WhenCarDoesNotExist() {
+        assertThat(carRepository.findCarWithDealerById(999)).isEmpty();
+    }
+
+    @Test
+    public void streamAll_ShouldReturnEveryCar() {
+        try (Stream<CarResponse> cars = carRepository.streamAll()) {
+            assertThat(cars.map(CarResponse::getModel))
+                    .containsExactly("Corolla 0", "Corolla 1", "Corolla 2", "Corolla 3", "Corolla 4");
+        }
+    }
+}
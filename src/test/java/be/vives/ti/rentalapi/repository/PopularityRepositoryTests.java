@@ -1,5 +1,7 @@
 package be.vives.ti.rentalapi.repository;
 
+import be.vives.ti.rentalapi.dto.projection.CarStanding;
+import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
 import be.vives.ti.rentalapi.model.Dealer;
 import be.vives.ti.rentalapi.model.Popularity;
 import be.vives.ti.rentalapi.model.Car;
@@ -9,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -81,6 +84,33 @@ public class PopularityRepositoryTests {
         assertThat(result).isEmpty();
     }
 
+    @Test
+    public void findAllStandings_ShouldReturnLikesAndPowerPerCar() {
+        popularityRepository.save(Popularity.builder()
+                .car(testCar)
+                .likes(7)
+                .build());
+
+        List<CarStanding> standings = popularityRepository.findAllStandings();
+
+        assertThat(standings).containsExactly(new CarStanding(testCar.getId(), 7, 200));
+    }
+
+    @Test
+    public void findAllPopCars_ShouldReturnCarDetailsWithLikes() {
+        popularityRepository.save(Popularity.builder()
+                .car(testCar)
+                .likes(7)
+                .build());
+
+        List<PopCarsResponse> popCars = popularityRepository.findAllPopCars();
+
+        assertThat(popCars).hasSize(1);
+        assertThat(popCars.get(0).getId()).isEqualTo(testCar.getId());
+        assertThat(popCars.get(0).getBrand()).isEqualTo(testCar.getBrand());
+        assertThat(popCars.get(0).getLikes()).isEqualTo(7);
+    }
+
     @Test
     public void deleteByCarId_ShouldDeletePopularity_WhenCarIdMatches() {
         // Arrange: Create and save a Popularity entity for the car
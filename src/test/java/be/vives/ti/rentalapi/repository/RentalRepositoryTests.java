@@ -1,5 +1,7 @@
 package be.vives.ti.rentalapi.repository;
 
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
+import be.vives.ti.rentalapi.dto.response.RentalResponse;
 import be.vives.ti.rentalapi.model.Dealer;
 import be.vives.ti.rentalapi.model.Rental;
 import be.vives.ti.rentalapi.model.Car;
@@ -11,6 +13,8 @@ import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -187,6 +191,119 @@ public class RentalRepositoryTests {
         assertThat(overlapteDatums).isFalse();
     }
 
+    @Test
+    public void streamAll_ShouldReturnRentalsWithCarId() {
+        Rental saved = rentalRepository.save(
+                Rental.builder()
+                        .car(testCar)
+                        .rentalPrice(new BigDecimal("100.0"))
+                        .startDate(LocalDate.now())
+                        .endDate(LocalDate.now().plusDays(3))
+                        .deposit(new BigDecimal("500.0"))
+                        .pickupLocation("Antwerp")
+                        .email("user1@example.com")
+                        .build()
+        );
+
+        try (Stream<RentalResponse> rentals = rentalRepository.streamAll()) {
+            List<RentalResponse> result = rentals.toList();
+            assertThat(result).hasSize(1);
+            assertThat(result.get(0).getId()).isEqualTo(saved.getId());
+            assertThat(result.get(0).getCarId()).isEqualTo(testCar.getId());
+        }
+    }
+
+    @Test
+    public void findAllPeriods_ShouldReturnCarIdAndDates() {
+        rentalRepository.save(
+                Rental.builder()
+                        .car(testCar)
+                        .rentalPrice(new BigDecimal("100.0"))
+                        .startDate(LocalDate.now())
+                        .endDate(LocalDate.now().plusDays(3))
+                        .deposit(new BigDecimal("500.0"))
+                        .pickupLocation("Antwerp")
+                        .email("user1@example.com")
+                        .build()
+        );
+
+        List<RentalPeriod> periods = rentalRepository.findAllPeriods();
+
+        assertThat(periods).hasSize(1);
+        assertThat(periods.get(0).carId()).isEqualTo(testCar.getId());
+        assertThat(periods.get(0).startDate()).isEqualTo(LocalDate.now());
+        assertThat(periods.get(0).endDate()).isEqualTo(LocalDate.now().plusDays(3));
+    }
+
+    @Test
+    public void findPeriodsByCarIdsAndDateRange_ShouldOnlyReturnOverlappingPeriods() {
+        LocalDate day = LocalDate.now().plusDays(10);
+        for (int i = 0; i < 3; i++) {
+            rentalRepository.save(
+                    Rental.builder()
+                            .car(testCar)
+                            .rentalPrice(new BigDecimal("100.0"))
+                            .startDate(day.plusDays(i * 10L))
+                            .endDate(day.plusDays(i * 10L + 2))
+                            .deposit(new BigDecimal("500.0"))
+                            .pickupLocation("Antwerp")
+                            .email("user1@example.com")
+                            .build()
+            );
+        }
+
+        List<RentalPeriod> periods = rentalRepository.findPeriodsByCarIdsAndDateRange(
+                List.of(testCar.getId(), 999), day.plusDays(2), day.plusDays(10));
+
+        assertThat(periods).extracting(RentalPeriod::startDate).containsExactlyInAnyOrder(day, day.plusDays(10));
+        assertThat(rentalRepository.findPeriodsByCarIdsAndDateRange(List.of(999), day, day.plusDays(30))).isEmpty();
+    }
+
+    @Test
+    public void findPeriodsByDateRange_ShouldFilterOnDatesAndDealer() {
+        LocalDate day = LocalDate.now().plusDays(10);
+        for (int i = 0; i < 3; i++) {
+            rentalRepository.save(
+                    Rental.builder()
+                            .car(testCar)
+                            .rentalPrice(new BigDecimal("100.0"))
+                            .startDate(day.plusDays(i * 10L))
+                            .endDate(day.plusDays(i * 10L + 2))
+                            .deposit(new BigDecimal("500.0"))
+                            .pickupLocation("Antwerp")
+                            .email("user1@example.com")
+                            .build()
+            );
+        }
+
+        assertThat(rentalRepository.findPeriodsByDateRange(day.plusDays(2), day.plusDays(10)))
+                .extracting(RentalPeriod::startDate).containsExactlyInAnyOrder(day, day.plusDays(10));
+        assertThat(rentalRepository.findPeriodsByDealerIdAndDateRange(testDealer.getId(), day, day.plusDays(30))).hasSize(3);
+        assertThat(rentalRepository.findPeriodsByDealerIdAndDateRange(testDealer.getId() + 1, day, day.plusDays(30))).isEmpty();
+    }
+
+    @Test
+    public void findAllResponses_ShouldReturnRentalsWithCarId() {
+        Rental saved = rentalRepository.save(
+                Rental.builder()
+                        .car(testCar)
+                        .rentalPrice(new BigDecimal("100.0"))
+                        .startDate(LocalDate.now())
+                        .endDate(LocalDate.now().plusDays(3))
+                        .deposit(new BigDecimal("500.0"))
+                        .pickupLocation("Antwerp")
+                        .email("user1@example.com")
+                        .build()
+        );
+
+        List<RentalResponse> result = rentalRepository.findAllResponses();
+
+        assertThat(result).hasSize(1);
+        assertThat(result.get(0).getId()).isEqualTo(saved.getId());
+        assertThat(result.get(0).getCarId()).isEqualTo(testCar.getId());
+        assertThat(result.get(0).getPickupLocation()).isEqualTo("Antwerp");
+    }
+
     @Test
     public void deleteByIdExisting() {
         Rental rental = rentalRepository.save(
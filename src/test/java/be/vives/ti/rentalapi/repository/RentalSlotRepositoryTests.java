@@ -0,0 +1,60 @@
+package be.vives.ti.rentalapi.repository;
+
+import be.vives.ti.rentalapi.model.RentalSlot;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest
+@ActiveProfiles("test")
+public class RentalSlotRepositoryTests {
+
+    @Autowired
+    private RentalSlotRepository rentalSlotRepository;
+
+    private final LocalDate today = LocalDate.now();
+
+    @Test
+    public void claimSlots_ShouldInsertOneRowPerDay() {
+        rentalSlotRepository.claimSlots(1, 10, today, today.plusDays(4));
+
+        assertThat(rentalSlotRepository.findAll())
+                .hasSize(5)
+                .extracting(RentalSlot::getRentalId)
+                .containsOnly(10);
+    }
+
+    @Test
+    public void claimSlots_ShouldFail_WhenDayIsAlreadyClaimedForSameCar() {
+        rentalSlotRepository.claimSlots(1, 10, today, today.plusDays(4));
+
+        assertThatThrownBy(() -> rentalSlotRepository.claimSlots(1, 11, today.plusDays(4), today.plusDays(6)))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    public void claimSlots_ShouldAllowSameDaysForOtherCar() {
+        rentalSlotRepository.claimSlots(1, 10, today, today.plusDays(4));
+        rentalSlotRepository.claimSlots(2, 11, today, today.plusDays(4));
+
+        assertThat(rentalSlotRepository.count()).isEqualTo(10);
+    }
+
+    @Test
+    public void deleteAllByRentalId_ShouldFreeTheDays() {
+        rentalSlotRepository.claimSlots(1, 10, today, today.plusDays(4));
+        rentalSlotRepository.claimSlots(1, 11, today.plusDays(5), today.plusDays(6));
+
+        rentalSlotRepository.deleteAllByRentalId(10);
+        rentalSlotRepository.claimSlots(1, 12, today, today.plusDays(1));
+
+        assertThat(rentalSlotRepository.count()).isEqualTo(4);
+    }
+}
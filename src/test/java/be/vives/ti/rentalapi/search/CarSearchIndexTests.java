@@ -0,0 +1,219 @@
+package be.vives.ti.rentalapi.search;
+
+import be.vives.ti.rentalapi.dto.projection.CarCatalogState;
+import be.vives.ti.rentalapi.dto.projection.CarDocument;
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.CarSearchResponse;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class CarSearchIndexTests {
+
+    private final CarRepository carRepository = mock(CarRepository.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final Dealer dealer = Dealer.builder().id(7).build();
+    private CarSearchIndex index;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        index = new CarSearchIndex("");
+        ReflectionTestUtils.setField(index, "carRepository", carRepository);
+        ReflectionTestUtils.setField(index, "transactionTemplate", transactionTemplate);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        index.close();
+    }
+
+    private Car car(int id, String brand, String model, int year, String description) {
+        return Car.builder()
+                .id(id)
+                .brand(brand)
+                .model(model)
+                .power(100 + id)
+                .year(year)
+                .color("Red")
+                .imageUri("/" + id)
+                .description(description)
+                .dealer(dealer)
+                .build();
+    }
+
+    private List<Integer> ids(String q) {
+        return ids(CarSearchRequest.builder().q(q).build());
+    }
+
+    private List<Integer> ids(CarSearchRequest search) {
+        return index.search(search, 0, 20).getItems().stream().map(CarResponse::getId).toList();
+    }
+
+    @Test
+    public void brandShouldRankAboveDescription() {
+        index.putAll(List.of(
+                car(1, "BMW", "X3", 2020, "Ruimer dan een Toyota"),
+                car(2, "Toyota", "Corolla", 2018, "Zuinig"),
+                car(3, "Kia", "Picanto", 2019, null)));
+
+        assertThat(ids("toyota")).containsExactly(2, 1);
+        // alle woorden moeten voorkomen, in eender welk veld
+        assertThat(ids("toyota zuinig")).containsExactly(2);
+        assertThat(ids("toyota -bmw")).containsExactly(2);
+        assertThat(ids("coro*")).containsExactly(2);
+    }
+
+    @Test
+    public void searchShouldIgnoreCaseAndAccents() {
+        index.put(car(1, "Škoda", "Octavia", 2021, "Trekhaak en LEDER"));
+
+        assertThat(ids("skoda leder")).containsExactly(1);
+        CarResponse found = index.search(CarSearchRequest.builder().q("octavia").build(), 0, 20).getItems().get(0);
+        assertThat(found.getBrand()).isEqualTo("Škoda");
+        assertThat(found.getYear()).isEqualTo(2021);
+        assertThat(found.getPower()).isEqualTo(101);
+        assertThat(found.getImageUri()).isEqualTo("/1");
+    }
+
+    @Test
+    public void filtersShouldRestrictTextMatches() {
+        index.putAll(List.of(
+                car(1, "Toyota", "Corolla", 2015, null),
+                car(2, "Toyota", "Yaris", 2020, null),
+                car(3, "Toyota", "Corolla", 2022, null)));
+
+        assertThat(ids(CarSearchRequest.builder().q("toyota").minYear(2016).build())).containsExactly(2, 3);
+        assertThat(ids(CarSearchRequest.builder().q("toyota").model("Corolla").maxPower(102).build())).containsExactly(1);
+        assertThat(ids(CarSearchRequest.builder().q("toyota").dealerId(8).build())).isEmpty();
+    }
+
+    @Test
+    public void filtersShouldIgnoreCase() {
+        index.putAll(List.of(
+                car(1, "BMW", "X3", 2020, "Trekhaak"),
+                car(2, "Toyota", "Corolla", 2020, "Trekhaak")));
+
+        assertThat(ids(CarSearchRequest.builder().q("trekhaak").brand("bmw").build())).containsExactly(1);
+        assertThat(ids(CarSearchRequest.builder().q("trekhaak").model("corolla").color("RED").build())).containsExactly(2);
+        assertThat(index.search(CarSearchRequest.builder().q("trekhaak").brand("BmW").build(), 0, 20).getItems().get(0).getColor())
+                .isEqualTo("Red");
+    }
+
+    @Test
+    public void startupShouldRebuildIndexWithOutdatedSchema() throws IOException {
+        ByteBuffersDirectory directory = new ByteBuffersDirectory();
+        try (IndexWriter oldWriter = new IndexWriter(directory, new IndexWriterConfig())) {
+            oldWriter.commit(); // index van een vorige versie, zonder schema in de commit data
+        }
+        CarSearchIndex oldIndex = new CarSearchIndex(directory);
+        ReflectionTestUtils.setField(oldIndex, "carRepository", carRepository);
+        ReflectionTestUtils.setField(oldIndex, "transactionTemplate", transactionTemplate);
+        when(carRepository.findCatalogState()).thenReturn(new CarCatalogState(0L, 0L, 0));
+        when(carRepository.streamDocuments()).thenReturn(Stream.empty());
+
+        try {
+            oldIndex.onApplicationReady();
+        } finally {
+            oldIndex.close();
+        }
+
+        verify(carRepository, times(1)).streamDocuments();
+    }
+
+    @Test
+    public void searchShouldPageWithExactTotal() {
+        index.putAll(IntStream.rangeClosed(1, 25).mapToObj(id -> car(id, "Toyota", "Yaris", 2020, null)).toList());
+
+        CarSearchResponse page = index.search(CarSearchRequest.builder().q("yaris").build(), 2, 10);
+
+        // zelfde score, dus op id
+        assertThat(page.getItems()).extracting(CarResponse::getId).containsExactly(21, 22, 23, 24, 25);
+        assertThat(page.getTotalElements()).isEqualTo(25);
+        assertThat(page.getTotalPages()).isEqualTo(3);
+    }
+
+    @Test
+    public void updateAndRemoveShouldReplaceDocument() {
+        Car car = car(1, "Toyota", "Corolla", 2020, null);
+        index.put(car);
+
+        car.setModel("Yaris");
+        index.put(car);
+        assertThat(ids("corolla")).isEmpty();
+        assertThat(ids("yaris")).containsExactly(1);
+
+        index.remove(1);
+        assertThat(ids("toyota")).isEmpty();
+    }
+
+    @Test
+    public void changesShouldWaitForCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            index.put(car(1, "Toyota", "Corolla", 2020, null));
+            // nog niet gecommit: de auto bestaat nog niet voor andere lezers
+            assertThat(ids("toyota")).isEmpty();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(ids("toyota")).containsExactly(1);
+    }
+
+    @Test
+    public void rebuildShouldLoadDatabaseAndMatchCatalogState() throws IOException {
+        index.put(car(9, "Deleted", "Car", 2020, null));
+        when(carRepository.streamDocuments()).thenReturn(Stream.of(
+                new CarDocument(1, "Toyota", "Corolla", 150, 2020, "Red", "/", null, 7, 1L),
+                new CarDocument(4, "Kia", "Picanto", 70, 2019, "Blue", "/", "Stadswagen", 7, 2L)));
+
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(ids("car")).isEmpty();
+        assertThat(ids("stadswagen")).containsExactly(4);
+        assertThat(index.indexState()).isEqualTo(new CarCatalogState(2L, 3L, 4));
+    }
+
+    @Test
+    public void startupShouldOnlyRebuildIfIndexDiffersFromDatabase() {
+        index.put(car(1, "Toyota", "Corolla", 2020, null));
+        when(carRepository.findCatalogState()).thenReturn(new CarCatalogState(1L, 0L, 1));
+
+        index.onApplicationReady();
+
+        assertThat(index.isReady()).isTrue();
+        verify(carRepository, never()).streamDocuments();
+
+        // een auto die tijdens een vorige run niet meer in de index kwam
+        when(carRepository.findCatalogState()).thenReturn(new CarCatalogState(2L, 0L, 2));
+        when(carRepository.streamDocuments()).thenReturn(Stream.empty());
+        index.onApplicationReady();
+        verify(carRepository, times(1)).streamDocuments();
+    }
+}
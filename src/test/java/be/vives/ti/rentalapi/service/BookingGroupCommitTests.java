@@ -0,0 +1,162 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.metrics.BookingMetrics;
+import be.vives.ti.rentalapi.model.Rental;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookingGroupCommitTests {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BookingMetrics bookingMetrics = new BookingMetrics(meterRegistry);
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+
+    private final Consumer<List<Rental>> writer = rentals -> {
+        batchSizes.add(rentals.size());
+        rentals.forEach(rental -> rental.setId(rental.getDeposit().intValue()));
+    };
+
+    private Rental rental(int number) {
+        return Rental.builder().deposit(new BigDecimal(number)).build();
+    }
+
+    @Test
+    public void queuedRentalsShouldBeCommittedInBatchesOfAtMostMaxSize() throws InterruptedException {
+        BookingGroupCommit groupCommit = new BookingGroupCommit(20, 500, writer, bookingMetrics);
+
+        List<CompletableFuture<Rental>> futures = IntStream.range(0, 50).mapToObj(i -> groupCommit.submit(rental(i))).toList();
+
+        assertThat(futures).extracting(future -> future.join().getId()).containsExactlyElementsOf(IntStream.range(0, 50).boxed().toList());
+        // twee volle batches, de rest na max-delay
+        assertThat(batchSizes).containsExactly(20, 20, 10);
+        DistributionSummary summary = meterRegistry.get(BookingMetrics.GROUP_COMMIT + ".batch.size").summary();
+        assertThat(summary.count()).isEqualTo(3);
+        assertThat(summary.totalAmount()).isEqualTo(50);
+        assertThat(meterRegistry.get(BookingMetrics.GROUP_COMMIT + ".wait").timer().count()).isEqualTo(50);
+        groupCommit.close();
+    }
+
+    @Test
+    public void futureShouldCompleteOnlyAfterBatchIsCommitted() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        BookingGroupCommit groupCommit = new BookingGroupCommit(10, 0, rentals -> {
+            writing.countDown();
+            try {
+                commit.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer.accept(rentals);
+        }, bookingMetrics);
+
+        CompletableFuture<Rental> future = groupCommit.submit(rental(7));
+
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(future).isNotDone();
+        commit.countDown();
+        assertThat(future.join().getId()).isEqualTo(7);
+        groupCommit.close();
+    }
+
+    @Test
+    public void failedBatchShouldFailEveryRentalInIt() throws InterruptedException {
+        BookingGroupCommit groupCommit = new BookingGroupCommit(10, 100, rentals -> {
+            throw new IllegalStateException("database down");
+        }, bookingMetrics);
+
+        CompletableFuture<Rental> first = groupCommit.submit(rental(1));
+        CompletableFuture<Rental> second = groupCommit.submit(rental(2));
+
+        assertThatThrownBy(first::join).isInstanceOf(CompletionException.class).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalStateException.class);
+        groupCommit.close();
+    }
+
+    @Test
+    public void failedBatchShouldRetryEachRentalSoOnlyTheBadOneFails() throws InterruptedException {
+        BookingGroupCommit groupCommit = new BookingGroupCommit(10, 100, rentals -> {
+            if (rentals.stream().anyMatch(rental -> rental.getDeposit().intValue() == 2)) {
+                throw new IllegalStateException("constraint violated");
+            }
+            writer.accept(rentals);
+        }, bookingMetrics);
+
+        CompletableFuture<Rental> first = groupCommit.submit(rental(1));
+        CompletableFuture<Rental> second = groupCommit.submit(rental(2));
+        CompletableFuture<Rental> third = groupCommit.submit(rental(3));
+
+        assertThat(first.join().getId()).isEqualTo(1);
+        assertThatThrownBy(second::join).hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(third.join().getId()).isEqualTo(3);
+        assertThat(batchSizes).containsExactly(1, 1);
+        groupCommit.close();
+    }
+
+    @Test
+    public void timeoutShouldOnlyFailRentalsTheWriterHasNotPickedUp() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        BookingGroupCommit groupCommit = new BookingGroupCommit(1, 0, rentals -> {
+            writing.countDown();
+            try {
+                commit.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer.accept(rentals);
+        }, bookingMetrics);
+
+        CompletableFuture<Rental> first = groupCommit.submit(rental(1), 50);
+        assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<Rental> second = groupCommit.submit(rental(2), 50);
+
+        // de tweede staat nog in de queue en verloopt, de eerste wordt al bewaard en blijft wachten
+        assertThatThrownBy(second::join).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(first).isNotDone();
+        commit.countDown();
+        assertThat(first.join().getId()).isEqualTo(1);
+        groupCommit.close();
+        assertThat(batchSizes).containsExactly(1);
+    }
+
+    @Test
+    public void writerKilledByErrorShouldFailWaitingAndNewRentals() throws InterruptedException {
+        BookingGroupCommit groupCommit = new BookingGroupCommit(10, 100, rentals -> {
+            throw new Error("writer died");
+        }, bookingMetrics);
+
+        CompletableFuture<Rental> waiting = groupCommit.submit(rental(1));
+
+        assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        groupCommit.close();
+        assertThatThrownBy(groupCommit.submit(rental(2))::join).hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void closeShouldCommitQueuedRentalsAndRejectNewOnes() throws InterruptedException {
+        BookingGroupCommit groupCommit = new BookingGroupCommit(10, 1000, writer, bookingMetrics);
+        CompletableFuture<Rental> queued = groupCommit.submit(rental(3));
+
+        groupCommit.close();
+
+        assertThat(queued.join().getId()).isEqualTo(3);
+        assertThatThrownBy(groupCommit.submit(rental(4))::join).hasCauseInstanceOf(IllegalStateException.class);
+    }
+}
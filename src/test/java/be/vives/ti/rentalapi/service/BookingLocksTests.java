@@ -0,0 +1,69 @@
+package be.vives.ti.rentalapi.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Lock;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookingLocksTests {
+
+    @Test
+    public void stripeCountShouldBeRoundedToPowerOfTwo() {
+        assertThat(new BookingLocks(1).getStripeCount()).isEqualTo(1);
+        assertThat(new BookingLocks(64).getStripeCount()).isEqualTo(64);
+        assertThat(new BookingLocks(100).getStripeCount()).isEqualTo(128);
+    }
+
+    @Test
+    public void stripeCountShouldBePositive() {
+        assertThatThrownBy(() -> new BookingLocks(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void sameCarShouldAlwaysUseSameStripe() {
+        BookingLocks bookingLocks = new BookingLocks(16);
+
+        assertThat(bookingLocks.stripeOf(42)).isEqualTo(bookingLocks.stripeOf(42));
+        assertThat(bookingLocks.stripeOf(42)).isBetween(0, 15);
+    }
+
+    @Test
+    public void lockAllShouldTakeEachStripeOnce() {
+        BookingLocks bookingLocks = new BookingLocks(2);
+
+        // 4 auto's over 2 stripes, elke stripe maar één keer
+        List<Lock> locks = bookingLocks.lockAll(List.of(1, 2, 3, 4));
+        try {
+            assertThat(locks).hasSizeLessThanOrEqualTo(2).doesNotHaveDuplicates();
+            assertThat(bookingLocks.getAcquisitions()).isEqualTo(locks.size());
+        } finally {
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    @Test
+    public void waitTimeShouldBeRecordedWhenLockIsContended() throws Exception {
+        BookingLocks bookingLocks = new BookingLocks(1);
+        Lock lock = bookingLocks.lock(1);
+        CountDownLatch acquired = new CountDownLatch(1);
+
+        Thread other = new Thread(() -> {
+            Lock otherLock = bookingLocks.lock(2); // zelfde stripe, moet wachten
+            otherLock.unlock();
+            acquired.countDown();
+        });
+        other.start();
+        Thread.sleep(50);
+        assertThat(acquired.getCount()).isEqualTo(1);
+        lock.unlock();
+        acquired.await();
+
+        assertThat(bookingLocks.getAcquisitions()).isEqualTo(2);
+        assertThat(bookingLocks.getContended()).isEqualTo(1);
+        assertThat(bookingLocks.getMaxWaitMillis()).isGreaterThan(0);
+    }
+}
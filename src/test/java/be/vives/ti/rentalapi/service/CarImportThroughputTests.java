@@ -0,0 +1,120 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.dto.request.CarRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// vergelijkt POST /api/cars per auto met POST /api/cars/batch voor hetzelfde aantal auto's
+@SpringBootTest
+@ActiveProfiles("test")
+public class CarImportThroughputTests {
+
+    private static final Logger log = LoggerFactory.getLogger(CarImportThroughputTests.class);
+    private static final int CARS = 500;
+
+    @Autowired
+    private CarService carService;
+
+    @Autowired
+    private PopularityCounters popularityCounters;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Dealer dealer;
+
+    @BeforeEach
+    public void setUp() {
+        dealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("import@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        popularityRepository.deleteAllInBatch();
+        carRepository.deleteAllInBatch();
+        dealerRepository.deleteAll();
+        carService.rebuildTopCars();
+    }
+
+    @Test
+    public void batchImportShouldNeedFewerStatementsThanSingleInserts() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        List<CarRequest> requests = requests();
+
+        statistics.clear();
+        long start = System.nanoTime();
+        for (CarRequest request : requests) {
+            assertThat(carService.createCar(request).getStatusCode().value()).isEqualTo(201);
+        }
+        long singleNanos = System.nanoTime() - start;
+        long singleStatements = statistics.getPrepareStatementCount();
+
+        statistics.clear();
+        start = System.nanoTime();
+        List<BatchItemResponse<CarResponse>> results = carService.createCars(requests).getBody();
+        long batchNanos = System.nanoTime() - start;
+        long batchStatements = statistics.getPrepareStatementCount();
+
+        log.info("Importing {} cars: single {} cars/s ({} statements), batch {} cars/s ({} statements)",
+                CARS, CARS * 1_000_000_000L / singleNanos, singleStatements,
+                CARS * 1_000_000_000L / batchNanos, batchStatements);
+
+        assertThat(results).extracting(BatchItemResponse::getStatus).containsOnly(201);
+        assertThat(carRepository.count()).isEqualTo(2 * CARS);
+        // één dealer query en één insert per auto (IDENTITY), de popularity records gaan in JDBC batches
+        assertThat(batchStatements).isLessThanOrEqualTo(CARS + 1);
+        assertThat(batchStatements).isLessThan(singleStatements);
+    }
+
+    private List<CarRequest> requests() {
+        List<CarRequest> requests = new ArrayList<>();
+        for (int i = 0; i < CARS; i++) {
+            requests.add(CarRequest.builder()
+                    .brand("Toyota")
+                    .model("Corolla " + i)
+                    .power(100 + i)
+                    .year(2020)
+                    .color("Blue")
+                    .imageUri("/")
+                    .dealerId(dealer.getId())
+                    .build());
+        }
+        return requests;
+    }
+}
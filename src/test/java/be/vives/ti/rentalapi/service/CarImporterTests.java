@@ -0,0 +1,94 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import(CarImporter.class)
+@ActiveProfiles("test")
+public class CarImporterTests {
+
+    private static final int CARS = 120;
+
+    @Autowired
+    private CarImporter carImporter;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Dealer testDealer;
+
+    @BeforeEach
+    public void setUp() {
+        testDealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("contact@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+    }
+
+    @Test
+    public void insertShouldAssignIdsAndCreatePopularity() {
+        List<Car> cars = carImporter.insert(cars());
+
+        assertThat(cars).extracting(Car::getId).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(popularityRepository.count()).isEqualTo(CARS);
+    }
+
+    @Test
+    public void insertShouldBatchPopularityRows() {
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        entityManager.flush();
+        statistics.clear();
+
+        carImporter.insert(cars());
+        entityManager.flush();
+
+        // één insert per auto (IDENTITY), de popularity records gaan buiten Hibernate in JDBC batches
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(CARS);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(CARS);
+        assertThat(popularityRepository.count()).isEqualTo(CARS);
+    }
+
+    private List<Car> cars() {
+        List<Car> cars = new ArrayList<>();
+        for (int i = 0; i < CARS; i++) {
+            cars.add(Car.builder()
+                    .brand("Toyota")
+                    .model("Corolla " + i)
+                    .power(100 + i)
+                    .year(2020)
+                    .color("Blue")
+                    .imageUri("/")
+                    .dealer(testDealer)
+                    .build());
+        }
+        return cars;
+    }
+}
@@ -1,8 +1,19 @@
 package be.vives.ti.rentalapi.service;
 
+import be.vives.ti.rentalapi.availability.RentalAvailabilityIndex;
+import be.vives.ti.rentalapi.cache.CarDetailCache;
+import be.vives.ti.rentalapi.cache.CatalogVersions;
+import be.vives.ti.rentalapi.cache.SecondLevelCacheStats;
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
 import be.vives.ti.rentalapi.dto.request.CarRequest;
+import be.vives.ti.rentalapi.dto.request.CarSearchRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
 import be.vives.ti.rentalapi.dto.response.CarDealerResponse;
+import be.vives.ti.rentalapi.dto.response.CarOccupancyResponse;
+import be.vives.ti.rentalapi.dto.response.CarPageResponse;
 import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.CarSearchResponse;
+import be.vives.ti.rentalapi.dto.response.OccupancyResponse;
 import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
 import be.vives.ti.rentalapi.model.Car;
 import be.vives.ti.rentalapi.model.Dealer;
@@ -11,17 +22,37 @@ import be.vives.ti.rentalapi.repository.CarRepository;
 import be.vives.ti.rentalapi.repository.DealerRepository;
 import be.vives.ti.rentalapi.repository.PopularityRepository;
 import be.vives.ti.rentalapi.repository.RentalRepository;
+import be.vives.ti.rentalapi.repository.RentalSlotRepository;
+import be.vives.ti.rentalapi.search.CarSearchIndex;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.mockito.Mockito.*;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -41,6 +72,39 @@ public class CarServiceTests {
     @Mock
     private RentalRepository rentalRepository;
 
+    @Mock
+    private RentalAvailabilityIndex availabilityIndex;
+
+    @Mock
+    private RentalSlotRepository rentalSlotRepository;
+
+    @Mock
+    private PopularityCounters popularityCounters;
+
+    @Mock
+    private PopularityLeaderboard popularityLeaderboard;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Spy
+    private CarDetailCache carDetailCache = new CarDetailCache(100, 60);
+
+    @Mock
+    private SecondLevelCacheStats secondLevelCacheStats;
+
+    @Mock
+    private CarImporter carImporter;
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private CatalogVersions catalogVersions = new CatalogVersions();
+
+    @Mock
+    private CarSearchIndex carSearchIndex;
+
     @InjectMocks
     private CarService carService;
 
@@ -88,103 +152,425 @@ public class CarServiceTests {
         popularity = new Popularity();
         popularity.setCar(car);
         popularity.setLikes(100);
+
+        when(popularityLeaderboard.getCapacity()).thenReturn(20);
+        ReflectionTestUtils.setField(carService, "maxBatchSize", 100);
     }
 
     @Test
     public void getAllCarsShouldReturnListOfCars() {
-        when(carRepository.findAll()).thenReturn(Arrays.asList(car));
+        when(carRepository.findAllResponses()).thenReturn(Arrays.asList(carResponse(1)));
 
-        ResponseEntity<List<CarResponse>> response = carService.getAllCars();
+        ResponseEntity<List<CarResponse>> response = carService.getAllCars(null);
 
         assertThat(response.getBody()).isNotEmpty();
         assertThat(response.getBody().get(0).getBrand()).isEqualTo("Toyota");
-        verify(carRepository, times(1)).findAll();
+        verify(carRepository, times(1)).findAllResponses();
+        verify(carRepository, never()).findAll();
     }
 
     @Test
     public void getAllCarsShouldReturnEmptyListIfNoCars() {
-        when(carRepository.findAll()).thenReturn(Arrays.asList());
+        when(carRepository.findAllResponses()).thenReturn(Arrays.asList());
 
-        ResponseEntity<List<CarResponse>> response = carService.getAllCars();
+        ResponseEntity<List<CarResponse>> response = carService.getAllCars(null);
 
         assertThat(response.getBody()).isEmpty();
-        verify(carRepository, times(1)).findAll();
+        verify(carRepository, times(1)).findAllResponses();
+    }
+
+    @Test
+    public void getAllCarsShouldReturnNotModifiedWithoutQueryIfCatalogIsUnchanged() {
+        when(carRepository.findAllResponses()).thenReturn(Arrays.asList(carResponse(1)));
+        String eTag = carService.getAllCars(null).getHeaders().getETag();
+
+        ResponseEntity<List<CarResponse>> response = carService.getAllCars(eTag);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(304);
+        assertThat(response.getBody()).isNull();
+        verify(carRepository, times(1)).findAllResponses();
+    }
+
+    @Test
+    public void getAllCarsShouldReturnCarsAgainAfterCatalogChanged() {
+        when(carRepository.findAllResponses()).thenReturn(Arrays.asList(carResponse(1)));
+        String eTag = carService.getAllCars(null).getHeaders().getETag();
+
+        catalogVersions.carsChanged();
+        ResponseEntity<List<CarResponse>> response = carService.getAllCars(eTag);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getHeaders().getETag()).isNotEqualTo(eTag);
+        verify(carRepository, times(2)).findAllResponses();
+    }
+
+    @Test
+    public void getCarPageShouldReturnNextCursorIfMoreCarsExist() {
+        when(carRepository.findPageAfter(0, Limit.of(3))).thenReturn(Arrays.asList(
+                carResponse(1), carResponse(2), carResponse(3)));
+
+        ResponseEntity<CarPageResponse> response = carService.getCarPage(2, null);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getBody().getItems()).hasSize(2);
+        assertThat(response.getBody().getNext()).isEqualTo(CarService.encodeCursor(2));
+    }
+
+    @Test
+    public void getCarPageShouldContinueAfterCursor() {
+        when(carRepository.findPageAfter(2, Limit.of(3))).thenReturn(Arrays.asList(carResponse(3)));
+
+        ResponseEntity<CarPageResponse> response = carService.getCarPage(2, CarService.encodeCursor(2));
+
+        assertThat(response.getBody().getItems()).hasSize(1);
+        assertThat(response.getBody().getItems().get(0).getId()).isEqualTo(3);
+        assertThat(response.getBody().getNext()).isNull();
+    }
+
+    @Test
+    public void searchCarsShouldSortWithIdAsTieBreakerAndMapPage() {
+        PageRequest expected = PageRequest.of(1, 2, Sort.by(Sort.Direction.DESC, "power").and(Sort.by("id")));
+        when(carRepository.findAll(ArgumentMatchers.<Specification<Car>>any(), eq(expected)))
+                .thenReturn(new PageImpl<>(List.of(car), expected, 3));
+
+        ResponseEntity<CarSearchResponse> response = carService.searchCars(CarSearchRequest.builder()
+                .brand("Toyota").page(1).size(2).sort("power").direction("DESC").build());
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getBody().getItems()).extracting(CarResponse::getId).containsExactly(car.getId());
+        assertThat(response.getBody().getTotalElements()).isEqualTo(3);
+        assertThat(response.getBody().getTotalPages()).isEqualTo(2);
+    }
+
+    @Test
+    public void searchCarsShouldReturnBadRequestForInvalidInput() {
+        assertThat(carService.searchCars(CarSearchRequest.builder().sort("description").build()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.searchCars(CarSearchRequest.builder().direction("up").build()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.searchCars(CarSearchRequest.builder().minYear(2020).maxYear(2010).build()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.searchCars(CarSearchRequest.builder().size(CarService.MAX_PAGE_SIZE + 1).build()).getStatusCodeValue()).isEqualTo(400);
+        verify(carRepository, never()).findAll(ArgumentMatchers.<Specification<Car>>any(), any(Pageable.class));
+    }
+
+    @Test
+    public void searchCarsWithTextShouldUseSearchIndex() {
+        CarSearchRequest search = CarSearchRequest.builder().q("corolla").minYear(2015).page(2).size(10).build();
+        CarSearchResponse page = new CarSearchResponse(List.of(CarService.toCarResponse(car)), 2, 10, 21L, 3);
+        when(carSearchIndex.isReady()).thenReturn(true);
+        when(carSearchIndex.search(search, 2, 10)).thenReturn(page);
+
+        ResponseEntity<CarSearchResponse> response = carService.searchCars(search);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getBody()).isSameAs(page);
+        verify(carRepository, never()).findAll(ArgumentMatchers.<Specification<Car>>any(), any(Pageable.class));
+    }
+
+    @Test
+    public void searchCarsWithTextShouldValidateAndWaitForIndex() {
+        assertThat(carService.searchCars(CarSearchRequest.builder().q(" ").build()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.searchCars(CarSearchRequest.builder().q("corolla").sort("year").build()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.searchCars(CarSearchRequest.builder().q("corolla").page(10).size(1000).build()).getStatusCodeValue()).isEqualTo(400);
+
+        // index nog niet opgebouwd
+        when(carSearchIndex.isReady()).thenReturn(false);
+        assertThat(carService.searchCars(CarSearchRequest.builder().q("corolla").build()).getStatusCodeValue()).isEqualTo(503);
+        verify(carSearchIndex, never()).search(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void getAvailableCarsShouldCombineFiltersWithDates() {
+        PageRequest expected = PageRequest.of(0, CarService.DEFAULT_SEARCH_PAGE_SIZE, Sort.by("id"));
+        when(carRepository.findAll(ArgumentMatchers.<Specification<Car>>any(), eq(expected)))
+                .thenReturn(new PageImpl<>(List.of(car), expected, 1));
+
+        ResponseEntity<CarSearchResponse> response = carService.getAvailableCars(LocalDate.of(2025, 7, 1),
+                LocalDate.of(2025, 7, 14), CarSearchRequest.builder().brand("Toyota").build());
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getBody().getItems()).extracting(CarResponse::getId).containsExactly(car.getId());
+        assertThat(response.getBody().getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    public void getAvailableCarsShouldReturnBadRequestForInvalidInput() {
+        LocalDate start = LocalDate.of(2025, 7, 1);
+        assertThat(carService.getAvailableCars(start, start.minusDays(1), CarSearchRequest.builder().build()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.getAvailableCars(start, start, CarSearchRequest.builder().q("toyota").build()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.getAvailableCars(start, start, CarSearchRequest.builder().sort("color").build()).getStatusCodeValue()).isEqualTo(400);
+        verify(carRepository, never()).findAll(ArgumentMatchers.<Specification<Car>>any(), any(Pageable.class));
+    }
+
+    @Test
+    public void getOccupancyShouldReturnBitsetPerCarOfDealer() {
+        LocalDate start = LocalDate.of(2025, 7, 1);
+        when(dealerRepository.existsById(1)).thenReturn(true);
+        when(carRepository.findIdsByDealerId(1)).thenReturn(List.of(1, 2));
+        when(rentalRepository.findPeriodsByDealerIdAndDateRange(1, start, start.plusDays(6)))
+                .thenReturn(List.of(new RentalPeriod(10, 2, start.minusDays(3), start.plusDays(1))));
+
+        ResponseEntity<OccupancyResponse> response = carService.getOccupancy(start, 7, 1);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getBody().getCars()).extracting(CarOccupancyResponse::getCarId).containsExactly(1, 2);
+        assertThat(response.getBody().getCars()).extracting(CarOccupancyResponse::getBookedDays).containsExactly(0, 2);
+        assertThat(response.getBody().getCars().get(1).getBooked()).isEqualTo("Aw=="); // dag 0 en 1
+        verify(rentalRepository, never()).findPeriodsByDateRange(any(), any());
+    }
+
+    @Test
+    public void getOccupancyShouldValidateDaysAndDealer() {
+        LocalDate start = LocalDate.of(2025, 7, 1);
+        assertThat(carService.getOccupancy(start, 0, null).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.getOccupancy(start, CarService.MAX_OCCUPANCY_DAYS + 1, null).getStatusCodeValue()).isEqualTo(400);
+
+        when(dealerRepository.existsById(99)).thenReturn(false);
+        assertThat(carService.getOccupancy(start, 90, 99).getStatusCodeValue()).isEqualTo(404);
+        verify(rentalRepository, never()).findPeriodsByDealerIdAndDateRange(any(), any(), any());
+    }
+
+    @Test
+    public void getCarPageShouldReturnBadRequestIfCursorIsInvalid() {
+        ResponseEntity<CarPageResponse> response = carService.getCarPage(10, "not-a-cursor");
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(400);
+        verify(carRepository, never()).findPageAfter(any(), any());
+    }
+
+    @Test
+    public void getCarPageShouldReturnBadRequestIfLimitIsTooLarge() {
+        ResponseEntity<CarPageResponse> response = carService.getCarPage(CarService.MAX_PAGE_SIZE + 1, null);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(400);
+    }
+
+    @Test
+    public void streamAllCarsShouldWriteJsonArray() throws Exception {
+        when(carRepository.streamAll()).thenReturn(Stream.of(carResponse(1), carResponse(2)));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        carService.streamAllCars(outputStream);
+
+        JsonNode cars = new ObjectMapper().readTree(outputStream.toString(StandardCharsets.UTF_8));
+        assertThat(cars.isArray()).isTrue();
+        assertThat(cars.size()).isEqualTo(2);
+        assertThat(cars.get(1).get("id").asInt()).isEqualTo(2);
+    }
+
+    private CarResponse carResponse(Integer id) {
+        return CarResponse.builder()
+                .id(id)
+                .brand("Toyota")
+                .model("Corolla")
+                .build();
     }
 
     @Test
     public void getCarByIdShouldReturnCarIfExists() {
-        when(carRepository.findById(1)).thenReturn(Optional.of(car));
-        when(popularityRepository.findByCarId(1)).thenReturn(Optional.of(popularity));
+        when(carRepository.findResponseById(1)).thenReturn(Optional.of(carResponse(1)));
 
-        ResponseEntity<CarResponse> response = carService.getCarById(1);
+        ResponseEntity<CarResponse> response = carService.getCarById(1, null);
 
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getBrand()).isEqualTo("Toyota");
-        verify(carRepository, times(1)).findById(1);
-        verify(popularityRepository, times(1)).findByCarId(1);
+        verify(carRepository, times(1)).findResponseById(1);
+        verify(carRepository, never()).findById(1);
+        verify(popularityRepository, never()).findByCarId(1);
     }
 
     @Test
     public void getCarByIdShouldReturnNotFoundIfCarDoesNotExist() {
-        when(carRepository.findById(99)).thenReturn(Optional.empty());
+        when(carRepository.findResponseById(99)).thenReturn(Optional.empty());
 
-        ResponseEntity<CarResponse> response = carService.getCarById(99);
+        ResponseEntity<CarResponse> response = carService.getCarById(99, null);
 
         assertThat(response.getStatusCodeValue()).isEqualTo(404);
-        verify(carRepository, times(1)).findById(99);
+        verify(carRepository, times(1)).findResponseById(99);
+    }
+
+    @Test
+    public void getCarByIdShouldReadFromCacheOnSecondCall() {
+        when(carRepository.findResponseById(1)).thenReturn(Optional.of(carResponse(1)));
+
+        carService.getCarById(1, null);
+        ResponseEntity<CarResponse> response = carService.getCarById(1, null);
+
+        assertThat(response.getBody().getBrand()).isEqualTo("Toyota");
+        verify(carRepository, times(1)).findResponseById(1);
+    }
+
+    @Test
+    public void getCarByIdShouldNotCacheMissingCar() {
+        when(carRepository.findResponseById(99)).thenReturn(Optional.empty());
+
+        carService.getCarById(99, null);
+        carService.getCarById(99, null);
+
+        verify(carRepository, times(2)).findResponseById(99);
+    }
+
+    @Test
+    public void getCarByIdShouldReturnNotModifiedFromCacheIfVersionIsUnchanged() {
+        CarResponse carResponse = carResponse(1);
+        carResponse.setVersion(3L);
+        when(carRepository.findResponseById(1)).thenReturn(Optional.of(carResponse));
+
+        ResponseEntity<CarResponse> first = carService.getCarById(1, null);
+        ResponseEntity<CarResponse> second = carService.getCarById(1, "W/\"car-1-3\"");
+
+        assertThat(first.getHeaders().getETag()).isEqualTo("\"car-1-3\"");
+        assertThat(second.getStatusCodeValue()).isEqualTo(304);
+        assertThat(second.getBody()).isNull();
+        verify(carRepository, times(1)).findResponseById(1);
+    }
+
+    @Test
+    public void getCarByIdShouldReturnCarIfVersionChanged() {
+        CarResponse carResponse = carResponse(1);
+        carResponse.setVersion(4L);
+        when(carRepository.findResponseById(1)).thenReturn(Optional.of(carResponse));
+
+        ResponseEntity<CarResponse> response = carService.getCarById(1, "\"car-1-3\"");
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getBody().getBrand()).isEqualTo("Toyota");
+    }
+
+    @Test
+    public void getCarWithDealerShouldReturnNotModifiedIfVersionIsUnchanged() {
+        CarDealerResponse carDealer = CarDealerResponse.builder().carId(1).dealerId(1).carVersion(5L).dealerVersion(2L).build();
+        when(carRepository.findCarWithDealerById(1)).thenReturn(Optional.of(carDealer));
+
+        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(1, "\"carWithDealer-1-5-1-2\"");
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(304);
+    }
+
+    @Test
+    public void getCarWithDealerShouldReturnOkAfterMoveToDealerWithLowerVersion() {
+        // auto 1 (versie 1) bij dealer 1 (versie 3) verhuist naar dealer 2 (versie 0): de som van de versies is beide keren 4
+        CarDealerResponse carDealer = CarDealerResponse.builder().carId(1).dealerId(2).carVersion(4L).dealerVersion(0L).build();
+        when(carRepository.findCarWithDealerById(1)).thenReturn(Optional.of(carDealer));
+
+        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(1, "\"carWithDealer-1-1-1-3\"");
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"carWithDealer-1-4-2-0\"");
     }
 
     @Test
     public void getCarWithDealerShouldReturnCarAndDealerInfo() {
-        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        CarDealerResponse carDealer = new CarDealerResponse(1, "Toyota", "Corolla", 150, 2020, "Red",
+                "http://example.com/car.jpg", "A reliable car", 1, "AutoWorld", "123 Main Street",
+                "Antwerp", "contact@autoworld.com", 2000, 12345678);
+        when(carRepository.findCarWithDealerById(1)).thenReturn(Optional.of(carDealer));
 
-        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(1);
+        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(1, null);
 
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getDealerName()).isEqualTo("AutoWorld");
-        verify(carRepository, times(1)).findById(1);
+        verify(carRepository, times(1)).findCarWithDealerById(1);
+        verify(carRepository, never()).findById(1);
     }
 
     @Test
     public void getCarWithDealerShouldReturnNotFoundIfCarDoesNotExist() {
-        when(carRepository.findById(99)).thenReturn(Optional.empty());
+        when(carRepository.findCarWithDealerById(99)).thenReturn(Optional.empty());
 
-        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(99);
+        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(99, null);
 
         assertThat(response.getStatusCodeValue()).isEqualTo(404);
-        verify(carRepository, times(1)).findById(99);
+        verify(carRepository, times(1)).findCarWithDealerById(99);
     }
 
     @Test
     public void getCarWithDealerShouldReturnNotFoundIfDealerDoesNotExist() {
-        when(carRepository.findById(1)).thenReturn(Optional.of(car));
-        when(dealerRepository.findById(2)).thenReturn(Optional.of(dealer));
+        // de inner join geeft geen rij terug als de dealer ontbreekt
+        when(carRepository.findCarWithDealerById(1)).thenReturn(Optional.empty());
 
-        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(99);
+        ResponseEntity<CarDealerResponse> response = carService.getCarWithDealer(1, null);
 
         assertThat(response.getStatusCodeValue()).isEqualTo(404);
-        verify(carRepository, times(1)).findById(99);
+        verify(dealerRepository, never()).findById(any());
     }
 
     @Test
     public void getTop4CarsShouldReturnListOfTop4Cars() {
-        when(popularityRepository.findAll()).thenReturn(Arrays.asList(popularity));
+        when(popularityRepository.findAllPopCars()).thenReturn(Arrays.asList(popCar(1, "Toyota", 150, 100)));
 
-        ResponseEntity<List<PopCarsResponse>> response = carService.getTop4Cars();
+        ResponseEntity<List<PopCarsResponse>> response = carService.getTopCars(4, null);
 
         assertThat(response.getBody()).isNotEmpty();
         assertThat(response.getBody().get(0).getBrand()).isEqualTo("Toyota");
-        verify(popularityRepository, times(1)).findAll();
+        verify(popularityRepository, times(1)).findAllPopCars();
+        verify(popularityRepository, never()).findAll();
+    }
+
+    @Test
+    public void getTop4CarsShouldIncludeLikesThatAreNotFlushedYet() {
+        when(popularityRepository.findAllPopCars()).thenReturn(Arrays.asList(
+                popCar(1, "Toyota", 150, 100), popCar(2, "Honda", 100, 90)));
+        when(popularityCounters.pending(2)).thenReturn(20L);
+
+        ResponseEntity<List<PopCarsResponse>> response = carService.getTopCars(4, null);
+
+        assertThat(response.getBody()).hasSize(2);
+        assertThat(response.getBody().get(0).getBrand()).isEqualTo("Honda");
+        assertThat(response.getBody().get(0).getLikes()).isEqualTo(110);
+    }
+
+    @Test
+    public void getTopCarsShouldUseLeaderboardWhenReady() {
+        PopCarsResponse topCar = PopCarsResponse.builder().id(1).brand("Toyota").likes(100).build();
+        when(popularityLeaderboard.isReady()).thenReturn(true);
+        when(popularityLeaderboard.topCars(2)).thenReturn(List.of(topCar));
+
+        ResponseEntity<List<PopCarsResponse>> response = carService.getTopCars(2, null);
+
+        assertThat(response.getBody()).containsExactly(topCar);
+        verify(popularityRepository, never()).findAllPopCars();
+    }
+
+    @Test
+    public void getTopCarsShouldReturnNotModifiedWhileLeaderboardIsUnchanged() {
+        PopCarsResponse topCar = PopCarsResponse.builder().id(1).brand("Toyota").likes(100).build();
+        when(popularityLeaderboard.isReady()).thenReturn(true);
+        when(popularityLeaderboard.getVersion()).thenReturn(7L);
+        when(popularityLeaderboard.topCars(2)).thenReturn(List.of(topCar));
+        String eTag = carService.getTopCars(2, null).getHeaders().getETag();
+
+        ResponseEntity<List<PopCarsResponse>> notModified = carService.getTopCars(2, eTag);
+        when(popularityLeaderboard.getVersion()).thenReturn(8L);
+        ResponseEntity<List<PopCarsResponse>> changed = carService.getTopCars(2, eTag);
+
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(changed.getStatusCodeValue()).isEqualTo(200);
+        verify(popularityLeaderboard, times(2)).topCars(2);
+    }
+
+    @Test
+    public void getTopCarsShouldReturnBadRequestIfLimitIsLargerThanLeaderboard() {
+        ResponseEntity<List<PopCarsResponse>> response = carService.getTopCars(21, null);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(400);
     }
 
     @Test
     public void getTop4CarsShouldReturnNotFoundIfNoPopularityData() {
-        when(popularityRepository.findAll()).thenReturn(Arrays.asList());
+        when(popularityRepository.findAllPopCars()).thenReturn(Arrays.asList());
 
-        ResponseEntity<List<PopCarsResponse>> response = carService.getTop4Cars();
+        ResponseEntity<List<PopCarsResponse>> response = carService.getTopCars(4, null);
 
         assertThat(response.getStatusCodeValue()).isEqualTo(404);
-        verify(popularityRepository, times(1)).findAll();
+        verify(popularityRepository, times(1)).findAllPopCars();
+    }
+
+    private PopCarsResponse popCar(Integer id, String brand, Integer power, Integer likes) {
+        return PopCarsResponse.builder()
+                .id(id)
+                .brand(brand)
+                .power(power)
+                .likes(likes)
+                .build();
     }
 
     @Test
@@ -197,6 +583,7 @@ public class CarServiceTests {
         verify(dealerRepository, times(1)).findById(1);
         verify(carRepository, times(1)).save(any(Car.class));
         verify(popularityRepository, times(1)).save(any(Popularity.class));
+        verify(carSearchIndex, times(1)).put(car);
 
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getBrand()).isEqualTo("Toyota");
@@ -211,6 +598,50 @@ public class CarServiceTests {
         assertThat(response.getStatusCodeValue()).isEqualTo(404);
     }
 
+    @Test
+    public void createCarsShouldReturnResultPerItem() {
+        CarRequest unknownDealer = CarRequest.builder()
+                .brand("Honda").model("Jazz").power(90).year(2019).color("Grey")
+                .imageUri("http://example.com/jazz.jpg").dealerId(7).build();
+        CarRequest invalid = CarRequest.builder().brand("").model("Civic").dealerId(1).build();
+        when(dealerRepository.findAllById(any())).thenReturn(List.of(dealer));
+        when(carImporter.insert(anyList())).thenAnswer(invocation -> {
+            List<Car> cars = invocation.getArgument(0);
+            cars.get(0).setId(42);
+            return cars;
+        });
+
+        ResponseEntity<List<BatchItemResponse<CarResponse>>> response =
+                carService.createCars(Arrays.asList(carRequest, unknownDealer, invalid));
+
+        List<BatchItemResponse<CarResponse>> results = response.getBody();
+        assertThat(results).extracting(BatchItemResponse::getStatus).containsExactly(201, 404, 400);
+        assertThat(results.get(0).getResult().getId()).isEqualTo(42);
+        assertThat(results.get(2).getMessage()).contains("brand");
+        verify(dealerRepository, times(1)).findAllById(any());
+        verify(dealerRepository, never()).findById(any());
+        verify(carImporter, times(1)).insert(argThat(cars -> cars.size() == 1));
+        verify(popularityLeaderboard, times(1)).addCar(42, 180);
+    }
+
+    @Test
+    public void createCarsShouldRejectCarFromTheFuture() {
+        carRequest.setYear(LocalDate.now().getYear() + 1);
+        when(dealerRepository.findAllById(any())).thenReturn(List.of(dealer));
+
+        ResponseEntity<List<BatchItemResponse<CarResponse>>> response = carService.createCars(List.of(carRequest));
+
+        assertThat(response.getBody().get(0).getStatus()).isEqualTo(400);
+        verify(carImporter, never()).insert(anyList());
+    }
+
+    @Test
+    public void createCarsShouldReturnBadRequestIfEmptyOrTooLarge() {
+        assertThat(carService.createCars(List.of()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(carService.createCars(Collections.nCopies(101, carRequest)).getStatusCodeValue()).isEqualTo(400);
+        verify(carImporter, never()).insert(anyList());
+    }
+
     @Test
     public void createCarShouldCreatePopularity() {
         when(dealerRepository.findById(1)).thenReturn(Optional.of(dealer));
@@ -250,6 +681,22 @@ public class CarServiceTests {
         verify(carRepository, times(1)).save(car);
     }
 
+    @Test
+    public void updateCarShouldInvalidateCachedCar() {
+        when(carRepository.findResponseById(1)).thenReturn(Optional.of(carResponse(1)));
+        carService.getCarById(1, null);
+
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(dealerRepository.findById(1)).thenReturn(Optional.of(dealer));
+        when(carRepository.save(car)).thenReturn(car);
+        carService.updateCar(1, carRequest);
+
+        // na de update moet de volgende read opnieuw naar de database
+        carService.getCarById(1, null);
+        verify(carDetailCache, times(1)).invalidateCar(1);
+        verify(carRepository, times(2)).findResponseById(1);
+    }
+
     @Test
     public void updateCarShouldReturnNotFoundIfCarDoesNotExist() {
         when(carRepository.findById(99)).thenReturn(Optional.empty());
@@ -289,6 +736,11 @@ public class CarServiceTests {
 
         assertThat(response.getStatusCodeValue()).isEqualTo(204);
         verify(carRepository, times(1)).delete(car);
+        verify(availabilityIndex, times(1)).removeCar(1);
+        verify(rentalSlotRepository, times(1)).deleteAllByCarId(1);
+        verify(popularityCounters, times(1)).discard(1);
+        verify(popularityLeaderboard, times(1)).removeCar(1);
+        verify(carSearchIndex, times(1)).remove(1);
     }
 
     @Test
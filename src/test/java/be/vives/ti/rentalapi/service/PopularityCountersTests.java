@@ -0,0 +1,97 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.model.Popularity;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@Import(PopularityCounters.class)
+@ActiveProfiles("test")
+public class PopularityCountersTests {
+
+    @Autowired
+    private PopularityCounters popularityCounters;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    private Car testCar;
+
+    @BeforeEach
+    public void setUp() {
+        Dealer testDealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("contact@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+
+        testCar = carRepository.save(Car.builder()
+                .brand("Toyota")
+                .model("Corolla")
+                .power(200)
+                .year(2020)
+                .color("Blue")
+                .imageUri("/")
+                .dealer(testDealer)
+                .build());
+    }
+
+    @Test
+    public void flushShouldAddPendingLikesToExistingPopularity() {
+        popularityRepository.save(Popularity.builder().car(testCar).likes(10).build());
+        entityManager.flush();
+        popularityCounters.increment(testCar.getId());
+        popularityCounters.increment(testCar.getId());
+
+        assertThat(popularityCounters.pending(testCar.getId())).isEqualTo(2);
+        popularityCounters.flush();
+        entityManager.clear();
+
+        assertThat(popularityRepository.findByCarId(testCar.getId()).get().getLikes()).isEqualTo(12);
+        assertThat(popularityCounters.pending(testCar.getId())).isZero();
+    }
+
+    @Test
+    public void flushShouldCreatePopularityIfMissing() {
+        popularityCounters.increment(testCar.getId());
+
+        popularityCounters.flush();
+        entityManager.clear();
+
+        assertThat(popularityRepository.findByCarId(testCar.getId()).get().getLikes()).isEqualTo(1);
+    }
+
+    @Test
+    public void discardShouldDropPendingLikes() {
+        popularityCounters.increment(testCar.getId());
+
+        popularityCounters.discard(testCar.getId());
+        popularityCounters.flush();
+
+        assertThat(popularityRepository.findByCarId(testCar.getId())).isEmpty();
+    }
+}
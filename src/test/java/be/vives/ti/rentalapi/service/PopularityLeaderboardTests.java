@@ -0,0 +1,152 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.dto.projection.CarStanding;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.PopCarsResponse;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+public class PopularityLeaderboardTests {
+
+    @Mock
+    private PopularityRepository popularityRepository;
+
+    @Mock
+    private CarRepository carRepository;
+
+    @Mock
+    private PopularityCounters popularityCounters;
+
+    @InjectMocks
+    private PopularityLeaderboard popularityLeaderboard;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        ReflectionTestUtils.setField(popularityLeaderboard, "capacity", 3);
+
+        when(popularityRepository.findAllStandings()).thenReturn(List.of(
+                new CarStanding(1, 10, 100),
+                new CarStanding(2, 20, 100),
+                new CarStanding(3, 10, 300),
+                new CarStanding(4, 5, 500),
+                new CarStanding(5, 1, 50)
+        ));
+        when(popularityCounters.pending(1)).thenReturn(1L);
+        when(popularityCounters.withoutFlush(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(carRepository.findAllResponsesById(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Integer>>getArgument(0).stream()
+                        .map(id -> CarResponse.builder().id(id).brand("Car " + id).build())
+                        .toList());
+
+        popularityLeaderboard.rebuild();
+    }
+
+    @Test
+    public void rebuildShouldRankByLikesThenPower() {
+        assertThat(popularityLeaderboard.isReady()).isTrue();
+        // auto 1 heeft 10 likes in de database en 1 die nog niet geflusht is
+        assertThat(ids(popularityLeaderboard.topCars(3))).containsExactly(2, 1, 3);
+        assertThat(popularityLeaderboard.topCars(3).get(1).getLikes()).isEqualTo(11);
+    }
+
+    @Test
+    public void topCarsShouldRespectLimit() {
+        assertThat(ids(popularityLeaderboard.topCars(1))).containsExactly(2);
+    }
+
+    @Test
+    public void incrementShouldLetCarEnterTheTop() {
+        for (int i = 0; i < 6; i++) {
+            popularityLeaderboard.increment(4, 500);
+        }
+
+        assertThat(ids(popularityLeaderboard.topCars(3))).containsExactly(2, 4, 1);
+    }
+
+    @Test
+    public void removeCarShouldPromoteNextCar() {
+        popularityLeaderboard.removeCar(2);
+
+        assertThat(ids(popularityLeaderboard.topCars(3))).containsExactly(1, 3, 4);
+    }
+
+    @Test
+    public void updateCarWithLessPowerShouldLetOtherCarPass() {
+        popularityLeaderboard.increment(4, 500);
+        popularityLeaderboard.increment(4, 500);
+        popularityLeaderboard.increment(4, 500);
+        popularityLeaderboard.increment(4, 500);
+        popularityLeaderboard.increment(4, 500); // 10 likes, 500 power
+
+        popularityLeaderboard.updateCar(3, 50);
+
+        assertThat(ids(popularityLeaderboard.topCars(3))).containsExactly(2, 1, 4);
+    }
+
+    @Test
+    public void everyChangeShouldRaiseVersion() {
+        long version = popularityLeaderboard.getVersion();
+        popularityLeaderboard.topCars(3);
+        assertThat(popularityLeaderboard.getVersion()).isEqualTo(version);
+
+        popularityLeaderboard.increment(5, 50);
+        popularityLeaderboard.addCar(6, 100);
+        popularityLeaderboard.updateCar(1, 100);
+        popularityLeaderboard.removeCar(6);
+
+        assertThat(popularityLeaderboard.getVersion()).isEqualTo(version + 4);
+    }
+
+    @Test
+    public void carDetailsShouldOnlyBeLoadedOnce() {
+        popularityLeaderboard.topCars(3);
+        popularityLeaderboard.topCars(3);
+
+        verify(carRepository, times(1)).findAllResponsesById(any());
+    }
+
+    @Test
+    public void updateDuringLoadShouldNotCacheStaleDetails() {
+        // auto 2 wordt gewijzigd terwijl de query voor de top nog loopt
+        when(carRepository.findAllResponsesById(anyCollection())).thenAnswer(invocation -> {
+            List<CarResponse> cars = invocation.<Collection<Integer>>getArgument(0).stream()
+                    .map(id -> CarResponse.builder().id(id).brand("Car " + id).build())
+                    .toList();
+            popularityLeaderboard.updateCar(2, 100);
+            return cars;
+        });
+        popularityLeaderboard.topCars(3);
+
+        when(carRepository.findAllResponsesById(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<Integer>>getArgument(0).stream()
+                        .map(id -> CarResponse.builder().id(id).brand("Updated " + id).build())
+                        .toList());
+
+        assertThat(popularityLeaderboard.topCars(3).get(0).getBrand()).isEqualTo("Updated 2");
+    }
+
+    @Test
+    public void rebuildShouldReadLikesWithoutFlush() {
+        verify(popularityCounters).withoutFlush(any());
+    }
+
+    private List<Integer> ids(List<PopCarsResponse> cars) {
+        return cars.stream().map(PopCarsResponse::getId).toList();
+    }
+}
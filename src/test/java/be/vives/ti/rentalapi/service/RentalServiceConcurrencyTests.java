@@ -0,0 +1,202 @@
+package be.vives.ti.rentalapi.service;
+
+import be.vives.ti.rentalapi.dto.request.RentalRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
+import be.vives.ti.rentalapi.dto.response.RentalResponse;
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.model.Popularity;
+import be.vives.ti.rentalapi.model.Rental;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import be.vives.ti.rentalapi.repository.RentalRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// stress test: veel gelijktijdige bookings op enkele auto's mogen nooit overlappende rentals opleveren
+@SpringBootTest
+@ActiveProfiles("test")
+public class RentalServiceConcurrencyTests {
+
+    private static final int THREADS = 32;
+    private static final int BOOKINGS_PER_THREAD = 20;
+
+    @Autowired
+    private RentalService rentalService;
+
+    @Autowired
+    private BookingLocks bookingLocks;
+
+    @Autowired
+    private PopularityCounters popularityCounters;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    private List<Integer> carIds;
+
+    @BeforeEach
+    public void setUp() {
+        Dealer dealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("stress@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+
+        carIds = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Car car = carRepository.save(Car.builder()
+                    .brand("Toyota")
+                    .model("Corolla " + i)
+                    .power(150)
+                    .year(2020)
+                    .color("Red")
+                    .imageUri("/")
+                    .dealer(dealer)
+                    .build());
+            popularityRepository.save(Popularity.builder().car(car).likes(0).build());
+            carIds.add(car.getId());
+        }
+    }
+
+    @AfterEach
+    public void tearDown() {
+        carIds.forEach(popularityCounters::discard);
+        rentalRepository.deleteAll();
+        popularityRepository.deleteAll();
+        carRepository.deleteAll();
+        dealerRepository.deleteAll();
+    }
+
+    @Test
+    public void concurrentBookingsShouldNeverOverlap() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                startGate.await();
+                int created = 0;
+                for (int i = 0; i < BOOKINGS_PER_THREAD; i++) {
+                    ResponseEntity<RentalResponse> response = rentalService.createRental(randomRequest());
+                    if (response.getStatusCode().value() == 201) {
+                        created++;
+                    }
+                }
+                return created;
+            }));
+        }
+        startGate.countDown();
+
+        int created = 0;
+        for (Future<Integer> result : results) {
+            created += result.get();
+        }
+        executor.shutdown();
+
+        assertNoOverlaps(created);
+        assertThat(bookingLocks.getAcquisitions()).isGreaterThanOrEqualTo(THREADS * BOOKINGS_PER_THREAD);
+
+        // geen enkele like mag verloren gaan
+        popularityCounters.flush();
+        int likes = popularityRepository.findAll().stream().mapToInt(Popularity::getLikes).sum();
+        assertThat(likes).isEqualTo(created);
+    }
+
+    @Test
+    public void concurrentBatchAndSingleBookingsShouldNeverOverlap() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch startGate = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            boolean batch = t % 2 == 0;
+            results.add(executor.submit(() -> {
+                startGate.await();
+                int created = 0;
+                for (int i = 0; i < BOOKINGS_PER_THREAD; i++) {
+                    if (batch) {
+                        // overlappende bookings binnen dezelfde batch zijn ook mogelijk
+                        List<BatchItemResponse<RentalResponse>> items = rentalService
+                                .createRentals(List.of(randomRequest(), randomRequest(), randomRequest())).getBody();
+                        created += (int) items.stream().filter(item -> item.getStatus() == 201).count();
+                    } else if (rentalService.createRental(randomRequest()).getStatusCode().value() == 201) {
+                        created++;
+                    }
+                }
+                return created;
+            }));
+        }
+        startGate.countDown();
+
+        int created = 0;
+        for (Future<Integer> result : results) {
+            created += result.get();
+        }
+        executor.shutdown();
+
+        assertNoOverlaps(created);
+    }
+
+    private void assertNoOverlaps(int created) {
+        List<Rental> rentals = rentalRepository.findAll();
+        assertThat(rentals).hasSize(created);
+
+        Map<Integer, List<Rental>> rentalsByCar = rentals.stream()
+                .collect(Collectors.groupingBy(rental -> rental.getCar().getId()));
+        for (List<Rental> carRentals : rentalsByCar.values()) {
+            carRentals.sort(Comparator.comparing(Rental::getStartDate));
+            for (int i = 1; i < carRentals.size(); i++) {
+                assertThat(carRentals.get(i).getStartDate()).isAfter(carRentals.get(i - 1).getEndDate());
+            }
+        }
+    }
+
+    private RentalRequest randomRequest() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LocalDate startDate = LocalDate.now().plusDays(1 + random.nextInt(60));
+        return RentalRequest.builder()
+                .carId(carIds.get(random.nextInt(carIds.size())))
+                .rentalPrice(new BigDecimal("100.0"))
+                .startDate(startDate)
+                .endDate(startDate.plusDays(1 + random.nextInt(4)))
+                .deposit(new BigDecimal("500.0"))
+                .pickupLocation("Antwerp")
+                .email("stress@example.com")
+                .build();
+    }
+}
@@ -1,28 +1,57 @@
 package be.vives.ti.rentalapi.service;
 
+import be.vives.ti.rentalapi.availability.BookingHolds;
+import be.vives.ti.rentalapi.availability.BookingSuggestions;
+import be.vives.ti.rentalapi.availability.RentalAvailabilityIndex;
+import be.vives.ti.rentalapi.cache.CatalogVersions;
+import be.vives.ti.rentalapi.dto.projection.RentalPeriod;
 import be.vives.ti.rentalapi.dto.request.RentalRequest;
+import be.vives.ti.rentalapi.dto.response.BatchItemResponse;
+import be.vives.ti.rentalapi.dto.response.CarResponse;
+import be.vives.ti.rentalapi.dto.response.HoldResponse;
+import be.vives.ti.rentalapi.dto.response.RentalConflictResponse;
 import be.vives.ti.rentalapi.dto.response.RentalResponse;
+import be.vives.ti.rentalapi.metrics.BookingMetrics;
 import be.vives.ti.rentalapi.model.Car;
-import be.vives.ti.rentalapi.model.Popularity;
+import be.vives.ti.rentalapi.model.Dealer;
 import be.vives.ti.rentalapi.model.Rental;
 import be.vives.ti.rentalapi.repository.CarRepository;
-import be.vives.ti.rentalapi.repository.PopularityRepository;
 import be.vives.ti.rentalapi.repository.RentalRepository;
+import be.vives.ti.rentalapi.repository.RentalSlotRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.*;
 
 @ActiveProfiles("test")
@@ -35,7 +64,39 @@ public class RentalServiceTests {
     private CarRepository carRepository;
 
     @Mock
-    private PopularityRepository popularityRepository;
+    private PopularityCounters popularityCounters;
+
+    @Mock
+    private PopularityLeaderboard popularityLeaderboard;
+
+    @Mock
+    private RentalAvailabilityIndex availabilityIndex;
+
+    @Spy
+    private BookingLocks bookingLocks = new BookingLocks(4);
+
+    @Mock
+    private BookingHolds bookingHolds;
+
+    @Mock
+    private RentalSlotRepository rentalSlotRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
+    @Spy
+    private CatalogVersions catalogVersions = new CatalogVersions();
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private BookingMetrics bookingMetrics = new BookingMetrics(meterRegistry);
 
     @InjectMocks
     private RentalService rentalService;
@@ -74,45 +135,110 @@ public class RentalServiceTests {
                 .pickupLocation("Ghent")
                 .email("user2@example.com")
                 .build();
+
+        ReflectionTestUtils.setField(rentalService, "maxBatchSize", 10);
+        ReflectionTestUtils.setField(rentalService, "maxAlternatives", 3);
+        ReflectionTestUtils.setField(rentalService, "maxAvailableCars", 5);
+        when(availabilityIndex.suggest(any(), any(), any(), any(), anyInt())).thenReturn(BookingSuggestions.NONE);
     }
 
     @Test
     public void getAllRentalsShouldReturnListOfRentals() {
-        when(rentalRepository.findAll()).thenReturn(Arrays.asList(rental));
+        when(rentalRepository.findAllResponses()).thenReturn(Arrays.asList(rentalResponse(1, "Antwerp")));
 
-        ResponseEntity<List<RentalResponse>> response = rentalService.getAllRentals();
+        ResponseEntity<List<RentalResponse>> response = rentalService.getAllRentals(null);
 
         assertThat(response.getBody()).isNotEmpty();
         assertThat(response.getBody().getFirst().getCarId()).isEqualTo(1);
-        verify(rentalRepository, times(1)).findAll();
+        verify(rentalRepository, times(1)).findAllResponses();
+        verify(rentalRepository, never()).findAll();
     }
 
     @Test
     public void getAllRentalsShouldReturnEmptyListIfNoRentals() {
-        when(rentalRepository.findAll()).thenReturn(List.of());
+        when(rentalRepository.findAllResponses()).thenReturn(List.of());
 
-        ResponseEntity<List<RentalResponse>> response = rentalService.getAllRentals();
+        ResponseEntity<List<RentalResponse>> response = rentalService.getAllRentals(null);
 
         assertThat(response.getBody()).isEmpty();
-        verify(rentalRepository, times(1)).findAll();
+        verify(rentalRepository, times(1)).findAllResponses();
+    }
+
+    @Test
+    public void getAllRentalsShouldReturnNotModifiedWithoutQueryIfNoRentalChanged() {
+        when(rentalRepository.findAllResponses()).thenReturn(List.of(rentalResponse(1, "Antwerp")));
+        String eTag = rentalService.getAllRentals(null).getHeaders().getETag();
+
+        ResponseEntity<List<RentalResponse>> notModified = rentalService.getAllRentals(eTag);
+        catalogVersions.rentalsChanged();
+        ResponseEntity<List<RentalResponse>> changed = rentalService.getAllRentals(eTag);
+
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(changed.getStatusCodeValue()).isEqualTo(200);
+        verify(rentalRepository, times(2)).findAllResponses();
+    }
+
+    @Test
+    public void exportRentalsAsNdjsonShouldWriteOneLinePerRental() throws Exception {
+        when(rentalRepository.streamAll()).thenReturn(Stream.of(rentalResponse(1, "Antwerp"), rentalResponse(2, "Ghent")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        rentalService.exportRentalsAsNdjson(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[1]).get("pickupLocation").asText()).isEqualTo("Ghent");
+        assertThat(objectMapper.readTree(lines[1]).get("carId").asInt()).isEqualTo(1);
+        verify(rentalRepository, never()).findAll();
+    }
+
+    @Test
+    public void exportRentalsAsCsvShouldWriteHeaderAndQuotedFields() throws Exception {
+        when(rentalRepository.streamAll()).thenReturn(Stream.of(rentalResponse(1, "Antwerp, \"Centrum\"")));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        rentalService.exportRentalsAsCsv(outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).isEqualTo(RentalService.CSV_HEADER);
+        assertThat(lines[1]).isEqualTo("1,1,100.0," + rental.getStartDate() + "," + rental.getEndDate()
+                + ",500.0,\"Antwerp, \"\"Centrum\"\"\",user@example.com");
+    }
+
+    private RentalResponse rentalResponse(Integer id, String pickupLocation) {
+        return new RentalResponse(id, 1, rental.getRentalPrice(), rental.getStartDate(), rental.getEndDate(),
+                rental.getDeposit(), pickupLocation, rental.getEmail());
     }
 
     @Test
     public void getRentalByIdShouldReturnRentalIfExists() {
         when(rentalRepository.findById(1)).thenReturn(Optional.of(rental));
 
-        ResponseEntity<RentalResponse> response = rentalService.getRentalById(1);
+        ResponseEntity<RentalResponse> response = rentalService.getRentalById(1, null);
 
         assertThat(response.getBody()).isNotNull();
         assertThat(response.getBody().getCarId()).isEqualTo(1);
         verify(rentalRepository, times(1)).findById(1);
     }
 
+    @Test
+    public void getRentalByIdShouldReturnNotModifiedIfVersionIsUnchanged() {
+        rental.setVersion(2L);
+        when(rentalRepository.findById(1)).thenReturn(Optional.of(rental));
+
+        ResponseEntity<RentalResponse> response = rentalService.getRentalById(1, "\"rental-1-2\"");
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(304);
+        assertThat(response.getHeaders().getETag()).isEqualTo("\"rental-1-2\"");
+        assertThat(response.getBody()).isNull();
+    }
+
     @Test
     public void getRentalByIdShouldReturnNotFoundIfRentalDoesNotExist() {
         when(rentalRepository.findById(99)).thenReturn(Optional.empty());
 
-        ResponseEntity<RentalResponse> response = rentalService.getRentalById(99);
+        ResponseEntity<RentalResponse> response = rentalService.getRentalById(99, null);
 
         assertThat(response.getStatusCodeValue()).isEqualTo(404);
         verify(rentalRepository, times(1)).findById(99);
@@ -123,7 +249,6 @@ public class RentalServiceTests {
         when(carRepository.findById(1)).thenReturn(Optional.of(car));
         when(rentalRepository.existsByCarIdAndDateRange(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(false);
         when(rentalRepository.save(any(Rental.class))).thenReturn(rental);
-        when(popularityRepository.findByCarId(1)).thenReturn(Optional.empty());
 
         ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
 
@@ -132,7 +257,7 @@ public class RentalServiceTests {
         assertThat(response.getBody().getCarId()).isEqualTo(1);
         verify(carRepository, times(1)).findById(1);
         verify(rentalRepository, times(1)).save(any(Rental.class));
-        verify(popularityRepository, times(1)).save(any(Popularity.class));
+        verify(popularityCounters, times(1)).increment(1);
     }
 
     @Test
@@ -147,6 +272,440 @@ public class RentalServiceTests {
         verify(rentalRepository, times(1)).existsByCarIdAndDateRange(1, rentalRequest.getStartDate(), rentalRequest.getEndDate());
     }
 
+    @Test
+    public void createRentalShouldCountOutcome() {
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.existsByCarIdAndDateRange(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(true);
+
+        rentalService.createRental(rentalRequest);
+
+        assertThat(meterRegistry.counter(BookingMetrics.BOOKINGS, "source", "single", "outcome", "conflict").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter(BookingMetrics.BOOKINGS, "source", "single", "outcome", "created").count()).isZero();
+    }
+
+    @Test
+    public void createRentalShouldUseAvailabilityIndexWhenReady() {
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.overlaps(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(true);
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+
+        ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(409);
+        verify(rentalRepository, never()).existsByCarIdAndDateRange(any(), any(), any());
+    }
+
+    @Test
+    public void createRentalConflictShouldSuggestPeriodsAndCars() {
+        car.setDealer(Dealer.builder().id(7).build());
+        LocalDate start = rentalRequest.getStartDate();
+        LocalDate end = rentalRequest.getEndDate();
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.overlaps(1, start, end)).thenReturn(true);
+        when(availabilityIndex.suggest(eq(1), eq(start), eq(end), any(), eq(3))).thenReturn(new BookingSuggestions(
+                List.of(new RentalPeriod(4, 1, start.minusDays(1), start.plusDays(2))),
+                List.of(start.plusDays(3), start.minusDays(7))));
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(carRepository.findIdsByDealerId(7)).thenReturn(List.of(1, 2, 3));
+        when(availabilityIndex.freeCars(List.of(2, 3), start, end, 5)).thenReturn(List.of(3));
+        when(carRepository.findAllResponsesById(List.of(3))).thenReturn(List.of(
+                new CarResponse(3, "Kia", "Picanto", 70, 2019, "Blue", "/", null)));
+
+        ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(409);
+        RentalConflictResponse body = (RentalConflictResponse) response.getBody();
+        assertThat(body.getCarId()).isEqualTo(1);
+        assertThat(body.getConflicts()).singleElement().satisfies(period -> {
+            assertThat(period.getRentalId()).isEqualTo(4);
+            assertThat(period.getEndDate()).isEqualTo(start.plusDays(2));
+        });
+        // zelfde lengte als de gevraagde periode (6 dagen)
+        assertThat(body.getAlternatives()).extracting(period -> period.getEndDate())
+                .containsExactly(start.plusDays(8), start.minusDays(2));
+        assertThat(body.getAvailableCars()).extracting(CarResponse::getId).containsExactly(3);
+    }
+
+    @Test
+    public void createRentalConflictWithoutIndexShouldHaveNoSuggestions() {
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.existsByCarIdAndDateRange(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(true);
+
+        RentalConflictResponse body = (RentalConflictResponse) rentalService.createRental(rentalRequest).getBody();
+
+        assertThat(body.getConflicts()).isEmpty();
+        assertThat(body.getAlternatives()).isEmpty();
+        verify(availabilityIndex, never()).suggest(any(), any(), any(), any(), anyInt());
+        verify(carRepository, never()).findIdsByDealerId(any());
+    }
+
+    @Test
+    public void createRentalShouldReturnConflictIfCarIsHeld() {
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(bookingHolds.overlaps(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(true);
+
+        ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(409);
+        verify(rentalRepository, never()).save(any(Rental.class));
+    }
+
+    @Test
+    public void createHoldShouldHoldFreePeriodWithoutDatabaseWrites() {
+        BookingHolds.Hold hold = new BookingHolds.Hold(UUID.randomUUID(), rentalRequest, 1_000);
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(bookingHolds.hold(rentalRequest)).thenReturn(hold);
+
+        ResponseEntity<RentalResponse> response = rentalService.createHold(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(201);
+        HoldResponse body = (HoldResponse) response.getBody();
+        assertThat(body.getHoldId()).isEqualTo(hold.id());
+        assertThat(body.getId()).isNull();
+        assertThat(body.getEmail()).isEqualTo("user2@example.com");
+        verify(rentalRepository, never()).save(any(Rental.class));
+        verify(popularityCounters, never()).increment(any());
+        assertThat(meterRegistry.counter(BookingMetrics.BOOKINGS, "source", "hold", "outcome", "created").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void createHoldShouldReturnConflictIfCarIsRented() {
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.existsByCarIdAndDateRange(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(true);
+
+        ResponseEntity<RentalResponse> response = rentalService.createHold(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(409);
+        verify(bookingHolds, never()).hold(any());
+    }
+
+    @Test
+    public void confirmHoldShouldCreateRentalFromHold() {
+        UUID holdId = UUID.randomUUID();
+        when(bookingHolds.find(holdId)).thenReturn(new BookingHolds.Hold(holdId, rentalRequest, 1_000));
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenReturn(rental);
+
+        ResponseEntity<RentalResponse> response = rentalService.confirmHold(holdId);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(201);
+        assertThat(response.getBody().getId()).isEqualTo(rental.getId());
+        verify(rentalRepository, times(1)).save(argThat(saved -> saved.getEmail().equals("user2@example.com")));
+        verify(bookingHolds, times(1)).overlaps(1, rentalRequest.getStartDate(), rentalRequest.getEndDate(), holdId);
+        verify(bookingHolds, times(1)).release(holdId);
+        verify(popularityCounters, times(1)).increment(1);
+        assertThat(meterRegistry.counter(BookingMetrics.BOOKINGS, "source", "confirm", "outcome", "created").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void confirmHoldShouldReturnNotFoundIfHoldExpiredMeanwhile() {
+        UUID holdId = UUID.randomUUID();
+        // nog actief bij het opzoeken, verlopen tegen dat de lock van de auto vrij is
+        when(bookingHolds.find(holdId)).thenReturn(new BookingHolds.Hold(holdId, rentalRequest, 1_000), (BookingHolds.Hold) null);
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+
+        ResponseEntity<RentalResponse> response = rentalService.confirmHold(holdId);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(404);
+        verify(rentalRepository, never()).save(any(Rental.class));
+    }
+
+    @Test
+    public void confirmHoldShouldKeepHoldIfRentalConflicts() {
+        enableSlotClaims();
+        UUID holdId = UUID.randomUUID();
+        when(bookingHolds.find(holdId)).thenReturn(new BookingHolds.Hold(holdId, rentalRequest, 1_000));
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenReturn(rental);
+        doThrow(new DuplicateKeyException("slot already claimed"))
+                .when(rentalSlotRepository).claimSlots(any(), any(), any(), any());
+
+        ResponseEntity<RentalResponse> response = rentalService.confirmHold(holdId);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(409);
+        verify(bookingHolds, never()).release(holdId);
+        verify(availabilityIndex, never()).put(any(), any(), any(), any());
+    }
+
+    @Test
+    public void confirmHoldShouldKeepHoldIfSaveFails() {
+        UUID holdId = UUID.randomUUID();
+        when(bookingHolds.find(holdId)).thenReturn(new BookingHolds.Hold(holdId, rentalRequest, 1_000));
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        assertThatThrownBy(() -> rentalService.confirmHold(holdId))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        verify(bookingHolds, never()).release(holdId);
+    }
+
+    @Test
+    public void releaseHoldShouldReturnNotFoundForUnknownHold() {
+        UUID holdId = UUID.randomUUID();
+        when(bookingHolds.release(holdId)).thenReturn(true, false);
+
+        assertThat(rentalService.releaseHold(holdId).getStatusCodeValue()).isEqualTo(204);
+        assertThat(rentalService.releaseHold(holdId).getStatusCodeValue()).isEqualTo(404);
+    }
+
+    @Test
+    public void createRentalShouldReleaseCarLockAfterConflict() {
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.existsByCarIdAndDateRange(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(true);
+
+        rentalService.createRental(rentalRequest);
+
+        verify(bookingLocks, times(1)).lock(1);
+        assertThat(((ReentrantLock) bookingLocks.lock(1)).getHoldCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void createRentalShouldAddRentalToAvailabilityIndex() {
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenReturn(rental);
+
+        ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(201);
+        verify(availabilityIndex, times(1)).put(rental.getId(), 1, rental.getStartDate(), rental.getEndDate());
+    }
+
+    @Test
+    public void createRentalShouldTrustDatabaseWhenVerificationDisagrees() {
+        ReflectionTestUtils.setField(rentalService, "verifyWithDatabase", true);
+        when(availabilityIndex.isReady()).thenReturn(true);
+        when(availabilityIndex.overlaps(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(false);
+        when(rentalRepository.existsByCarIdAndDateRange(1, rentalRequest.getStartDate(), rentalRequest.getEndDate())).thenReturn(true);
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+
+        ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(409);
+    }
+
+    @Test
+    public void createRentalShouldClaimSlotsInSlotMode() {
+        enableSlotClaims();
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenReturn(rental);
+
+        ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(201);
+        verify(rentalSlotRepository, times(1)).claimSlots(1, rental.getId(), rental.getStartDate(), rental.getEndDate());
+    }
+
+    @Test
+    public void createRentalShouldReturnConflictIfSlotIsAlreadyClaimed() {
+        enableSlotClaims();
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenReturn(rental);
+        doThrow(new DuplicateKeyException("slot already claimed"))
+                .when(rentalSlotRepository).claimSlots(any(), any(), any(), any());
+
+        ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(409);
+        verify(availabilityIndex, never()).put(any(), any(), any(), any());
+        verify(popularityCounters, never()).increment(any());
+    }
+
+    @Test
+    public void createRentalShouldNotHideIntegrityViolationsAsConflictWithoutSlotClaims() {
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenThrow(new DuplicateKeyException("duplicate id"));
+
+        assertThatThrownBy(() -> rentalService.createRental(rentalRequest))
+                .isInstanceOf(DuplicateKeyException.class);
+        verify(availabilityIndex, never()).put(any(), any(), any(), any());
+    }
+
+    @Test
+    public void updateRentalShouldReplaceSlotsInSlotMode() {
+        enableSlotClaims();
+        when(rentalRepository.findById(1)).thenReturn(Optional.of(rental));
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.save(any(Rental.class))).thenReturn(rental);
+
+        ResponseEntity<RentalResponse> response = rentalService.updateRental(1, rentalRequest);
+
+        assertThat(response.getStatusCodeValue()).isEqualTo(200);
+        verify(rentalSlotRepository, times(1)).deleteAllByRentalId(1);
+        verify(rentalSlotRepository, times(1)).claimSlots(any(), any(), any(), any());
+    }
+
+    @Test
+    public void createRentalsShouldReturnResultPerItem() {
+        LocalDate day = LocalDate.now().plusDays(20);
+        RentalRequest conflictWithExisting = copy(rentalRequest, 1, day, day.plusDays(2));
+        RentalRequest accepted = copy(rentalRequest, 1, day.plusDays(3), day.plusDays(5));
+        RentalRequest conflictWithinBatch = copy(rentalRequest, 1, day.plusDays(5), day.plusDays(6));
+        RentalRequest unknownCar = copy(rentalRequest, 99, day, day.plusDays(1));
+        RentalRequest invalid = copy(rentalRequest, 1, day, day.plusDays(1));
+        invalid.setEmail("not an email");
+        when(carRepository.findAllById(any())).thenReturn(List.of(car));
+        when(rentalRepository.findPeriodsByCarIdsAndDateRange(any(), any(), any()))
+                .thenReturn(List.of(new RentalPeriod(7, 1, day.minusDays(1), day)));
+        mockBatchSave();
+
+        ResponseEntity<List<BatchItemResponse<RentalResponse>>> response = rentalService.createRentals(
+                Arrays.asList(conflictWithExisting, accepted, conflictWithinBatch, unknownCar, invalid));
+
+        assertThat(response.getBody()).extracting(BatchItemResponse::getStatus).containsExactly(409, 201, 409, 404, 400);
+        assertThat(response.getBody().get(1).getResult().getId()).isEqualTo(100);
+        assertThat(response.getBody().get(4).getMessage()).contains("email");
+        verify(carRepository, times(1)).findAllById(any());
+        verify(carRepository, never()).findById(any());
+        verify(rentalRepository, times(1)).findPeriodsByCarIdsAndDateRange(any(), eq(day), eq(day.plusDays(6)));
+        verify(rentalRepository, times(1)).saveAll(argThat(rentals -> ((List<Rental>) rentals).size() == 1));
+        assertThat(meterRegistry.counter(BookingMetrics.BOOKINGS, "source", "batch", "outcome", "conflict").count()).isEqualTo(2);
+        assertThat(meterRegistry.counter(BookingMetrics.BOOKINGS, "source", "batch", "outcome", "created").count()).isEqualTo(1);
+        verify(availabilityIndex, times(1)).put(100, 1, day.plusDays(3), day.plusDays(5));
+        verify(popularityCounters, times(1)).increment(1);
+    }
+
+    @Test
+    public void createRentalsShouldRejectEndDateBeforeStartDate() {
+        LocalDate day = LocalDate.now().plusDays(20);
+
+        ResponseEntity<List<BatchItemResponse<RentalResponse>>> response =
+                rentalService.createRentals(List.of(copy(rentalRequest, 1, day.plusDays(2), day)));
+
+        assertThat(response.getBody().get(0).getStatus()).isEqualTo(400);
+        verify(carRepository, never()).findAllById(any());
+    }
+
+    @Test
+    public void createRentalsShouldReturnBadRequestIfEmptyOrTooLarge() {
+        assertThat(rentalService.createRentals(List.of()).getStatusCodeValue()).isEqualTo(400);
+        assertThat(rentalService.createRentals(Collections.nCopies(11, rentalRequest)).getStatusCodeValue()).isEqualTo(400);
+    }
+
+    @Test
+    public void createRentalsShouldFallBackToSingleInsertsWhenSlotIsClaimedElsewhere() {
+        enableSlotClaims();
+        LocalDate day = LocalDate.now().plusDays(20);
+        when(carRepository.findAllById(any())).thenReturn(List.of(car));
+        when(rentalRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Rental> rentals = invocation.getArgument(0);
+            rentals.forEach(rental -> rental.setId(100 + rentals.indexOf(rental)));
+            return rentals;
+        });
+        when(rentalRepository.save(any(Rental.class))).thenAnswer(invocation -> {
+            Rental saved = invocation.getArgument(0);
+            saved.setId(200);
+            return saved;
+        });
+        // de tweede rental overlapt met een dag die een andere instantie al geclaimd heeft
+        doNothing().when(rentalSlotRepository).claimSlots(eq(1), any(), eq(day), any());
+        doThrow(new DuplicateKeyException("slot")).when(rentalSlotRepository).claimSlots(eq(1), any(), eq(day.plusDays(5)), any());
+
+        ResponseEntity<List<BatchItemResponse<RentalResponse>>> response = rentalService.createRentals(List.of(
+                copy(rentalRequest, 1, day, day.plusDays(2)),
+                copy(rentalRequest, 1, day.plusDays(5), day.plusDays(6))));
+
+        assertThat(response.getBody()).extracting(BatchItemResponse::getStatus).containsExactly(201, 409);
+        verify(availabilityIndex, times(1)).put(any(), any(), any(), any());
+    }
+
+    @Test
+    public void createRentalShouldGoThroughGroupCommitWhenEnabled() throws InterruptedException {
+        mockBatchSave();
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        ReflectionTestUtils.setField(rentalService, "groupCommitEnabled", true);
+        ReflectionTestUtils.setField(rentalService, "groupCommitMaxBatchSize", 10);
+        ReflectionTestUtils.setField(rentalService, "groupCommitTimeoutMillis", 5000L);
+        rentalService.startGroupCommit();
+        try {
+            ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+            assertThat(response.getStatusCodeValue()).isEqualTo(201);
+            assertThat(response.getBody().getId()).isEqualTo(100);
+            verify(rentalRepository, never()).save(any(Rental.class));
+            verify(availabilityIndex, times(1)).put(100, 1, rentalRequest.getStartDate(), rentalRequest.getEndDate());
+            assertThat(meterRegistry.get(BookingMetrics.GROUP_COMMIT + ".batch.size").summary().count()).isEqualTo(1);
+        } finally {
+            rentalService.stopGroupCommit();
+        }
+    }
+
+    @Test
+    public void createRentalViaGroupCommitShouldReturnConflictIfSlotIsClaimedElsewhere() throws InterruptedException {
+        enableSlotClaims();
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(rentalRepository.save(any(Rental.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new DuplicateKeyException("slot")).when(rentalSlotRepository).claimSlots(any(), any(), any(), any());
+        ReflectionTestUtils.setField(rentalService, "groupCommitEnabled", true);
+        ReflectionTestUtils.setField(rentalService, "groupCommitMaxBatchSize", 10);
+        ReflectionTestUtils.setField(rentalService, "groupCommitTimeoutMillis", 5000L);
+        rentalService.startGroupCommit();
+        try {
+            ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+            assertThat(response.getStatusCodeValue()).isEqualTo(409);
+            verify(availabilityIndex, never()).put(any(), any(), any(), any());
+        } finally {
+            rentalService.stopGroupCommit();
+        }
+    }
+
+    @Test
+    public void createRentalViaGroupCommitShouldWaitForACommitThatOutlivesTheTimeout() throws InterruptedException {
+        mockBatchSave();
+        when(carRepository.findById(1)).thenReturn(Optional.of(car));
+        when(rentalRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            Thread.sleep(300); // trage commit, langer dan de timeout
+            List<Rental> rentals = invocation.getArgument(0);
+            rentals.get(0).setId(100);
+            return rentals;
+        });
+        ReflectionTestUtils.setField(rentalService, "groupCommitEnabled", true);
+        ReflectionTestUtils.setField(rentalService, "groupCommitMaxBatchSize", 10);
+        ReflectionTestUtils.setField(rentalService, "groupCommitTimeoutMillis", 50L);
+        rentalService.startGroupCommit();
+        try {
+            ResponseEntity<RentalResponse> response = rentalService.createRental(rentalRequest);
+
+            assertThat(response.getStatusCodeValue()).isEqualTo(201);
+            verify(availabilityIndex, times(1)).put(100, 1, rentalRequest.getStartDate(), rentalRequest.getEndDate());
+            verify(popularityCounters, times(1)).increment(1);
+        } finally {
+            rentalService.stopGroupCommit();
+        }
+    }
+
+    private void mockBatchSave() {
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(rentalRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Rental> rentals = invocation.getArgument(0);
+            for (int i = 0; i < rentals.size(); i++) {
+                rentals.get(i).setId(100 + i);
+            }
+            return rentals;
+        });
+    }
+
+    private RentalRequest copy(RentalRequest request, Integer carId, LocalDate startDate, LocalDate endDate) {
+        return RentalRequest.builder()
+                .carId(carId)
+                .rentalPrice(request.getRentalPrice())
+                .startDate(startDate)
+                .endDate(endDate)
+                .deposit(request.getDeposit())
+                .pickupLocation(request.getPickupLocation())
+                .email(request.getEmail())
+                .build();
+    }
+
+    private void enableSlotClaims() {
+        ReflectionTestUtils.setField(rentalService, "slotClaimsEnabled", true);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
     @Test
     public void createRentalShouldReturnNotFoundIfCarDoesNotExist() {
         when(carRepository.findById(99)).thenReturn(Optional.empty());
@@ -219,6 +778,21 @@ public class RentalServiceTests {
         assertThat(response.getStatusCodeValue()).isEqualTo(204);
         verify(rentalRepository, times(1)).existsById(1);
         verify(rentalRepository, times(1)).deleteById(1);
+        verify(availabilityIndex, times(1)).remove(1);
+        verify(rentalSlotRepository, times(1)).deleteAllByRentalId(1);
+    }
+
+    @Test
+    public void deleteRentalShouldDeleteSlotsAndRentalInOneTransactionInSlotMode() {
+        enableSlotClaims();
+        when(rentalRepository.existsById(1)).thenReturn(true);
+        doThrow(new DataAccessResourceFailureException("connection lost")).when(rentalRepository).deleteById(1);
+
+        assertThatThrownBy(() -> rentalService.deleteRental(1))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(rentalSlotRepository, times(1)).deleteAllByRentalId(1);
+        verify(availabilityIndex, never()).remove(1);
     }
 
     @Test
@@ -0,0 +1,166 @@
+package be.vives.ti.rentalapi.sql;
+
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.model.Popularity;
+import be.vives.ti.rentalapi.model.Rental;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import be.vives.ti.rentalapi.repository.RentalRepository;
+import be.vives.ti.rentalapi.service.PopularityCounters;
+import be.vives.ti.rentalapi.service.PopularityLeaderboard;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// vast aantal statements per endpoint, bij 10 en bij 10.000 auto's: een N+1 (bv. een eager relatie) laat deze test falen.
+// Eigen database, create-drop zou anders het schema onder de gecachte context van de andere testen opnieuw aanmaken.
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:querybudget", "spring.jpa.show-sql=false"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(SqlStatementCounter.class)
+public class QueryBudgetTests {
+
+    private static final int GET_ALL_CARS = 1;
+    private static final int TOP_CARS = 1; // ranking uit het geheugen, de auto's van de top in één IN query
+    private static final int CAR_WITH_DEALER = 1;
+    private static final int GET_ALL_RENTALS = 1;
+    private static final int CREATE_RENTAL = 2; // auto opzoeken en insert, de overlap-check komt uit de index
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    @Autowired
+    private RentalRepository rentalRepository;
+
+    @Autowired
+    private PopularityLeaderboard popularityLeaderboard;
+
+    @Autowired
+    private PopularityCounters popularityCounters;
+
+    private List<Car> cars = List.of();
+
+    @AfterEach
+    public void tearDown() {
+        cars.forEach(car -> popularityCounters.discard(car.getId()));
+        rentalRepository.deleteAllInBatch();
+        popularityRepository.deleteAllInBatch();
+        carRepository.deleteAllInBatch();
+        dealerRepository.deleteAllInBatch();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10, 10_000})
+    public void endpointsShouldStayWithinQueryBudget(int fleetSize) throws Exception {
+        seed(fleetSize);
+        Car car = cars.get(fleetSize / 2);
+
+        assertThat(measure(() -> mockMvc.perform(get("/api/cars")).andExpect(status().isOk())))
+                .hasSizeLessThanOrEqualTo(GET_ALL_CARS);
+        assertThat(measure(() -> mockMvc.perform(get("/api/cars/topCars")).andExpect(status().isOk())))
+                .hasSizeLessThanOrEqualTo(TOP_CARS);
+        assertThat(measure(() -> mockMvc.perform(get("/api/cars/carWithDealer/{id}", car.getId())).andExpect(status().isOk())))
+                .hasSizeLessThanOrEqualTo(CAR_WITH_DEALER);
+        assertThat(measure(() -> mockMvc.perform(get("/api/rentals")).andExpect(status().isOk())))
+                .hasSizeLessThanOrEqualTo(GET_ALL_RENTALS);
+
+        LocalDate start = LocalDate.now().plusDays(400);
+        assertThat(measure(() -> mockMvc.perform(post("/api/rentals")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("""
+                                {"carId": %d, "rentalPrice": 50.00, "startDate": "%s", "endDate": "%s",
+                                 "deposit": 250.00, "pickupLocation": "Kortrijk", "email": "user@example.com"}
+                                """.formatted(car.getId(), start, start.plusDays(2))))
+                .andExpect(status().isCreated())))
+                .hasSizeLessThanOrEqualTo(CREATE_RENTAL);
+    }
+
+    // koude second-level cache, zodat een relatie die per rij geladen wordt ook echt een query kost
+    private List<String> measure(SqlStatementCounter.Block block) throws Exception {
+        entityManagerFactory.getCache().evictAll();
+        return sqlStatementCounter.statementsDuring(block);
+    }
+
+    private void seed(int fleetSize) {
+        List<Dealer> dealers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, fleetSize / 100); i++) {
+            dealers.add(Dealer.builder()
+                    .name("Dealer " + i)
+                    .address("Main Street " + i)
+                    .city("Antwerp")
+                    .email("budget" + i + "@autoworld.com")
+                    .postcode(2000)
+                    .phone(12345678)
+                    .build());
+        }
+        dealers = dealerRepository.saveAll(dealers);
+
+        List<Car> newCars = new ArrayList<>();
+        for (int i = 0; i < fleetSize; i++) {
+            newCars.add(Car.builder()
+                    .brand("Toyota")
+                    .model("Corolla " + i)
+                    .power(100 + i % 200)
+                    .year(2020)
+                    .color("Red")
+                    .imageUri("/")
+                    .dealer(dealers.get(i % dealers.size()))
+                    .build());
+        }
+        cars = carRepository.saveAll(newCars);
+
+        List<Popularity> popularities = new ArrayList<>();
+        List<Rental> rentals = new ArrayList<>();
+        LocalDate start = LocalDate.now().plusDays(10);
+        for (Car car : cars) {
+            popularities.add(Popularity.builder().car(car).likes(car.getId() % 7).build());
+            rentals.add(Rental.builder()
+                    .car(car)
+                    .rentalPrice(BigDecimal.valueOf(5000, 2))
+                    .startDate(start)
+                    .endDate(start.plusDays(3))
+                    .deposit(BigDecimal.valueOf(25000, 2))
+                    .pickupLocation("Antwerp")
+                    .email("user@example.com")
+                    .build());
+        }
+        popularityRepository.saveAll(popularities);
+        rentalRepository.saveAll(rentals);
+        popularityLeaderboard.rebuild();
+    }
+}
@@ -0,0 +1,39 @@
+package be.vives.ti.rentalapi.sql;
+
+import be.vives.ti.rentalapi.dto.response.SlowQueryResponse;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SlowQueryLogTests {
+
+    private static SlowQueryResponse query(String sql) {
+        return SlowQueryResponse.builder().sql(sql).durationMs(250.0).build();
+    }
+
+    @Test
+    public void recentShouldBeNewestFirst() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(10);
+        slowQueryLog.add(query("select 1"));
+        slowQueryLog.add(query("select 2"));
+
+        assertThat(slowQueryLog.getRecent()).extracting(SlowQueryResponse::getSql).containsExactly("select 2", "select 1");
+    }
+
+    @Test
+    public void oldestShouldBeOverwrittenWhenFull() {
+        SlowQueryLog slowQueryLog = new SlowQueryLog(3);
+        for (int i = 1; i <= 5; i++) {
+            slowQueryLog.add(query("select " + i));
+        }
+
+        assertThat(slowQueryLog.getRecent()).extracting(SlowQueryResponse::getSql).containsExactly("select 5", "select 4", "select 3");
+        assertThat(slowQueryLog.getTotal()).isEqualTo(5);
+    }
+
+    @Test
+    public void sizeShouldBePositive() {
+        assertThatThrownBy(() -> new SlowQueryLog(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
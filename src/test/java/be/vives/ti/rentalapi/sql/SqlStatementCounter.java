@@ -0,0 +1,48 @@
+package be.vives.ti.rentalapi.sql;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Houdt de SQL statements bij die de huidige thread uitvoert tijdens een blok, via de JDBC proxy van SqlStatsConfig.
+ * MockMvc requests lopen op dezelfde thread en tellen dus mee, werk op de scheduler niet.
+ * Een batch telt als één statement.
+ * Gebruik: @Import(SqlStatementCounter.class) en statementsDuring(() -> mockMvc.perform(...)).
+ */
+public class SqlStatementCounter implements QueryExecutionListener {
+
+    private final ThreadLocal<List<String>> statements = new ThreadLocal<>();
+
+    @FunctionalInterface
+    public interface Block {
+        void run() throws Exception;
+    }
+
+    public List<String> statementsDuring(Block block) throws Exception {
+        List<String> executed = new ArrayList<>();
+        statements.set(executed);
+        try {
+            block.run();
+        } finally {
+            statements.remove();
+        }
+        return executed;
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        List<String> executed = statements.get();
+        if (executed == null || queryInfoList.isEmpty()) {
+            return;
+        }
+        executed.add(queryInfoList.get(0).getQuery());
+    }
+}
@@ -0,0 +1,112 @@
+package be.vives.ti.rentalapi.sql;
+
+import be.vives.ti.rentalapi.model.Car;
+import be.vives.ti.rentalapi.model.Dealer;
+import be.vives.ti.rentalapi.model.Popularity;
+import be.vives.ti.rentalapi.repository.CarRepository;
+import be.vives.ti.rentalapi.repository.DealerRepository;
+import be.vives.ti.rentalapi.repository.PopularityRepository;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// eigen database, create-drop zou anders het schema onder de gecachte context van de andere testen opnieuw aanmaken;
+// drempel 0 zodat elke query in de slow-query log komt, het endpoint staat standaard niet open
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:sqlstats", "rental.sql.slow-query-threshold-ms=0",
+        "management.endpoints.web.exposure.include=slowqueries"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class SqlStatsTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CarRepository carRepository;
+
+    @Autowired
+    private DealerRepository dealerRepository;
+
+    @Autowired
+    private PopularityRepository popularityRepository;
+
+    private Car car;
+
+    @BeforeEach
+    public void setUp() {
+        Dealer dealer = dealerRepository.save(Dealer.builder()
+                .name("AutoWorld")
+                .address("123 Main Street")
+                .city("Antwerp")
+                .email("sql@autoworld.com")
+                .postcode(2000)
+                .phone(12345678)
+                .build());
+        car = carRepository.save(Car.builder()
+                .brand("Toyota")
+                .model("Corolla")
+                .power(150)
+                .year(2020)
+                .color("Red")
+                .imageUri("/")
+                .dealer(dealer)
+                .build());
+        popularityRepository.save(Popularity.builder().car(car).likes(0).build());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        popularityRepository.deleteAll();
+        carRepository.deleteAll();
+        dealerRepository.deleteAll();
+    }
+
+    @Test
+    public void responseShouldCarrySqlStatsHeader() throws Exception {
+        mockMvc.perform(get("/api/cars/{id}", car.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(SqlStatsFilter.HEADER, matchesPattern("sql;dur=\\d+\\.\\d{3};desc=\"[1-9]\\d* statements, slowest \\d+\\.\\d{3} ms\"")));
+    }
+
+    @Test
+    public void slowQueryShouldBeLoggedWithCallerAndBindValueTypes() throws Exception {
+        mockMvc.perform(get("/api/cars/{id}", car.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/slowqueries"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].request").value("GET /api/cars/" + car.getId()))
+                .andExpect(jsonPath("$[0].caller", startsWith("CarService.")))
+                .andExpect(jsonPath("$[0].parameters", hasItem("[Integer]")));
+    }
+
+    @Test
+    public void bindValuesShouldOnlyBeShownWhenEnabled() throws Exception {
+        QueryInfo queryInfo = new QueryInfo("SELECT * FROM rental WHERE email = ? AND car_id = ?");
+        queryInfo.getParametersList().add(List.of(
+                new ParameterSetOperation(PreparedStatement.class.getMethod("setString", int.class, String.class), new Object[]{1, "user@example.com"}),
+                new ParameterSetOperation(PreparedStatement.class.getMethod("setInt", int.class, int.class), new Object[]{2, 7})));
+
+        assertThat(SqlStatementListener.parameters(List.of(queryInfo), false)).containsExactly("[String, Integer]");
+        assertThat(SqlStatementListener.parameters(List.of(queryInfo), true)).containsExactly("['user@example.com', 7]");
+    }
+}